@@ -0,0 +1,80 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Points {@link Database} at a fresh temporary SQLite file and seeds it with synthetic data.
+ * Must run before anything touches {@code Database}, since the file is chosen when that class
+ * initializes; JMH forks a new JVM per benchmark and parameter set, so each gets its own file.
+ */
+final class BenchmarkDatabase {
+    private BenchmarkDatabase() {}
+
+    static Path open() throws IOException {
+        Path dir = Files.createTempDirectory("event-bench");
+        System.setProperty("db.file", dir.resolve("bench.db").toString());
+        System.setProperty("journal.dir", dir.resolve("journal").toString());
+        Database.initDatabase();
+        return dir;
+    }
+
+    static String jdbcUrl() {
+        return "jdbc:sqlite:" + System.getProperty("db.file");
+    }
+
+    /** Creates events through {@link Database#createEvent} and returns their ids. */
+    static List<Integer> seedEvents(int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(Database.createEvent(event(i)));
+        return ids;
+    }
+
+    /** Creates {@code events} events, then inserts {@code rows} registrations spread across them the way the app stores them. */
+    static void seedRegistrations(int rows, int events) throws SQLException {
+        List<Integer> ids = seedEvents(Math.max(1, events));
+        try (Connection c = DriverManager.getConnection(jdbcUrl())) {
+            c.setAutoCommit(false);
+            try (PreparedStatement p = c.prepareStatement(
+                    "INSERT INTO registrations(student_name, event_id, tickets, email, phone, created_at) VALUES(?,?,?,?,?,?)")) {
+                for (int i = 0; i < rows; i++) {
+                    p.setString(1, "Student " + i);
+                    p.setInt(2, ids.get(i % ids.size()));
+                    p.setInt(3, 1 + i % 3);
+                    p.setString(4, "student" + i + "@college.edu");
+                    p.setString(5, String.format("98%08d", i));
+                    p.setString(6, String.format("2026-01-%02d %02d:%02d:%02d", 1 + i / 86400 % 28, i / 3600 % 24, i / 60 % 60, i % 60));
+                    p.addBatch();
+                    if (i % 10000 == 9999) p.executeBatch();
+                }
+                p.executeBatch();
+            }
+            c.commit();
+        }
+    }
+
+    static Event event(int i) {
+        Event e = new Event(null, "Event " + i, i % 2 == 0 ? "Technical" : "Cultural", "2026-12-" + (10 + i % 20) + "T10:00", null,
+                "Block " + (char) ('A' + i % 6), repeat("A long description of the event. ", 12), repeat("Rule. ", 10),
+                "Coordinator " + i, "1st: 10,000", "100", null);
+        e.capacity = 500;
+        return e;
+    }
+
+    static Registration registration(int i) {
+        return new Registration(null, "Student " + i, "Event " + (i % 50), 1, "student" + i + "@college.edu", "9800000000", "2026-01-01 10:00:00");
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder(s.length() * n);
+        for (int i = 0; i < n; i++) sb.append(s);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.college.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** {@link Database#getAllEvents} and {@link Database#getEventById} over a 200-event catalog. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventReadBenchmark {
+    private List<Integer> ids;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkDatabase.open();
+        ids = BenchmarkDatabase.seedEvents(200);
+    }
+
+    @Benchmark
+    public List<Event> getAllEvents() {
+        return Database.getAllEvents();
+    }
+
+    @Benchmark
+    public Event getEventById() {
+        return Database.getEventById(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+}
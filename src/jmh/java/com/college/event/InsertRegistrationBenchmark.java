@@ -0,0 +1,46 @@
+package com.college.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** {@link Database#insertRegistration} through the group-commit writer, alone and under contention. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InsertRegistrationBenchmark {
+    private final AtomicInteger seq = new AtomicInteger();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkDatabase.open();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean insertSingle() {
+        int i = seq.incrementAndGet();
+        return Database.insertRegistration("Student " + i, "Event " + (i % 50), 1, "student" + i + "@college.edu", "9800000000").status == RegistrationStore.InsertResult.Status.INSERTED;
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean insertConcurrent() {
+        int i = seq.incrementAndGet();
+        return Database.insertRegistration("Student " + i, "Event " + (i % 50), 1, "student" + i + "@college.edu", "9800000000").status == RegistrationStore.InsertResult.Status.INSERTED;
+    }
+}
@@ -0,0 +1,52 @@
+package com.college.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Recent-registration reads at several table sizes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RegistrationQueryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String deepCursor;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkDatabase.open();
+        BenchmarkDatabase.seedRegistrations(rows, 50);
+        // a cursor roughly halfway through the table, to show page cost does not depend on depth
+        Page<Registration> page = Database.getRegistrationsPage(null, 500);
+        for (int i = 0; i < Math.min(rows / 1000, 1000) && page.nextCursor != null; i++) {
+            deepCursor = page.nextCursor;
+            page = Database.getRegistrationsPage(deepCursor, 500);
+        }
+    }
+
+    @Benchmark
+    public List<Registration> recent50() {
+        return Database.getRecentRegistrations(50);
+    }
+
+    @Benchmark
+    public Page<Registration> deepPage50() {
+        return Database.getRegistrationsPage(deepCursor, 50);
+    }
+}
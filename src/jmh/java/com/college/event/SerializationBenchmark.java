@@ -0,0 +1,58 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Gson serialization of the payloads the API returns most often. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+    @Param({"50", "500"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private List<Event> events;
+    private List<Registration> registrations;
+
+    @Setup
+    public void setup() {
+        events = new ArrayList<>(size);
+        registrations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Event e = BenchmarkDatabase.event(i);
+            e.id = i + 1;
+            events.add(e);
+            Registration r = BenchmarkDatabase.registration(i);
+            r.id = i + 1;
+            registrations.add(r);
+        }
+    }
+
+    @Benchmark
+    public String events() {
+        return gson.toJson(events);
+    }
+
+    @Benchmark
+    public String registrations() {
+        return gson.toJson(registrations);
+    }
+}
@@ -0,0 +1,293 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays registration-day traffic against the app. Unless {@code load.url} points at a running
+ * server, it starts {@link Main} in this JVM on a throwaway database, seeds events through the
+ * admin API and then drives an open-loop mix of event reads, registrations and admin reads.
+ *
+ * <p>Requests are scheduled at fixed (or Poisson) arrival times regardless of how fast responses
+ * come back, and each latency is measured from the time the request was due rather than when it
+ * went out, so a stalled server shows up as latency instead of as a slower send rate.
+ *
+ * <p>Per-endpoint latencies are logged every second to {@code latency.hlog} (HdrHistogram log
+ * format, one tag per endpoint) and the full distributions to {@code <endpoint>.hgrm}, both in
+ * {@code load.out}. A summary of throughput, p50/p99/p99.9 and error rates is printed at the end.
+ */
+public class LoadGenerator {
+    private static final Gson gson = new Gson();
+
+    private final String base;
+    private final LoadProfile profile;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Endpoint[] endpoints;
+    private final List<Integer> eventIds = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String url = Config.get("load.url", "");
+        boolean embedded = url.isEmpty();
+        if (embedded) url = startEmbedded();
+
+        LoadProfile profile = new LoadProfile(
+                Config.get("load.stages", "10s:10-200,30s:200"),
+                Config.get("load.mix", "events=50,event=30,register=15,admin=5"),
+                Config.get("load.arrivals", "uniform").equalsIgnoreCase("poisson"));
+        LoadGenerator gen = new LoadGenerator(url, profile);
+        int code;
+        try {
+            gen.seed(Config.getInt("load.events", 20), Config.getInt("load.capacity", 0));
+            code = gen.run(new File(Config.get("load.out", "target/load"))) ? 0 : 1;
+        } finally {
+            if (embedded) spark.Spark.stop();
+        }
+        System.exit(code);
+    }
+
+    /** Starts the app in this JVM against a temporary database and returns its base URL. */
+    private static String startEmbedded() throws IOException {
+        Path dir = Files.createTempDirectory("event-load");
+        System.setProperty("db.file", dir.resolve("registrations.db").toString());
+        System.setProperty("journal.dir", dir.resolve("journal").toString());
+        if (System.getProperty("server.port") == null) System.setProperty("server.port", "0");
+        // every simulated client shares one address, so per-client limits would only measure themselves
+        if (System.getProperty("ratelimit.enabled") == null) System.setProperty("ratelimit.enabled", "false");
+        Main.main(new String[0]);
+        spark.Spark.awaitInitialization();
+        String url = "http://localhost:" + spark.Spark.port();
+        System.out.println("Started app at " + url + " (database in " + dir + ")");
+        return url;
+    }
+
+    public LoadGenerator(String base, LoadProfile profile) {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.profile = profile;
+        this.timeout = Duration.ofMillis(Config.getLong("load.timeoutMs", 10000));
+        this.maxInFlight = Config.getInt("load.maxInFlight", 10000);
+        ExecutorService io = Executors.newFixedThreadPool(Config.getInt("load.clientThreads", 8), r -> {
+            Thread t = new Thread(r, "load-client");
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .cookieHandler(new CookieManager())
+                .connectTimeout(timeout)
+                .executor(io)
+                .build();
+        this.endpoints = new Endpoint[profile.endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) endpoints[i] = new Endpoint(profile.endpoints[i]);
+    }
+
+    /** Logs in as admin (the session cookie is reused for admin reads) and creates the events to register for. */
+    public void seed(int events, int capacity) throws IOException, InterruptedException {
+        HttpResponse<String> login = client.send(post("/api/admin/login",
+                Map.of("username", Config.get("load.adminUser", "admin"), "password", Config.get("load.adminPassword", "admin"))),
+                HttpResponse.BodyHandlers.ofString());
+        if (login.statusCode() != 200) throw new IllegalStateException("admin login failed: " + login.body());
+        for (int i = 0; i < events; i++) {
+            Event e = new Event(null, "Load Event " + i + " " + System.currentTimeMillis(), i % 2 == 0 ? "technical" : "cultural",
+                    "2030-01-01 10:00", "2030-01-01 18:00", "Hall " + i, "Load test event", null, null, null, "0", null);
+            e.capacity = capacity > 0 ? capacity : null;
+            HttpResponse<String> r = client.send(post("/api/admin/events", e), HttpResponse.BodyHandlers.ofString());
+            Map<?, ?> body = gson.fromJson(r.body(), Map.class);
+            if (r.statusCode() != 200 || body.get("id") == null) throw new IllegalStateException("creating event failed: " + r.body());
+            eventIds.add(((Number) body.get("id")).intValue());
+        }
+        System.out.println("Seeded " + events + " events" + (capacity > 0 ? " with " + capacity + " seats each" : ""));
+    }
+
+    /** Runs the profile, writes the histogram files and prints the summary; returns false if any request failed. */
+    public boolean run(File outDir) throws IOException {
+        if (!outDir.isDirectory() && !outDir.mkdirs()) throw new IOException("cannot create " + outDir);
+        Random rnd = new Random();
+        long total = profile.totalNanos();
+        long start = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        // start each endpoint's first interval now, not when the generator was built
+        for (Endpoint e : endpoints) e.interval = e.recorder.getIntervalHistogram();
+
+        try (PrintStream hlog = new PrintStream(new FileOutputStream(new File(outDir, "latency.hlog")))) {
+            HistogramLogWriter writer = new HistogramLogWriter(hlog);
+            writer.outputComment("college-event load run: stages=" + Config.get("load.stages", "10s:10-200,30s:200")
+                    + " mix=" + Config.get("load.mix", "events=50,event=30,register=15,admin=5") + " (values in microseconds)");
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startMillis);
+            writer.setBaseTime(startMillis);
+            writer.outputLegend();
+
+            long next = start;
+            long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report(writer, (nextReport - start) / 1_000_000_000L, profile.rateAt(nextReport - start - 1));
+                    nextReport += TimeUnit.SECONDS.toNanos(1);
+                }
+                if (next - start >= total) break;
+                if (now < next) {
+                    LockSupport.parkNanos(Math.min(next, nextReport) - now);
+                    continue;
+                }
+                double rate = profile.rateAt(next - start);
+                if (rate < 0.001) {
+                    // idle stretch of the ramp; look again in a millisecond
+                    next += 1_000_000L;
+                    continue;
+                }
+                fire(endpoints[profile.pick(rnd)], next, rnd);
+                next += Math.max(1, profile.nextGapNanos(rate, rnd));
+            }
+            // let the last requests finish (or time out) so they are counted
+            long deadline = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) LockSupport.parkNanos(10_000_000L);
+            report(writer, (System.nanoTime() - start) / 1_000_000_000L, 0);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        boolean clean = true;
+        System.out.println();
+        System.out.printf("%-10s %9s %9s %9s %9s %9s %9s %7s %7s %7s%n",
+                "endpoint", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "errors", "err %");
+        for (Endpoint e : endpoints) {
+            Histogram h = e.total;
+            long count = e.ok.sum() + e.clientErrors.sum() + e.errors.sum();
+            System.out.printf("%-10s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %7.2f%n",
+                    e.name, count, count / seconds,
+                    h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+                    h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0,
+                    e.clientErrors.sum(), e.errors.sum(), count == 0 ? 0 : 100.0 * e.errors.sum() / count);
+            try (PrintStream out = new PrintStream(new FileOutputStream(new File(outDir, e.name + ".hgrm")))) {
+                h.outputPercentileDistribution(out, 1000.0);
+            }
+            if (e.errors.sum() > 0) clean = false;
+        }
+        System.out.println("Histograms written to " + outDir.getPath() + " (latency.hlog, <endpoint>.hgrm; values in ms)");
+        return clean;
+    }
+
+    private void fire(Endpoint e, long due, Random rnd) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            // the client itself is saturated; count it rather than silently slowing the arrival rate
+            inFlight.decrementAndGet();
+            e.errors.increment();
+            return;
+        }
+        HttpRequest req = request(e.name, rnd);
+        client.sendAsync(req, HttpResponse.BodyHandlers.discarding()).whenComplete((res, err) -> {
+            long micros = Math.max(1, (System.nanoTime() - due) / 1000);
+            e.recorder.recordValue(micros);
+            if (err != null || res.statusCode() >= 500) {
+                e.errors.increment();
+            } else if (res.statusCode() >= 400) {
+                e.clientErrors.increment();
+            } else {
+                e.ok.increment();
+            }
+            inFlight.decrementAndGet();
+        });
+    }
+
+    private HttpRequest request(String endpoint, Random rnd) {
+        int eventId = eventIds.get(rnd.nextInt(eventIds.size()));
+        switch (endpoint) {
+            case "events":
+                return get("/api/events");
+            case "event":
+                return get("/api/events/" + eventId);
+            case "seats":
+                return get("/api/events/" + eventId + "/seats");
+            case "register": {
+                long n = sequence.incrementAndGet();
+                Registration r = new Registration();
+                r.id = eventId; // the register endpoint reads the event id from "id"
+                r.studentName = "Load Student " + n;
+                r.tickets = 1 + rnd.nextInt(2);
+                r.email = "load" + n + "@example.com";
+                r.phone = String.valueOf(9000000000L + n);
+                return post("/api/register", r);
+            }
+            case "lookup":
+                return get("/api/registrations/lookup?email=load" + (1 + rnd.nextInt((int) Math.max(1, sequence.get()))) + "@example.com");
+            case "admin":
+                return get("/api/admin/registrations?pageSize=50");
+            default:
+                throw new IllegalArgumentException("unknown endpoint in load.mix: " + endpoint);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(timeout)
+                .header("Accept-Encoding", "gzip").GET().build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body))).build();
+    }
+
+    /** Moves each endpoint's last interval into its totals and the log, and prints one progress line. */
+    private void report(HistogramLogWriter writer, long second, double targetRate) {
+        long done = 0;
+        long failed = 0;
+        for (Endpoint e : endpoints) {
+            e.interval = e.recorder.getIntervalHistogram(e.interval);
+            e.interval.setTag(e.name);
+            if (e.interval.getTotalCount() > 0) writer.outputIntervalHistogram(e.interval);
+            e.total.add(e.interval);
+            done += e.interval.getTotalCount();
+            long errs = e.errors.sum();
+            failed += errs - e.reportedErrors;
+            e.reportedErrors = errs;
+        }
+        System.out.printf("t=%3ds target=%7.1f/s completed=%7d/s errors=%d in-flight=%d%n",
+                second, targetRate, done, failed, inFlight.get());
+    }
+
+    private static final class Endpoint {
+        final String name;
+        final Recorder recorder = new Recorder(3);
+        final Histogram total = new Histogram(3);
+        Histogram interval;
+        final LongAdder ok = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        long reportedErrors;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.college.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * What the load generator sends and how fast: a ramp made of stages and a weighted mix of
+ * endpoints.
+ *
+ * <p>Stages are written {@code duration:rate} or {@code duration:from-to}, comma separated, with
+ * rates in requests per second and durations such as {@code 500ms}, {@code 30s} or {@code 2m}.
+ * Within a stage the rate moves linearly from {@code from} to {@code to}. The mix is
+ * {@code name=weight} pairs, for example {@code events=50,event=30,register=15,admin=5}.
+ */
+public final class LoadProfile {
+    public static final class Stage {
+        public final long durationNanos;
+        public final double fromRate;
+        public final double toRate;
+
+        Stage(long durationNanos, double fromRate, double toRate) {
+            this.durationNanos = durationNanos;
+            this.fromRate = fromRate;
+            this.toRate = toRate;
+        }
+    }
+
+    public final List<Stage> stages;
+    public final String[] endpoints;
+    private final int[] cumulative;
+    private final boolean poisson;
+
+    public LoadProfile(String stages, String mix, boolean poisson) {
+        this.stages = parseStages(stages);
+        String[] parts = mix.split(",");
+        this.endpoints = new String[parts.length];
+        this.cumulative = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] kv = parts[i].trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("bad mix entry: " + parts[i]);
+            endpoints[i] = kv[0].trim();
+            total += Integer.parseInt(kv[1].trim());
+            cumulative[i] = total;
+        }
+        if (total <= 0) throw new IllegalArgumentException("mix weights must add up to more than zero");
+        this.poisson = poisson;
+    }
+
+    public long totalNanos() {
+        long t = 0;
+        for (Stage s : stages) t += s.durationNanos;
+        return t;
+    }
+
+    /** Target arrival rate (requests per second) at {@code elapsed} nanos into the run; 0 once the run is over. */
+    public double rateAt(long elapsed) {
+        for (Stage s : stages) {
+            if (elapsed < s.durationNanos) {
+                return s.fromRate + (s.toRate - s.fromRate) * ((double) elapsed / s.durationNanos);
+            }
+            elapsed -= s.durationNanos;
+        }
+        return 0;
+    }
+
+    /** Gap to the next arrival at the given rate: fixed spacing, or exponential for Poisson arrivals. */
+    public long nextGapNanos(double rate, Random rnd) {
+        double mean = 1e9 / rate;
+        if (!poisson) return (long) mean;
+        return (long) (-Math.log(1 - rnd.nextDouble()) * mean);
+    }
+
+    /** Index into {@link #endpoints} drawn according to the mix weights. */
+    public int pick(Random rnd) {
+        int r = rnd.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+
+    private static List<Stage> parseStages(String spec) {
+        List<Stage> out = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            int colon = p.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("bad stage (want duration:rate): " + p);
+            long nanos = parseDuration(p.substring(0, colon).trim());
+            String rates = p.substring(colon + 1).trim();
+            int dash = rates.indexOf('-');
+            double from = Double.parseDouble(dash < 0 ? rates : rates.substring(0, dash));
+            double to = dash < 0 ? from : Double.parseDouble(rates.substring(dash + 1));
+            out.add(new Stage(nanos, from, to));
+        }
+        return out;
+    }
+
+    private static long parseDuration(String s) {
+        if (s.endsWith("ms")) return Long.parseLong(s.substring(0, s.length() - 2)) * 1_000_000L;
+        if (s.endsWith("s")) return Long.parseLong(s.substring(0, s.length() - 1)) * 1_000_000_000L;
+        if (s.endsWith("m")) return Long.parseLong(s.substring(0, s.length() - 1)) * 60_000_000_000L;
+        return Long.parseLong(s) * 1_000_000_000L;
+    }
+}
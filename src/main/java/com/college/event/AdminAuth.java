@@ -0,0 +1,270 @@
+package com.college.event;
+
+import spark.Request;
+import spark.Response;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admin sign-in. Passwords are checked against {@link PasswordHash} values on a small bounded
+ * executor ({@code auth.hashThreads}, {@code auth.hashQueue}), so a burst of logins costs at most
+ * that many cores. The request thread blocks until its hash is done, so a login that would have to
+ * wait behind other queued hashes is answered BUSY at once, and one that is still waiting after
+ * {@code auth.hashTimeoutMs} gives up; either way Jetty's threads are not held by a login flood. A
+ * successful login gets a random token in the {@code admin_session} cookie; tokens live only in
+ * memory for {@code auth.sessionTtlMs}, so checking one is a map lookup and never touches the
+ * database. Logging out revokes the token, changing a password revokes all of that user's
+ * tokens, and a restart revokes them all.
+ * <p>
+ * When the storage backend shares sessions between nodes ({@link UserStore#sharesSessions}),
+ * each new session is also saved there under a SHA-256 of its token. A token this node does not
+ * know is looked up once and then cached like its own, and a cached one is checked again every
+ * {@code auth.sessionRecheckMs}, so a logout or password change on another node takes effect here
+ * within that time.
+ */
+public final class AdminAuth {
+    public static final String COOKIE = "admin_session";
+    private static final SecureRandom random = new SecureRandom();
+
+    public enum Status { OK, INVALID, BUSY }
+
+    /** Outcome of {@link #login} or {@link #changePassword}; {@code token} is set only when OK. */
+    public static final class Result {
+        public final Status status;
+        public final String token;
+
+        Result(Status status, String token) {
+            this.status = status;
+            this.token = token;
+        }
+    }
+
+    // package-private so tests can keep it busy
+    final ThreadPoolExecutor hashing;
+    private final long hashTimeoutMs;
+    private final long ttlNanos;
+    private final long recheckNanos;
+    private final int maxSessions;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // compared against when the user does not exist, so unknown names take as long as wrong passwords;
+    // made on the hashing executor so it does not hold up startup
+    private final Future<String> decoy;
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+
+    public AdminAuth() {
+        int threads = Math.max(1, Config.getInt("auth.hashThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        AtomicInteger n = new AtomicInteger();
+        hashing = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, Config.getInt("auth.hashQueue", 32))),
+                r -> {
+                    Thread t = new Thread(r, "auth-hash-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        hashTimeoutMs = Config.getLong("auth.hashTimeoutMs", 1000);
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(Config.getLong("auth.sessionTtlMs", 8 * 3600 * 1000L));
+        maxSessions = Math.max(1, Config.getInt("auth.maxSessions", 1000));
+        recheckNanos = TimeUnit.MILLISECONDS.toNanos(Config.getLong("auth.sessionRecheckMs", 5000));
+        decoy = hashing.submit(() -> PasswordHash.hash("decoy"));
+    }
+
+    /** Verifies the credentials and opens a session; an outdated hash is upgraded in the background. */
+    public Result login(String username, String password) {
+        String stored = Database.getAdminPasswordHash(username);
+        Boolean ok = onHashThread(() -> PasswordHash.verify(password, stored != null ? stored : decoy.get()) && stored != null);
+        if (ok == null) return new Result(Status.BUSY, null);
+        if (!ok) {
+            failures.increment();
+            return new Result(Status.INVALID, null);
+        }
+        if (PasswordHash.needsRehash(stored)) {
+            try {
+                hashing.execute(() -> Database.updatePasswordHash(username, PasswordHash.hash(password), stored));
+            } catch (RejectedExecutionException ignored) {
+                // upgraded at a later login instead
+            }
+        }
+        logins.increment();
+        return new Result(Status.OK, open(username));
+    }
+
+    /** Sets a new password after checking the current one; every other session of the user is revoked. */
+    public Result changePassword(String username, String current, String next) {
+        String stored = Database.getAdminPasswordHash(username);
+        if (stored == null) return new Result(Status.INVALID, null);
+        String hash = onHashThread(() -> PasswordHash.verify(current, stored) ? PasswordHash.hash(next) : "");
+        if (hash == null) return new Result(Status.BUSY, null);
+        if (hash.isEmpty() || !Database.updatePasswordHash(username, hash, stored)) {
+            failures.increment();
+            return new Result(Status.INVALID, null);
+        }
+        revokeUser(username);
+        return new Result(Status.OK, open(username));
+    }
+
+    // runs hash work on the bounded executor and waits for it; null when others are already queued or it is too slow to answer
+    private <T> T onHashThread(Callable<T> work) {
+        if (!hashing.getQueue().isEmpty()) {
+            busy.increment();
+            return null;
+        }
+        Future<T> f;
+        try {
+            f = hashing.submit(work);
+        } catch (RejectedExecutionException e) {
+            busy.increment();
+            return null;
+        }
+        try {
+            return f.get(hashTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            // a cancelled job left in the queue would turn the next logins away as well
+            hashing.purge();
+            busy.increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Password hashing failed: " + e.getCause());
+            return null;
+        }
+    }
+
+    private String open(String username) {
+        byte[] b = new byte[32];
+        random.nextBytes(b);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+        long now = System.nanoTime();
+        if (sessions.size() >= maxSessions) evict(now);
+        sessions.put(token, new Session(username, now + ttlNanos, now));
+        UserStore store = Database.storage();
+        if (store.sharesSessions()) {
+            store.saveSession(PasswordHash.tokenHash(token), username, System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+        }
+        return token;
+    }
+
+    // drops expired sessions, then the one closest to expiry if that freed nothing
+    private void evict(long now) {
+        sessions.values().removeIf(s -> s.expiresAt - now <= 0);
+        if (sessions.size() < maxSessions) return;
+        String oldest = null;
+        long at = Long.MAX_VALUE;
+        for (Map.Entry<String, Session> e : sessions.entrySet()) {
+            if (oldest == null || e.getValue().expiresAt - at < 0) {
+                oldest = e.getKey();
+                at = e.getValue().expiresAt;
+            }
+        }
+        if (oldest != null) sessions.remove(oldest);
+    }
+
+    /** The admin signed in on this request, or null. */
+    public String user(Request req) {
+        String token = req.cookie(COOKIE);
+        if (token == null) return null;
+        Session s = sessions.get(token);
+        UserStore store = Database.storage();
+        if (s == null && !store.sharesSessions()) return null;
+        long now = System.nanoTime();
+        if (s != null && s.expiresAt - now <= 0) {
+            sessions.remove(token, s);
+            return null;
+        }
+        if (s != null && (!store.sharesSessions() || now - s.checkedAt < recheckNanos)) return s.username;
+        // opened on another node, or possibly ended there since it was last checked
+        String username = store.findSession(PasswordHash.tokenHash(token));
+        if (username == null) {
+            if (s != null) sessions.remove(token, s);
+            return null;
+        }
+        if (s == null) {
+            if (sessions.size() >= maxSessions) evict(now);
+            sessions.put(token, new Session(username, now + ttlNanos, now));
+        } else {
+            s.checkedAt = now;
+        }
+        return username;
+    }
+
+    public void setCookie(Response res, String token) {
+        long maxAge = TimeUnit.NANOSECONDS.toSeconds(ttlNanos);
+        res.raw().addHeader("Set-Cookie", COOKIE + "=" + token + "; Path=/; Max-Age=" + maxAge + "; HttpOnly; SameSite=Strict");
+    }
+
+    /** Revokes this request's session, if any, and clears its cookie. */
+    public void logout(Request req, Response res) {
+        String token = req.cookie(COOKIE);
+        if (token != null && sessions.remove(token) != null) revoked.increment();
+        UserStore store = Database.storage();
+        if (token != null && store.sharesSessions()) store.deleteSession(PasswordHash.tokenHash(token));
+        res.raw().addHeader("Set-Cookie", COOKIE + "=; Path=/; Max-Age=0; HttpOnly; SameSite=Strict");
+    }
+
+    /** Revokes every session of {@code username}; returns how many there were. */
+    public int revokeUser(String username) {
+        int n = 0;
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (it.next().username.equals(username)) {
+                it.remove();
+                n++;
+            }
+        }
+        revoked.add(n);
+        UserStore store = Database.storage();
+        if (store.sharesSessions()) store.deleteSessions(username);
+        return n;
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.sessions = sessions.size();
+        s.logins = logins.sum();
+        s.failures = failures.sum();
+        s.busy = busy.sum();
+        s.revoked = revoked.sum();
+        s.hashQueued = hashing.getQueue().size();
+        return s;
+    }
+
+    public static class Stats {
+        public int sessions;
+        public long logins;
+        public long failures;
+        public long busy;
+        public long revoked;
+        public int hashQueued;
+    }
+
+    private static final class Session {
+        final String username;
+        final long expiresAt;
+        volatile long checkedAt; // when shared storage last confirmed it
+
+        Session(String username, long expiresAt, long checkedAt) {
+            this.username = username;
+            this.expiresAt = expiresAt;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import spark.Request;
+import spark.Response;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
+import static spark.Spark.halt;
+
+/**
+ * Admission control for {@code /api/*}, installed as Spark filters ahead of every route. Each
+ * request is put in a route group and charged against a token bucket for its client IP and that
+ * group; an empty bucket is answered at once with 429 and a Retry-After of when the next token
+ * is due. Groups that reach the database also need one of {@code admission.maxConcurrent}
+ * permits, so a flood queues here for at most {@code admission.queueTimeoutMs} and is then turned
+ * away with 503 instead of piling up on connection checkouts behind real registrations.
+ * <p>
+ * Buckets are a single {@link AtomicLong} updated by compare-and-set (the generic cell rate
+ * algorithm: the time at which the bucket will be full again), so charging one never blocks.
+ * A full bucket is indistinguishable from a new one, so a sweeper drops those every
+ * {@code ratelimit.sweepMs}; past {@code ratelimit.maxClients} live buckets, new clients share one
+ * bucket per group until the sweeper frees room.
+ * <p>
+ * Buckets are keyed by the peer address. Behind a reverse proxy that is the proxy for everyone, so
+ * {@code ratelimit.trustForwardedFor} must be enabled there: the key is then the address the
+ * proxy appended to {@code X-Forwarded-For}, counted {@code ratelimit.proxyHops} entries from the
+ * right, since entries further left are whatever the client chose to send.
+ */
+public final class AdmissionControl {
+    private static final Gson gson = new Gson();
+    private static final String PERMIT = "admission.permit";
+    private static final long INLINE_SWEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** Requests sharing a rate and whether they hold a database permit. */
+    static final class Group {
+        final String name;
+        final long intervalNanos;
+        final long burstNanos;
+        final boolean database;
+        final LongAdder limited = new LongAdder();
+
+        Group(String name, double perSecond, int burst, boolean database) {
+            this.name = name;
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(perSecond, 0.001));
+            // a full bucket admits burst requests back to back
+            this.burstNanos = intervalNanos * Math.max(1, burst);
+            this.database = database;
+        }
+
+        static Group fromConfig(String name, double perSecond, int burst, boolean database) {
+            return new Group(name,
+                    Config.getDouble("ratelimit." + name + ".perSecond", perSecond),
+                    Config.getInt("ratelimit." + name + ".burst", burst),
+                    database);
+        }
+    }
+
+    private final boolean enabled;
+    private final boolean trustForwardedFor;
+    private final int proxyHops;
+    private final AtomicBoolean warnedForwarded = new AtomicBoolean();
+    private final int maxClients;
+    private final Group register;
+    private final Group login;
+    private final Group lookup;
+    private final Group admin;
+    private final Group read;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final int maxConcurrent;
+    private final long queueTimeoutMs;
+    private final Semaphore database;
+    private final LongAdder overloaded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public AdmissionControl() {
+        enabled = Config.getBoolean("ratelimit.enabled", true);
+        trustForwardedFor = Config.getBoolean("ratelimit.trustForwardedFor", false);
+        proxyHops = Math.max(1, Config.getInt("ratelimit.proxyHops", 1));
+        maxClients = Math.max(1, Config.getInt("ratelimit.maxClients", 100000));
+        // per address, and a campus NAT puts many students behind one
+        register = Group.fromConfig("register", 20, 100, true);
+        login = Group.fromConfig("login", 1, 10, true);
+        lookup = Group.fromConfig("lookup", 30, 120, true);
+        admin = Group.fromConfig("admin", 20, 100, true);
+        read = Group.fromConfig("read", 100, 400, false);
+        maxConcurrent = Math.max(1, Config.getInt("admission.maxConcurrent", 64));
+        queueTimeoutMs = Math.max(0, Config.getLong("admission.queueTimeoutMs", 50));
+        database = new Semaphore(maxConcurrent);
+
+        long sweepMs = Math.max(100, Config.getLong("ratelimit.sweepMs", 10000));
+        Thread sweeper = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(sweepMs);
+                    sweep();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "ratelimit-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /** Adds the filters; call after the metrics filters so turned-away requests are still timed. */
+    public void install() {
+        before("/api/*", this::admit);
+        afterAfter((req, res) -> {
+            if (req.attribute(PERMIT) != null) {
+                req.raw().removeAttribute(PERMIT);
+                database.release();
+            }
+        });
+    }
+
+    private void admit(Request req, Response res) throws InterruptedException {
+        Group group = classify(req.pathInfo());
+        if (group == null) return;
+        if (enabled) {
+            long waitNanos = charge(group, clientIp(req));
+            if (waitNanos > 0) {
+                group.limited.increment();
+                reject(res, 429, waitNanos, "Too many requests; please slow down");
+            }
+        }
+        if (group.database) {
+            if (!database.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                overloaded.increment();
+                reject(res, 503, TimeUnit.SECONDS.toNanos(1), "The server is busy; please try again shortly");
+            }
+            req.attribute(PERMIT, Boolean.TRUE);
+        }
+    }
+
+    private static void reject(Response res, int status, long waitNanos, String message) {
+        res.type("application/json");
+        res.header("Retry-After", String.valueOf(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000)));
+        halt(status, gson.toJson(Map.of("success", false, "message", message)));
+    }
+
+    /** The group a request is charged to, or null for endpoints that are never limited. */
+    Group classify(String path) {
+        if (path.equals("/api/health") || path.equals("/api/metrics")) return null;
+        if (path.equals("/api/register")) return register;
+        // both run a password hash
+        if (path.equals("/api/admin/login") || path.equals("/api/admin/password")) return login;
+        if (path.startsWith("/api/admin/")) return admin;
+        if (path.startsWith("/api/registrations")) return lookup;
+        return read;
+    }
+
+    private String clientIp(Request req) {
+        String forwarded = req.headers("X-Forwarded-For");
+        if (forwarded == null || forwarded.isEmpty()) return req.ip();
+        if (!trustForwardedFor) {
+            if (warnedForwarded.compareAndSet(false, true)) {
+                System.err.println("Requests carry X-Forwarded-For but ratelimit.trustForwardedFor is off; "
+                        + "if a proxy sets it, every client behind it shares one rate limit");
+            }
+            return req.ip();
+        }
+        return forwardedAddress(forwarded, proxyHops, req.ip());
+    }
+
+    // The entry the given number of trusted proxies from the right; a shorter list came from a client or proxy we do not know
+    static String forwardedAddress(String forwarded, int hops, String fallback) {
+        String[] parts = forwarded.split(",");
+        if (parts.length < hops) return fallback;
+        String ip = parts[parts.length - hops].trim();
+        return ip.isEmpty() ? fallback : ip;
+    }
+
+    /** Takes one token from the client's bucket; returns 0 if admitted, else nanos until a token is due. */
+    long charge(Group group, String ip) {
+        String key = group.name + '|' + ip;
+        Bucket b = buckets.get(key);
+        if (b == null) {
+            if (buckets.size() >= maxClients) {
+                long now = System.nanoTime();
+                long last = lastSweep.get();
+                if (now - last >= INLINE_SWEEP_NANOS && lastSweep.compareAndSet(last, now)) sweep();
+                // still full: new clients share a bucket until idle ones are dropped
+                if (buckets.size() >= maxClients) key = group.name + "|*";
+            }
+            b = buckets.computeIfAbsent(key, k -> new Bucket());
+        }
+        return b.take(group, System.nanoTime());
+    }
+
+    /** Drops buckets that have refilled completely; a later request simply starts a new one. */
+    void sweep() {
+        long now = System.nanoTime();
+        lastSweep.set(now);
+        // a request racing the removal may charge the dropped bucket; at worst it is one token it did not pay for
+        buckets.entrySet().removeIf(e -> {
+            boolean idle = e.getValue().full(now);
+            if (idle) evicted.increment();
+            return idle;
+        });
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.enabled = enabled;
+        s.clients = buckets.size();
+        s.evicted = evicted.sum();
+        s.limited = register.limited.sum() + login.limited.sum() + lookup.limited.sum() + admin.limited.sum() + read.limited.sum();
+        s.inFlight = maxConcurrent - database.availablePermits();
+        s.maxConcurrent = maxConcurrent;
+        s.overloaded = overloaded.sum();
+        return s;
+    }
+
+    public static class Stats {
+        public boolean enabled;
+        public int clients;
+        public long evicted;
+        public long limited;
+        public int inFlight;
+        public int maxConcurrent;
+        public long overloaded;
+    }
+
+    private static final class Bucket {
+        // when the bucket will be full again; a request may go ahead while this is at most burst ahead of now
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+        long take(Group g, long now) {
+            while (true) {
+                long at = fullAt.get();
+                long next = (at == Long.MIN_VALUE || at - now < 0 ? now : at) + g.intervalNanos;
+                long ahead = next - now;
+                if (ahead > g.burstNanos) return ahead - g.burstNanos;
+                if (fullAt.compareAndSet(at, next)) return 0;
+            }
+        }
+
+        boolean full(long now) {
+            long at = fullAt.get();
+            return at == Long.MIN_VALUE || at - now <= 0;
+        }
+    }
+}
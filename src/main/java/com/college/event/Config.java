@@ -0,0 +1,43 @@
+package com.college.event;
+
+/**
+ * Runtime settings. A key such as {@code db.pool.readers} is looked up as a system property
+ * ({@code -Ddb.pool.readers=8}) first and then as an environment variable ({@code DB_POOL_READERS}).
+ */
+public final class Config {
+    private Config() {}
+
+    public static String get(String key, String def) {
+        String v = System.getProperty(key);
+        if (v == null) v = System.getenv(key.toUpperCase().replace('.', '_'));
+        return v == null || v.trim().isEmpty() ? def : v.trim();
+    }
+
+    public static int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static long getLong(String key, long def) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static double getDouble(String key, double def) {
+        try {
+            return Double.parseDouble(get(key, String.valueOf(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        return Boolean.parseBoolean(get(key, String.valueOf(def)));
+    }
+}
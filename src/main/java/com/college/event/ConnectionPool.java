@@ -0,0 +1,232 @@
+package com.college.event;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of long-lived SQLite connections: a single writer plus a fixed set of readers.
+ * SQLite allows only one writer at a time, so handing out one writer connection turns lock
+ * contention on the database file into an ordinary queue in the JVM. Every pooled connection
+ * keeps its own prepared-statement cache. Readers are opened when a checkout finds none idle, up
+ * to the configured count, so a process that reads little (the Swing form) opens few.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final BlockingQueue<PooledConnection> writer = new ArrayBlockingQueue<>(1);
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> all = new ArrayList<>(); // guarded by itself
+    private final long checkoutTimeoutMs;
+    private final String jdbcUrl;
+    private final java.util.Properties readerProperties;
+    private final int maxReaders;
+    private final AtomicInteger openReaders = new AtomicInteger();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param journalMode SQLite journal mode applied by the writer when it opens, e.g. {@code WAL}
+     * @param synchronous SQLite synchronous level for the writer, e.g. {@code FULL} or {@code NORMAL}
+     */
+    public ConnectionPool(String jdbcUrl, int readerCount, long checkoutTimeoutMs, int busyTimeoutMs,
+                          String journalMode, String synchronous) throws SQLException {
+        this.checkoutTimeoutMs = checkoutTimeoutMs;
+        this.jdbcUrl = jdbcUrl;
+        this.maxReaders = Math.max(1, readerCount);
+        this.readers = new ArrayBlockingQueue<>(maxReaders);
+
+        SQLiteConfig writerConfig = new SQLiteConfig();
+        writerConfig.setBusyTimeout(busyTimeoutMs);
+        writerConfig.setPragma(SQLiteConfig.Pragma.JOURNAL_MODE, journalMode);
+        writerConfig.setPragma(SQLiteConfig.Pragma.SYNCHRONOUS, synchronous);
+        PooledConnection w = new PooledConnection(DriverManager.getConnection(jdbcUrl, writerConfig.toProperties()));
+        all.add(w);
+        writer.add(w);
+
+        // readers are opened after the writer so the database file already exists
+        SQLiteConfig readerConfig = new SQLiteConfig();
+        readerConfig.setBusyTimeout(busyTimeoutMs);
+        readerConfig.setReadOnly(true);
+        readerProperties = readerConfig.toProperties();
+    }
+
+    /** Checks out the single writer connection; use for anything that modifies the database. */
+    public Lease writer() throws SQLException {
+        return checkout(writer);
+    }
+
+    /** Checks out a read-only connection. */
+    public Lease reader() throws SQLException {
+        if (readers.isEmpty()) openReader();
+        return checkout(readers);
+    }
+
+    // one more reader, unless all of them are open already; a connection returned meanwhile only means one idles
+    private void openReader() throws SQLException {
+        int n;
+        do {
+            n = openReaders.get();
+            if (n >= maxReaders) return;
+        } while (!openReaders.compareAndSet(n, n + 1));
+        PooledConnection r;
+        try {
+            r = new PooledConnection(DriverManager.getConnection(jdbcUrl, readerProperties));
+        } catch (SQLException e) {
+            openReaders.decrementAndGet();
+            throw e;
+        }
+        synchronized (all) {
+            all.add(r);
+        }
+        readers.add(r);
+    }
+
+    private Lease checkout(BlockingQueue<PooledConnection> queue) throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection pc = queue.poll();
+        if (pc == null) {
+            waiters.incrementAndGet();
+            try {
+                pc = queue.poll(checkoutTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            } finally {
+                waiters.decrementAndGet();
+            }
+            if (pc == null) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + checkoutTimeoutMs + " ms waiting for a database connection");
+            }
+        }
+        long waited = System.nanoTime() - start;
+        checkouts.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        active.incrementAndGet();
+        return new Lease(pc, queue);
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.readers = openReaders.get();
+        s.active = active.get();
+        s.waiters = waiters.get();
+        s.idleReaders = readers.size();
+        s.checkouts = checkouts.sum();
+        s.timeouts = timeouts.sum();
+        s.avgCheckoutMicros = s.checkouts == 0 ? 0 : waitNanos.sum() / s.checkouts / 1000;
+        s.maxCheckoutMicros = maxWaitNanos.get() / 1000;
+        return s;
+    }
+
+    @Override
+    public void close() {
+        synchronized (all) {
+            for (PooledConnection pc : all) pc.close();
+        }
+    }
+
+    /** Snapshot of pool usage, serialized as-is by the health endpoint. */
+    public static class Stats {
+        public int readers;
+        public int active;
+        public int waiters;
+        public int idleReaders;
+        public long checkouts;
+        public long timeouts;
+        public long avgCheckoutMicros;
+        public long maxCheckoutMicros;
+    }
+
+    /**
+     * A checked-out connection. Statements returned by {@link #prepare} are owned by the cache and
+     * must not be closed by the caller; result sets still must be.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledConnection pc;
+        private final BlockingQueue<PooledConnection> home;
+        private boolean released;
+
+        private Lease(PooledConnection pc, BlockingQueue<PooledConnection> home) {
+            this.pc = pc;
+            this.home = home;
+        }
+
+        public Connection connection() {
+            return pc.conn;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return pc.prepare(sql, java.sql.Statement.NO_GENERATED_KEYS);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            return pc.prepare(sql, autoGeneratedKeys);
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            try {
+                // never hand out a connection with a half-finished transaction
+                if (!pc.conn.getAutoCommit()) {
+                    pc.conn.rollback();
+                    pc.conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            active.decrementAndGet();
+            home.offer(pc);
+        }
+    }
+
+    private static final class PooledConnection {
+        final Connection conn;
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == java.sql.Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+            PreparedStatement ps = statements.get(key);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        void close() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+            statements.clear();
+            try { conn.close(); } catch (SQLException ignored) {}
+        }
+    }
+}
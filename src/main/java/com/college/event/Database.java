@@ -1,363 +1,325 @@
 package com.college.event;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.sql.*;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
+/**
+ * Static entry point to storage, kept so callers need not pass a store around. The backend is
+ * chosen by {@code storage.backend} when this class loads: {@code sqlite} (the default) keeps
+ * everything in a local file for a single node; {@code jdbc} uses a database server shared by
+ * every node behind a load balancer. Everything here forwards to that {@link Storage}.
+ */
 public class Database {
-    private static final String DB_FILE = "registrations.db";
-    private static final String SQL_LOG = "registrations.sql";
-    private static final String JDBC_URL = "jdbc:sqlite:" + DB_FILE;
+    private static final Storage storage = openStorage();
 
-    public static void initDatabase() {
-        try (Connection conn = DriverManager.getConnection(JDBC_URL)) {
-            if (conn != null) {
-                try (Statement stmt = conn.createStatement()) {
-                    String sql = "CREATE TABLE IF NOT EXISTS registrations (" +
-                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                            "student_name TEXT NOT NULL, " +
-                            "event_name TEXT NOT NULL, " +
-                            "tickets INTEGER NOT NULL, " +
-                            "email TEXT, " +
-                            "phone TEXT, " +
-                            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP" +
-                            ");";
-                    stmt.execute(sql);
+    // event_name is only stored for rows whose event is gone or never existed; see readRegistration
+    static final String REGISTRATION_COLUMNS = "id, student_name, event_name, event_id, tickets, email, phone, created_at, status";
+
+    private static Storage openStorage() {
+        String backend = Config.get("storage.backend", "sqlite");
+        switch (backend.toLowerCase()) {
+            case "sqlite":
+                return new SqliteStorage();
+            case "jdbc":
+                try {
+                    return new JdbcStorage();
+                } catch (SQLException ex) {
+                    throw new ExceptionInInitializerError(ex);
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            default:
+                throw new ExceptionInInitializerError("Unknown storage.backend " + backend + "; use sqlite or jdbc");
         }
+    }
 
-        // Ensure SQL log exists
-        try {
-            File f = new File(SQL_LOG);
-            if (!f.exists()) f.createNewFile();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /** The backend every method here forwards to. */
+    public static Storage storage() {
+        return storage;
     }
 
-    // Extended DB initialization: events and users tables and schema updates
-    static {
-        try (Connection conn = DriverManager.getConnection(JDBC_URL)) {
-            try (Statement stmt = conn.createStatement()) {
-                // events table
-                String ev = "CREATE TABLE IF NOT EXISTS events (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "title TEXT NOT NULL, " +
-                        "type TEXT, " +
-                        "start_datetime TEXT, " +
-                        "end_datetime TEXT, " +
-                        "venue TEXT, " +
-                        "description TEXT, " +
-                        "rules TEXT, " +
-                        "coordinators TEXT, " +
-                        "prizes TEXT, " +
-                        "fee TEXT, " +
-                        "banner TEXT" +
-                        ");";
-                stmt.execute(ev);
-
-                // users table (for admin)
-                String us = "CREATE TABLE IF NOT EXISTS users (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "username TEXT UNIQUE NOT NULL, " +
-                        "password TEXT NOT NULL, " +
-                        "role TEXT NOT NULL" +
-                        ");";
-                stmt.execute(us);
-
-                // Add event_id to registrations if missing
-                try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(registrations);")) {
-                    boolean hasEventId = false;
-                    while (rs.next()) {
-                        String name = rs.getString("name");
-                        if ("event_id".equalsIgnoreCase(name)) {
-                            hasEventId = true;
-                            break;
-                        }
-                    }
-                    if (!hasEventId) {
-                        stmt.execute("ALTER TABLE registrations ADD COLUMN event_id INTEGER DEFAULT NULL;");
-                    }
-                }
-            }
+    public static ConnectionPool.Stats getPoolStats() {
+        return storage.getPoolStats();
+    }
 
-            // ensure default admin exists
-            createAdminIfNotExists("admin", "admin");
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+    /** Group-commit writer figures, or null when the backend has none. */
+    public static RegistrationWriter.Stats getWriterStats() {
+        return storage.getWriterStats();
     }
 
-    public static boolean insertRegistration(String studentName, String eventName, int tickets, String email, String phone) {
-        String insertSql = "INSERT INTO registrations(student_name, event_name, tickets, email, phone) VALUES(?,?,?,?,?)";
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        try {
-            conn = DriverManager.getConnection(JDBC_URL);
-            // ensure explicit transaction so commits are reliable across environments
-            conn.setAutoCommit(false);
-            pstmt = conn.prepareStatement(insertSql);
-            pstmt.setString(1, studentName);
-            pstmt.setString(2, eventName);
-            pstmt.setInt(3, tickets);
-            pstmt.setString(4, email);
-            pstmt.setString(5, phone);
-            int updated = pstmt.executeUpdate();
-            conn.commit();
-
-            if (updated > 0) {
-                // Append an equivalent INSERT into the SQL log file
-                appendToSqlLog(studentName, eventName, tickets, email, phone);
-                return true;
-            }
-            return false;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+    /** Committed registrations, published after every insert path's commit. */
+    public static RegistrationBus getRegistrationBus() {
+        return storage.getRegistrationBus();
+    }
+
+    /** Registration journal figures, or null without a local journal. */
+    public static RegistrationJournal.Stats getJournalStats() {
+        return storage.getJournalStats();
+    }
+
+    /** Write-behind buffer figures, or null when registrations are inserted synchronously. */
+    public static WriteBehindBuffer.Stats getWriteBehindStats() {
+        return storage.getWriteBehindStats();
+    }
+
+    /**
+     * Starts the integrity checks on a background thread, once; the schema itself is brought up to
+     * date when the class loads. The server calls this at startup; the Swing form does not, so it
+     * skips the checks.
+     */
+    public static void initDatabase() {
+        storage.initDatabase();
+    }
+
+    /** Schema version and check results, or null when the backend does not version its schema. */
+    public static SchemaStats getSchemaStats() {
+        return storage.getSchemaStats();
+    }
+
+    public static class SchemaStats {
+        public int version;
+        public int fromVersion;
+        public java.util.List<String> applied;
+        public SchemaMigrations.Check check; // null until the background check finishes
+    }
+
+    /** Registrations waiting for a seat at the event. */
+    public static int getWaitlistSize(int eventId) {
+        return storage.getWaitlistSize(eventId);
+    }
+
+    /** 1-based waitlist place of a registration, or 0 if it is not waiting. */
+    public static int getWaitlistPosition(int eventId, int registrationId) {
+        return storage.getWaitlistPosition(eventId, registrationId);
+    }
+
+    public static Waitlist.Stats getWaitlistStats() {
+        return storage.getWaitlistStats();
+    }
+
+    /** See {@link RegistrationStore#cancelRegistration}. */
+    public static RegistrationStore.CancelResult cancelRegistration(int id, String cancelToken) {
+        return storage.cancelRegistration(id, cancelToken);
+    }
+
+    /** Promotes from the head of the event's waitlist as far as the free seats go; returns how many. */
+    public static int promoteWaitlist(int eventId) {
+        return storage.promoteWaitlist(eventId);
+    }
+
+    /** Reserves seats for a registration about to be inserted; false means the event is sold out. */
+    public static boolean reserveSeats(int eventId, int tickets) {
+        return storage.reserveSeats(eventId, tickets);
+    }
+
+    /** Returns seats taken by {@link #reserveSeats} when the registration could not be saved. */
+    public static void releaseSeats(int eventId, int tickets) {
+        storage.releaseSeats(eventId, tickets);
+    }
+
+    public static SeatAllocator.Availability getSeatAvailability(int eventId) {
+        return storage.getSeatAvailability(eventId);
+    }
+
+    /**
+     * Registers from the Swing form under the same seat rules as {@code POST /api/register}, minus
+     * the waitlist: a full event, or one with people already waiting, answers {@code SOLD_OUT}.
+     */
+    public static RegistrationStore.InsertResult insertRegistration(String studentName, String eventName, int tickets, String email, String phone) {
+        Registration r = new Registration(null, studentName, eventName, tickets, email, phone, null);
+        Event ev = findEventByTitle(eventName);
+        if (ev != null) {
+            r.eventId = ev.id;
+            r.eventName = ev.title;
+            if (getWaitlistSize(ev.id) > 0 || !reserveSeats(ev.id, tickets)) {
+                return new RegistrationStore.InsertResult(RegistrationStore.InsertResult.Status.SOLD_OUT, -1);
             }
-            return false;
-        } finally {
-            try { if (pstmt != null) pstmt.close(); } catch (SQLException ignored) {}
-            try { if (conn != null) conn.setAutoCommit(true); } catch (SQLException ignored) {}
-            try { if (conn != null) conn.close(); } catch (SQLException ignored) {}
         }
+        RegistrationStore.InsertResult result = insertRegistration(r);
+        if (result.status != RegistrationStore.InsertResult.Status.INSERTED && ev != null) releaseSeats(ev.id, tickets);
+        return result;
     }
 
-    private static void appendToSqlLog(String studentName, String eventName, int tickets, String email, String phone) {
-        // Escape single quotes by doubling them for SQL
-        String sName = escape(studentName);
-        String eName = escape(eventName);
-        String sEmail = email == null ? "" : escape(email);
-        String sPhone = phone == null ? "" : escape(phone);
-        String sql = String.format("INSERT INTO registrations(student_name, event_name, tickets, email, phone) VALUES('%s','%s',%d,'%s','%s');%n",
-                sName, eName, tickets, sEmail, sPhone);
-        try (FileWriter fw = new FileWriter(SQL_LOG, true)) {
-            fw.write(sql);
-        } catch (IOException ex) {
-            ex.printStackTrace();
+    /** The first event (lowest id) whose title matches, ignoring case and surrounding spaces; null if none. */
+    static Event findEventByTitle(String title) {
+        if (title == null) return null;
+        String t = title.trim();
+        Event found = null;
+        for (Event e : storage.getAllEvents()) {
+            if (e.title != null && e.title.trim().equalsIgnoreCase(t) && (found == null || e.id < found.id)) found = e;
         }
+        return found;
+    }
+
+    /**
+     * What goes in the {@code event_name} column: nothing when the row references an event, since
+     * reads take the title from the events cache; the title itself only for rows without an event.
+     */
+    static String storedEventName(Registration r) {
+        return r.eventId != null ? null : r.eventName;
+    }
+
+    static String storedStatus(Registration r) {
+        return r.status == null ? Registration.CONFIRMED : r.status;
+    }
+
+    /** See {@link RegistrationStore#insertRegistration}. */
+    public static RegistrationStore.InsertResult insertRegistration(Registration r) {
+        return storage.insertRegistration(r);
+    }
+
+    /** See {@link RegistrationStore#findRegistrationIdByIdempotencyKey}. */
+    public static long findRegistrationIdByIdempotencyKey(String key) {
+        return storage.findRegistrationIdByIdempotencyKey(key);
     }
 
-    private static String escape(String input) {
-        if (input == null) return "";
-        return input.replace("'", "''");
+    /** See {@link RegistrationStore#insertRegistrationBatch}. */
+    public static int insertRegistrationBatch(java.util.List<Registration> rows) throws SQLException {
+        return storage.insertRegistrationBatch(rows);
     }
 
     public static String getDbFilePath() {
-        try {
-            return Paths.get(new File(DB_FILE).getAbsolutePath()).toString();
-        } catch (Exception e) {
-            return DB_FILE;
-        }
+        return storage.getLocation();
     }
 
-    public static String getSqlLogPath() {
-        try {
-            return Paths.get(new File(SQL_LOG).getAbsolutePath()).toString();
-        } catch (Exception e) {
-            return SQL_LOG;
-        }
+    public static String getJournalPath() {
+        return storage.getJournalPath();
     }
 
     // Fetch recent registrations
     public static java.util.List<Registration> getRecentRegistrations(int limit) {
-        java.util.List<Registration> list = new java.util.ArrayList<>();
-        String sql = "SELECT id, student_name, event_name, tickets, email, phone, created_at FROM registrations ORDER BY created_at DESC LIMIT ?";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Registration r = new Registration(
-                            rs.getInt("id"),
-                            rs.getString("student_name"),
-                            rs.getString("event_name"),
-                            rs.getInt("tickets"),
-                            rs.getString("email"),
-                            rs.getString("phone"),
-                            rs.getString("created_at")
-                    );
-                    list.add(r);
-                }
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
-        return list;
+        return storage.getRecentRegistrations(limit);
+    }
+
+    /** See {@link RegistrationStore#getRegistrationsPage}. */
+    public static Page<Registration> getRegistrationsPage(String after, int pageSize) {
+        return storage.getRegistrationsPage(after, pageSize);
+    }
+
+    static String encodeCursor(String createdAt, int id) {
+        String raw = (createdAt == null ? "" : createdAt) + "|" + id;
+        return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if the cursor was not produced by {@link #getRegistrationsPage} */
+    static String[] decodeCursor(String cursor) {
+        String raw = new String(java.util.Base64.getUrlDecoder().decode(cursor), java.nio.charset.StandardCharsets.UTF_8);
+        int bar = raw.lastIndexOf('|');
+        if (bar < 0) throw new IllegalArgumentException("invalid cursor");
+        String id = raw.substring(bar + 1);
+        Long.parseLong(id);
+        return new String[]{raw.substring(0, bar), id};
     }
 
     // Events CRUD
     public static int createEvent(Event e) {
-        String sql = "INSERT INTO events(title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, e.title);
-            pstmt.setString(2, e.type);
-            pstmt.setString(3, e.startDatetime);
-            pstmt.setString(4, e.endDatetime);
-            pstmt.setString(5, e.venue);
-            pstmt.setString(6, e.description);
-            pstmt.setString(7, e.rules);
-            pstmt.setString(8, e.coordinators);
-            pstmt.setString(9, e.prizes);
-            pstmt.setString(10, e.fee);
-            pstmt.setString(11, e.banner);
-            pstmt.executeUpdate();
-            try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
-        return -1;
+        return storage.createEvent(e);
+    }
+
+    public static EventCache.Stats getEventCacheStats() {
+        return storage.getEventCacheStats();
+    }
+
+    /** Events matching every word of {@code query} as a prefix; see {@link EventSearch#search}. */
+    public static EventSearch.Result searchEvents(String query, String type, String from, String to, int limit) {
+        return storage.searchEvents(query, type, from, to, limit);
+    }
+
+    public static EventSearch.Stats getEventSearchStats() {
+        return storage.getEventSearchStats();
     }
 
     public static java.util.List<Event> getAllEvents() {
-        java.util.List<Event> list = new java.util.ArrayList<>();
-        String sql = "SELECT id,title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner FROM events ORDER BY start_datetime ASC";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                Event ev = new Event(
-                        rs.getInt("id"), rs.getString("title"), rs.getString("type"), rs.getString("start_datetime"), rs.getString("end_datetime"),
-                        rs.getString("venue"), rs.getString("description"), rs.getString("rules"), rs.getString("coordinators"), rs.getString("prizes"), rs.getString("fee"), rs.getString("banner")
-                );
-                list.add(ev);
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
-        return list;
+        return storage.getAllEvents();
     }
 
     public static Event getEventById(int id) {
-        String sql = "SELECT id,title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner FROM events WHERE id = ? LIMIT 1";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new Event(rs.getInt("id"), rs.getString("title"), rs.getString("type"), rs.getString("start_datetime"), rs.getString("end_datetime"), rs.getString("venue"), rs.getString("description"), rs.getString("rules"), rs.getString("coordinators"), rs.getString("prizes"), rs.getString("fee"), rs.getString("banner"));
-                }
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return null;
+        return storage.getEventById(id);
+    }
+
+    /** Current event snapshot, including the pre-rendered JSON the events endpoints serve. */
+    public static EventCache.Snapshot getEventSnapshot() {
+        return storage.getEventSnapshot();
     }
 
     public static boolean updateEvent(Event e) {
-        String sql = "UPDATE events SET title=?,type=?,start_datetime=?,end_datetime=?,venue=?,description=?,rules=?,coordinators=?,prizes=?,fee=?,banner=? WHERE id=?";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, e.title);
-            pstmt.setString(2, e.type);
-            pstmt.setString(3, e.startDatetime);
-            pstmt.setString(4, e.endDatetime);
-            pstmt.setString(5, e.venue);
-            pstmt.setString(6, e.description);
-            pstmt.setString(7, e.rules);
-            pstmt.setString(8, e.coordinators);
-            pstmt.setString(9, e.prizes);
-            pstmt.setString(10, e.fee);
-            pstmt.setString(11, e.banner);
-            pstmt.setInt(12, e.id);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return false;
+        return storage.updateEvent(e);
     }
 
     public static boolean deleteEvent(int id) {
-        String sql = "DELETE FROM events WHERE id = ?";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return false;
+        return storage.deleteEvent(id);
     }
 
     // Admin user
-    public static void createAdminIfNotExists(String username, String password) {
-        String check = "SELECT id FROM users WHERE username = ? LIMIT 1";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement p = conn.prepareStatement(check)) {
-            p.setString(1, username);
-            try (ResultSet rs = p.executeQuery()) {
-                if (rs.next()) return; // exists
-            }
-            String ins = "INSERT INTO users(username,password,role) VALUES(?,?,?)";
-            try (PreparedStatement pi = conn.prepareStatement(ins)) {
-                pi.setString(1, username);
-                pi.setString(2, password);
-                pi.setString(3, "admin");
-                pi.executeUpdate();
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
+    /** The stored password hash of an admin user, or null if there is no such admin. */
+    public static String getAdminPasswordHash(String username) {
+        return storage.getAdminPasswordHash(username);
     }
 
-    public static boolean validateAdmin(String username, String password) {
-        String sql = "SELECT id FROM users WHERE username = ? AND password = ? AND role='admin' LIMIT 1";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement p = conn.prepareStatement(sql)) {
-            p.setString(1, username);
-            p.setString(2, password);
-            try (ResultSet rs = p.executeQuery()) {
-                return rs.next();
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return false;
+    /** Replaces a user's stored hash; with {@code expected} set, only if the stored value is still that. */
+    public static boolean updatePasswordHash(String username, String hash, String expected) {
+        return storage.updatePasswordHash(username, hash, expected);
     }
 
     // Registration queries for admin/student
     public static java.util.List<Registration> getRegistrationsForEvent(int eventId) {
-        java.util.List<Registration> list = new java.util.ArrayList<>();
-        String sql = "SELECT id, student_name, event_name, tickets, email, phone, created_at FROM registrations WHERE event_id = ? ORDER BY created_at DESC";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement p = conn.prepareStatement(sql)) {
-            p.setInt(1, eventId);
-            try (ResultSet rs = p.executeQuery()) {
-                while (rs.next()) {
-                    list.add(new Registration(rs.getInt("id"), rs.getString("student_name"), rs.getString("event_name"), rs.getInt("tickets"), rs.getString("email"), rs.getString("phone"), rs.getString("created_at")));
-                }
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return list;
+        return storage.getRegistrationsForEvent(eventId);
     }
 
+    /**
+     * Normalizes an email the way {@code lower(trim(email))} does in SQLite (ASCII-only lowercasing,
+     * spaces trimmed), so the Java key and the index expression always agree.
+     */
+    static String normalizeEmail(String email) {
+        int start = 0;
+        int end = email.length();
+        while (start < end && email.charAt(start) == ' ') start++;
+        while (end > start && email.charAt(end - 1) == ' ') end--;
+        char[] out = new char[end - start];
+        for (int i = start; i < end; i++) {
+            char ch = email.charAt(i);
+            out[i - start] = ch >= 'A' && ch <= 'Z' ? (char) (ch + 32) : ch;
+        }
+        return new String(out);
+    }
+
+    /** Registrations for an email, compared case-insensitively. */
     public static java.util.List<Registration> getRegistrationsForEmail(String email) {
-        java.util.List<Registration> list = new java.util.ArrayList<>();
-        String sql = "SELECT id, student_name, event_name, tickets, email, phone, created_at FROM registrations WHERE email = ? ORDER BY created_at DESC";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement p = conn.prepareStatement(sql)) {
-            p.setString(1, email);
-            try (ResultSet rs = p.executeQuery()) {
-                while (rs.next()) {
-                    list.add(new Registration(rs.getInt("id"), rs.getString("student_name"), rs.getString("event_name"), rs.getInt("tickets"), rs.getString("email"), rs.getString("phone"), rs.getString("created_at")));
-                }
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return list;
+        return storage.getRegistrationsForEmail(email);
+    }
+
+    /** Per-email LRU figures, or null when the backend does not cache lookups. */
+    public static EmailLookupCache.Stats getEmailLookupStats() {
+        return storage.getEmailLookupStats();
+    }
+
+    /** See {@link RegistrationStore#streamRegistrations}. */
+    public static void streamRegistrations(RegistrationStore.RegistrationSink sink) throws SQLException, java.io.IOException {
+        storage.streamRegistrations(sink);
+    }
+
+    /** See {@link RegistrationStore#scanRegistrations}. */
+    public static void scanRegistrations(RegistrationStore.RegistrationSink sink) throws SQLException, java.io.IOException {
+        storage.scanRegistrations(sink);
+    }
+
+    /** One registration by id, or null. */
+    public static Registration getRegistration(int id) {
+        return storage.getRegistration(id);
+    }
+
+    /** Builds a registration from a {@link #REGISTRATION_COLUMNS} row, taking its event title from {@code names}. */
+    static Registration readRegistration(ResultSet rs, EventCache.Snapshot names) throws SQLException {
+        Registration r = new Registration(rs.getInt("id"), rs.getString("student_name"), rs.getString("event_name"), rs.getInt("tickets"), rs.getString("email"), rs.getString("phone"), rs.getString("created_at"));
+        r.status = rs.getString("status");
+        int eventId = rs.getInt("event_id");
+        if (!rs.wasNull()) {
+            r.eventId = eventId;
+            Event ev = names.byId.get(eventId);
+            if (r.eventName == null && ev != null) r.eventName = ev.title;
+        }
+        return r;
     }
 
     public static java.util.List<Registration> getAllRegistrations() {
-        java.util.List<Registration> list = new java.util.ArrayList<>();
-        String sql = "SELECT id, student_name, event_name, tickets, email, phone, created_at FROM registrations ORDER BY created_at DESC";
-        try (Connection conn = DriverManager.getConnection(JDBC_URL);
-             PreparedStatement p = conn.prepareStatement(sql);
-             ResultSet rs = p.executeQuery()) {
-            while (rs.next()) {
-                list.add(new Registration(rs.getInt("id"), rs.getString("student_name"), rs.getString("event_name"), rs.getInt("tickets"), rs.getString("email"), rs.getString("phone"), rs.getString("created_at")));
-            }
-        } catch (SQLException ex) { ex.printStackTrace(); }
-        return list;
+        return storage.getAllRegistrations();
     }
-}
\ No newline at end of file
+}
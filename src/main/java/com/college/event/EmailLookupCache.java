@@ -0,0 +1,87 @@
+package com.college.event;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU of recent per-email registration lookups, keyed by normalized email. A committed
+ * registration invalidates its email's entry; an event change clears them all, since cached rows
+ * carry the event's title. Each miss parks a token under the key before it
+ * queries, and installs its result only if that token is still there, so a lookup that raced a
+ * new registration never caches the older answer.
+ */
+public class EmailLookupCache {
+    private final int maxEntries;
+    private final Map<String, Entry> map;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EmailLookupCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.map = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > EmailLookupCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Cached result for the key, or null on a miss. */
+    public synchronized List<Registration> get(String key) {
+        Entry e = map.get(key);
+        if (e != null && e.value != null) {
+            hits.increment();
+            return e.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Marks a lookup for the key as in flight; pass the returned token to {@link #install}. */
+    public synchronized Object begin(String key) {
+        Entry e = new Entry();
+        map.put(key, e);
+        return e;
+    }
+
+    public synchronized void install(String key, Object token, List<Registration> value) {
+        Entry e = map.get(key);
+        if (e == token) e.value = value;
+    }
+
+    public synchronized void invalidate(String key) {
+        map.remove(key);
+    }
+
+    public synchronized void invalidateAll(Collection<String> keys) {
+        for (String k : keys) map.remove(k);
+    }
+
+    /** Drops every entry; lookups in flight find their token gone and do not install. */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.hits = hits.sum();
+        s.misses = misses.sum();
+        synchronized (this) {
+            s.size = map.size();
+        }
+        return s;
+    }
+
+    public static class Stats {
+        public long hits;
+        public long misses;
+        public int size;
+    }
+
+    private static final class Entry {
+        List<Registration> value;
+    }
+}
@@ -13,6 +13,7 @@ public class Event {
     public String prizes;
     public String fee;
     public String banner;
+    public Integer capacity; // seats available; null means unlimited
 
     public Event() {}
 
@@ -0,0 +1,115 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read-through cache of the whole events table. Readers get an immutable {@link Snapshot}; the
+ * admin write paths call {@link #invalidate()} after their change commits and the next read
+ * reloads. A load that started before an invalidation is returned to its caller but never
+ * installed, so a stale snapshot cannot outlive the write that made it stale.
+ */
+public class EventCache {
+    public interface Loader {
+        List<Event> load() throws SQLException;
+    }
+
+    private static final Gson gson = new Gson();
+
+    private final Loader loader;
+    private final AtomicLong generation = new AtomicLong();
+    // a lock rather than synchronized, so a virtual thread waiting out a reload does not pin its carrier
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    public EventCache(Loader loader) {
+        this.loader = loader;
+    }
+
+    public Snapshot get() {
+        Snapshot s = snapshot;
+        if (s != null) {
+            hits.increment();
+            return s;
+        }
+        misses.increment();
+        loadLock.lock();
+        try {
+            s = snapshot;
+            if (s != null) return s;
+            long gen = generation.get();
+            try {
+                s = new Snapshot(gen, loader.load());
+            } catch (SQLException ex) {
+                // serve an empty result this time, but do not cache the failure
+                ex.printStackTrace();
+                return new Snapshot(gen, Collections.emptyList());
+            }
+            loads.increment();
+            if (generation.get() == gen) snapshot = s;
+            return s;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /** Drops the current snapshot; call after any committed change to the events table. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    public Stats stats() {
+        Stats st = new Stats();
+        Snapshot s = snapshot;
+        st.hits = hits.sum();
+        st.misses = misses.sum();
+        st.loads = loads.sum();
+        st.generation = generation.get();
+        st.size = s == null ? 0 : s.events.size();
+        return st;
+    }
+
+    /** One consistent view of the events table, with the API's JSON for it rendered up front. */
+    public static final class Snapshot {
+        public final long generation;
+        public final List<Event> events;
+        public final Map<Integer, Event> byId;
+        public final RenderedJson listJson;
+        public final Map<Integer, RenderedJson> jsonById;
+
+        Snapshot(long generation, List<Event> events) {
+            this.generation = generation;
+            this.events = Collections.unmodifiableList(events);
+            Map<Integer, Event> m = new HashMap<>(events.size() * 2);
+            Map<Integer, RenderedJson> j = new HashMap<>(events.size() * 2);
+            for (Event e : events) {
+                m.put(e.id, e);
+                j.put(e.id, RenderedJson.of(gson, e));
+            }
+            this.byId = Collections.unmodifiableMap(m);
+            this.jsonById = Collections.unmodifiableMap(j);
+            this.listJson = RenderedJson.of(gson, events);
+        }
+    }
+
+    public static class Stats {
+        public long hits;
+        public long misses;
+        public long loads;
+        public long generation;
+        public int size;
+    }
+}
@@ -0,0 +1,310 @@
+package com.college.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-memory inverted index over event title, type, venue and description. Terms are lowercase
+ * runs of letters and digits; each maps to the events containing it and a weight (a title match
+ * counts most). Terms are kept sorted, so every query word matches as a prefix with one range
+ * lookup, and all words must match. Results can be filtered by type and by a range on the start
+ * date and are ranked by weight, then by start date.
+ * <p>
+ * Each indexed event has a small ordinal, and postings are arrays of ordinals, so a query scores
+ * into plain int arrays and keeps only the best {@code limit} hits in a heap. Postings and the
+ * ordinal table are copied on write and published whole, so searches read them without locking;
+ * writers are serialized. The index is built from the event cache on the first search; after that
+ * the event write paths {@link #put} and {@link #remove} single events once their change commits,
+ * so a search never reads SQLite.
+ */
+public final class EventSearch {
+    private static final int TITLE = 4;
+    private static final int TYPE = 3;
+    private static final int VENUE = 2;
+    private static final int DESCRIPTION = 1;
+    // a query word that matches a term exactly ranks above one that only matches its start
+    private static final int EXACT_BONUS = 1;
+
+    private final Supplier<List<Event>> source;
+    private final NavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    // ordinal -> indexed event, null once deleted; an update keeps the event's ordinal, a deleted one is never reused
+    private volatile Doc[] docs = new Doc[0];
+    private final Map<Integer, Integer> ordinals = new HashMap<>(); // event id -> ordinal; writers only
+    private volatile boolean built;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    public EventSearch(Supplier<List<Event>> source) {
+        this.source = source;
+    }
+
+    /** Indexes an event, replacing what was indexed for the same id. */
+    public synchronized void put(int id, Event e) {
+        // before the first search there is nothing to update; the build reads the committed table
+        if (!built) return;
+        int ord = unindex(id);
+        index(id, e, ord >= 0 ? ord : docs.length);
+        updates.increment();
+    }
+
+    public synchronized void remove(int id) {
+        if (!built) return;
+        unindex(id);
+        updates.increment();
+    }
+
+    private synchronized void build() {
+        if (built) return;
+        for (Event e : source.get()) index(e.id, e, docs.length);
+        built = true;
+    }
+
+    private void index(int id, Event e, int ord) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, e.title, TITLE);
+        addTerms(weights, e.type, TYPE);
+        addTerms(weights, e.venue, VENUE);
+        addTerms(weights, e.description, DESCRIPTION);
+        Doc[] next = Arrays.copyOf(docs, Math.max(docs.length, ord + 1));
+        next[ord] = new Doc(id, weights.keySet(), e.type == null ? null : e.type.trim().toLowerCase(Locale.ROOT), normalizeDate(e.startDatetime));
+        ordinals.put(id, ord);
+        // postings first, then the table that makes the ordinal visible
+        for (Map.Entry<String, Integer> w : weights.entrySet()) {
+            Postings p = terms.get(w.getKey());
+            terms.put(w.getKey(), p == null ? new Postings(ord, w.getValue()) : p.with(ord, w.getValue()));
+        }
+        docs = next;
+    }
+
+    // returns the event's former ordinal, or -1 if it was not indexed
+    private int unindex(int id) {
+        Integer ord = ordinals.remove(id);
+        if (ord == null) return -1;
+        Doc[] next = docs.clone();
+        Doc old = next[ord];
+        next[ord] = null;
+        docs = next;
+        for (String t : old.terms) {
+            Postings p = terms.get(t);
+            if (p == null) continue;
+            Postings rest = p.without(ord);
+            if (rest == null) terms.remove(t);
+            else terms.put(t, rest);
+        }
+        return ord;
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        for (String t : tokenize(text)) weights.merge(t, weight, Math::max);
+    }
+
+    /** Lowercase runs of letters and digits, each once, in order. */
+    static Set<String> tokenize(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        if (text == null) return out;
+        String s = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // "2025-03-10 10:00" and "2025-03-10T10:00" compare the same
+    private static String normalizeDate(String d) {
+        return d == null ? null : d.trim().replace(' ', 'T');
+    }
+
+    /**
+     * Events matching every word of {@code query} as a prefix (all events if it has none), of
+     * {@code type} if given, starting on or after {@code from} and on or before {@code to} if
+     * given. Dates compare as text, so {@code to=2025-03-10} includes the whole day.
+     */
+    public Result search(String query, String type, String from, String to, int limit, EventCache.Snapshot snapshot) {
+        long t0 = System.nanoTime();
+        if (!built) build();
+        queries.increment();
+        Doc[] table = docs;
+        int n = table.length;
+        int[] score = new int[n];
+        // words an ordinal has matched so far; only ordinals that matched all earlier words can go on
+        int[] matched = new int[n];
+        int[] best = new int[n];
+        Set<String> words = tokenize(query);
+        int k = 0;
+        for (String word : words) {
+            for (Map.Entry<String, Postings> t : terms.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                int bonus = t.getKey().length() == word.length() ? EXACT_BONUS : 0;
+                Postings p = t.getValue();
+                for (int i = 0; i < p.ords.length; i++) {
+                    int ord = p.ords[i];
+                    // a writer may have added an ordinal past the table this search read
+                    if (ord >= n) continue;
+                    int w = p.weights[i] + bonus;
+                    if (matched[ord] == k) {
+                        matched[ord] = k + 1;
+                        best[ord] = w;
+                        score[ord] += w;
+                    } else if (matched[ord] == k + 1 && w > best[ord]) {
+                        score[ord] += w - best[ord];
+                        best[ord] = w;
+                    }
+                }
+            }
+            k++;
+        }
+
+        String wantType = type == null || type.trim().isEmpty() ? null : type.trim().toLowerCase(Locale.ROOT);
+        String after = from == null || from.trim().isEmpty() ? null : normalizeDate(from);
+        String before = to == null || to.trim().isEmpty() ? null : normalizeDate(to);
+        // worst of the kept hits on top, so a better one replaces it
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(limit, Math.max(1, n)) + 1, (a, b) -> -Hit.ORDER.compare(a, b));
+        int total = 0;
+        for (int ord = 0; ord < n; ord++) {
+            Doc d = table[ord];
+            if (d == null || matched[ord] != k) continue;
+            if (wantType != null && !wantType.equals(d.type)) continue;
+            if (after != null && (d.start == null || d.start.compareTo(after) < 0)) continue;
+            if (before != null && (d.start == null || d.start.substring(0, Math.min(d.start.length(), before.length())).compareTo(before) > 0)) continue;
+            total++;
+            Hit h = new Hit(d, score[ord]);
+            if (top.size() < limit) top.add(h);
+            else if (Hit.ORDER.compare(h, top.peek()) < 0) {
+                top.poll();
+                top.add(h);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Hit.ORDER);
+        Result r = new Result();
+        r.total = total;
+        r.events = new ArrayList<>(hits.size());
+        for (Hit h : hits) {
+            // the snapshot decides what is returned, so results match /api/events exactly
+            Event e = snapshot.byId.get(h.doc.id);
+            if (e != null) r.events.add(e);
+        }
+        r.tookMicros = (System.nanoTime() - t0) / 1000;
+        return r;
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.built = built;
+        int live = 0;
+        for (Doc d : docs) if (d != null) live++;
+        s.events = live;
+        s.terms = terms.size();
+        s.queries = queries.sum();
+        s.updates = updates.sum();
+        return s;
+    }
+
+    public static class Result {
+        public int total;
+        public List<Event> events = Collections.emptyList();
+        public long tookMicros;
+    }
+
+    public static class Stats {
+        public boolean built;
+        public int events;
+        public int terms;
+        public long queries;
+        public long updates;
+    }
+
+    /** One term's events; immutable, replaced whole when an event is added or removed. */
+    private static final class Postings {
+        final int[] ords;
+        final byte[] weights;
+
+        Postings(int ord, int weight) {
+            this(new int[]{ord}, new byte[]{(byte) weight});
+        }
+
+        private Postings(int[] ords, byte[] weights) {
+            this.ords = ords;
+            this.weights = weights;
+        }
+
+        Postings with(int ord, int weight) {
+            int[] o = Arrays.copyOf(ords, ords.length + 1);
+            byte[] w = Arrays.copyOf(weights, weights.length + 1);
+            o[ords.length] = ord;
+            w[ords.length] = (byte) weight;
+            return new Postings(o, w);
+        }
+
+        /** Without {@code ord}, or null if nothing is left. */
+        Postings without(int ord) {
+            int i = 0;
+            while (i < ords.length && ords[i] != ord) i++;
+            if (i == ords.length) return this;
+            if (ords.length == 1) return null;
+            int[] o = new int[ords.length - 1];
+            byte[] w = new byte[ords.length - 1];
+            System.arraycopy(ords, 0, o, 0, i);
+            System.arraycopy(ords, i + 1, o, i, o.length - i);
+            System.arraycopy(weights, 0, w, 0, i);
+            System.arraycopy(weights, i + 1, w, i, w.length - i);
+            return new Postings(o, w);
+        }
+    }
+
+    private static final class Doc {
+        final int id;
+        final Set<String> terms;
+        final String type;
+        final String start;
+
+        Doc(int id, Set<String> terms, String type, String start) {
+            this.id = id;
+            this.terms = terms;
+            this.type = type;
+            this.start = start;
+        }
+    }
+
+    private static final class Hit {
+        // higher score first, then earlier start (events without one last), then lower id
+        static final java.util.Comparator<Hit> ORDER = (a, b) -> {
+            if (a.score != b.score) return Integer.compare(b.score, a.score);
+            String x = a.doc.start, y = b.doc.start;
+            if (x == null || y == null) {
+                if (x != y) return x == null ? 1 : -1;
+            } else {
+                int c = x.compareTo(y);
+                if (c != 0) return c;
+            }
+            return Integer.compare(a.doc.id, b.doc.id);
+        };
+
+        final Doc doc;
+        final int score;
+
+        Hit(Doc doc, int score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+}
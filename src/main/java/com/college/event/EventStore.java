@@ -0,0 +1,27 @@
+package com.college.event;
+
+import java.util.List;
+
+/**
+ * Events: the catalog every page reads and admins edit. Reads are served from an in-memory
+ * {@link EventCache} snapshot; writes go to storage and invalidate it.
+ */
+public interface EventStore {
+    /** Saves a new event; returns its id, or -1 if it could not be saved. */
+    int createEvent(Event e);
+
+    boolean updateEvent(Event e);
+
+    /** Deletes an event; its registrations keep the title it had. */
+    boolean deleteEvent(int id);
+
+    List<Event> getAllEvents();
+
+    Event getEventById(int id);
+
+    /** Current event snapshot, including the pre-rendered JSON the events endpoints serve. */
+    EventCache.Snapshot getEventSnapshot();
+
+    /** Events matching every word of {@code query} as a prefix; see {@link EventSearch#search}. */
+    EventSearch.Result searchEvents(String query, String type, String from, String to, int limit);
+}
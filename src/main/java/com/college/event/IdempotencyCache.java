@@ -0,0 +1,119 @@
+package com.college.event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Recent responses by {@code Idempotency-Key}, so a retried or double-submitted request gets the
+ * first attempt's response instead of doing the work again. The first request with a key runs;
+ * copies that arrive while it is still running wait for its result. Entries expire after
+ * {@code ttlMs} and the table never holds more than {@code maxEntries}, dropping the oldest first.
+ * Server errors are not kept, so a retry after one runs again. Past the table's reach the
+ * registrations table's unique index on the key still stops a second insert.
+ */
+public class IdempotencyCache {
+    /** A finished response: HTTP status plus JSON body. */
+    public static class Reply {
+        public final int status;
+        public final String body;
+        public final boolean replayed;
+
+        public Reply(int status, String body) {
+            this(status, body, false);
+        }
+
+        private Reply(int status, String body, boolean replayed) {
+            this.status = status;
+            this.body = body;
+            this.replayed = replayed;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long waitMs;
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>();
+
+    public IdempotencyCache(int maxEntries, long ttlMs, long waitMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Runs {@code action} unless a request with this key already did. {@code fingerprint} identifies
+     * the request body; reusing a key for a different body is answered with 422.
+     */
+    public Reply execute(String key, String fingerprint, Supplier<Reply> action) {
+        Entry mine = new Entry(fingerprint, System.nanoTime() + ttlNanos);
+        Entry existing;
+        synchronized (this) {
+            expire(System.nanoTime());
+            existing = map.get(key);
+            if (existing == null) map.put(key, mine);
+        }
+        if (existing != null) return replay(existing, fingerprint);
+
+        Reply reply;
+        try {
+            reply = action.get();
+        } catch (RuntimeException e) {
+            reply = new Reply(500, "{\"success\":false,\"message\":\"internal error\"}");
+        }
+        if (reply.status >= 500) {
+            synchronized (this) {
+                map.remove(key, mine);
+            }
+        }
+        mine.reply.complete(reply);
+        return reply;
+    }
+
+    private Reply replay(Entry e, String fingerprint) {
+        if (!e.fingerprint.equals(fingerprint)) {
+            return new Reply(422, "{\"success\":false,\"message\":\"Idempotency-Key was already used for a different request\"}");
+        }
+        try {
+            Reply r = e.reply.get(waitMs, TimeUnit.MILLISECONDS);
+            return new Reply(r.status, r.body, true);
+        } catch (TimeoutException ex) {
+            return new Reply(409, "{\"success\":false,\"message\":\"A request with this Idempotency-Key is still being processed\"}");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new Reply(503, "{\"success\":false,\"message\":\"interrupted\"}");
+        } catch (ExecutionException ex) {
+            return new Reply(500, "{\"success\":false,\"message\":\"internal error\"}");
+        }
+    }
+
+    /** Drops expired entries (they are in insertion order, so from the front) and any beyond the size bound. */
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next().getValue();
+            if (map.size() < maxEntries && e.expiresAt - now > 0) break;
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long expiresAt;
+        final CompletableFuture<Reply> reply = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
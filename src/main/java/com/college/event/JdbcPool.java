@@ -0,0 +1,232 @@
+package com.college.event;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of connections to a database server, for {@link JdbcStorage}. Unlike SQLite there
+ * is no single writer: every connection reads and writes, and the server orders concurrent
+ * transactions. Connections are opened on demand up to {@code maxSize} and kept; the most recently
+ * returned one is handed out first, so a quiet node keeps few of them warm. One that sat idle
+ * longer than {@code validateAfterMs} is checked before use, and one that failed with a
+ * connection error is closed instead of going back, so a restarted server costs a failed request
+ * or two rather than a broken pool.
+ */
+public class JdbcPool implements AutoCloseable {
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final long checkoutTimeoutMs;
+    private final long validateAfterNanos;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public JdbcPool(String url, String user, String password, int maxSize, long checkoutTimeoutMs, long validateAfterMs) {
+        this.url = url;
+        this.properties = new Properties();
+        if (user != null) properties.setProperty("user", user);
+        if (password != null) properties.setProperty("password", password);
+        this.maxSize = Math.max(1, maxSize);
+        this.checkoutTimeoutMs = checkoutTimeoutMs;
+        this.validateAfterNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterMs);
+    }
+
+    /** Checks out a connection in auto-commit mode. */
+    public Lease lease() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection pc = take(start);
+        long waited = System.nanoTime() - start;
+        checkouts.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        active.incrementAndGet();
+        return new Lease(pc);
+    }
+
+    private PooledConnection take(long start) throws SQLException {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(checkoutTimeoutMs);
+        while (true) {
+            if (closed) throw new SQLException("Connection pool is closed");
+            PooledConnection pc = idle.pollFirst();
+            if (pc == null) pc = openIfRoom();
+            if (pc == null) {
+                waiters.incrementAndGet();
+                try {
+                    pc = idle.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                } finally {
+                    waiters.decrementAndGet();
+                }
+                if (pc == null) {
+                    timeouts.increment();
+                    throw new SQLTimeoutException("Timed out after " + checkoutTimeoutMs + " ms waiting for a database connection");
+                }
+            }
+            if (System.nanoTime() - pc.returnedAt < validateAfterNanos || pc.conn.isValid(1)) return pc;
+            discard(pc);
+        }
+    }
+
+    // a new connection if fewer than maxSize are open; null otherwise
+    private PooledConnection openIfRoom() throws SQLException {
+        int n;
+        do {
+            n = open.get();
+            if (n >= maxSize) return null;
+        } while (!open.compareAndSet(n, n + 1));
+        try {
+            return new PooledConnection(DriverManager.getConnection(url, properties));
+        } catch (SQLException e) {
+            open.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        pc.close();
+        open.decrementAndGet();
+        discarded.increment();
+    }
+
+    /** Whether {@code e} means the connection itself is gone (SQLState class 08), not just the statement. */
+    static boolean isConnectionError(SQLException e) {
+        for (SQLException x = e; x != null; x = x.getNextException()) {
+            String state = x.getSQLState();
+            if (state != null && state.startsWith("08")) return true;
+        }
+        return false;
+    }
+
+    /** Reports open connections as {@code readers} and idle ones as {@code idleReaders}: here every connection does both. */
+    public ConnectionPool.Stats stats() {
+        ConnectionPool.Stats s = new ConnectionPool.Stats();
+        s.readers = open.get();
+        s.active = active.get();
+        s.waiters = waiters.get();
+        s.idleReaders = idle.size();
+        s.checkouts = checkouts.sum();
+        s.timeouts = timeouts.sum();
+        s.avgCheckoutMicros = s.checkouts == 0 ? 0 : waitNanos.sum() / s.checkouts / 1000;
+        s.maxCheckoutMicros = maxWaitNanos.get() / 1000;
+        return s;
+    }
+
+    /** Connections closed because they failed or did not pass the idle check. */
+    public long discarded() {
+        return discarded.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) pc.close();
+    }
+
+    /**
+     * A checked-out connection. Statements returned by {@link #prepare} are owned by the cache and
+     * must not be closed by the caller; result sets still must be. Call {@link #failed} when a
+     * statement threw, so a dead connection is not handed out again.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledConnection pc;
+        private boolean released;
+        private boolean broken;
+
+        private Lease(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        public Connection connection() {
+            return pc.conn;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return pc.prepare(sql, java.sql.Statement.NO_GENERATED_KEYS);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            return pc.prepare(sql, autoGeneratedKeys);
+        }
+
+        /** Marks the connection for closing if {@code e} was a connection error; returns {@code e}. */
+        public SQLException failed(SQLException e) {
+            if (isConnectionError(e)) broken = true;
+            return e;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            active.decrementAndGet();
+            try {
+                // never hand out a connection with a half-finished transaction
+                if (!broken && !pc.conn.getAutoCommit()) {
+                    pc.conn.rollback();
+                    pc.conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                broken = true;
+            }
+            if (broken || closed) {
+                discard(pc);
+                return;
+            }
+            pc.returnedAt = System.nanoTime();
+            idle.offerFirst(pc);
+        }
+    }
+
+    private static final class PooledConnection {
+        final Connection conn;
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+        long returnedAt = System.nanoTime();
+
+        PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == java.sql.Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+            PreparedStatement ps = statements.get(key);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        void close() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+            statements.clear();
+            try { conn.close(); } catch (SQLException ignored) {}
+        }
+    }
+}
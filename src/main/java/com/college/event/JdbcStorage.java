@@ -0,0 +1,994 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Storage on a database server shared by several nodes ({@code storage.backend=jdbc}), reached
+ * through {@link JdbcPool}. The SQL is plain enough for H2 in server mode and PostgreSQL.
+ * <p>
+ * Nothing another node can change is trusted from memory. Each event row carries {@code sold}
+ * and {@code waiting} counters that change in the same transaction as the registrations they
+ * count: a confirmed insert claims its seats with one conditional {@code UPDATE} of the event
+ * row, which also fails while anyone is waiting, so concurrent nodes can never oversell or let a
+ * newcomer pass the waitlist. Cancellations and promotions lock the event row and take the
+ * waitlist from the table in id order. Idempotency keys and one-email-per-event are unique
+ * constraints, so a retry that lands on another node finds the first request's row.
+ * <p>
+ * Events are still served from an {@link EventCache}; every event write bumps a counter row, and
+ * a poller drops the cache (and the search index) within {@code storage.jdbc.pollMs} when it
+ * sees another node's change. Per-email lookups are not cached, since another node may have
+ * added to them.
+ */
+final class JdbcStorage implements Storage {
+    private static final String REGISTRATION_COLUMNS = Database.REGISTRATION_COLUMNS;
+    private static final String EVENT_COLUMNS = "id,title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner,capacity";
+
+    private final String url = Config.get("storage.jdbc.url", "jdbc:h2:tcp://localhost:9092/./registrations");
+    private final JdbcPool pool;
+    private final RegistrationBus registrationBus = new RegistrationBus();
+    private final int promotionBatch = Math.max(1, Config.getInt("waitlist.promotionBatch", 1000));
+    // transactions the server aborted to break a deadlock or a write conflict are run again this many times
+    private final int retries = Math.max(0, Config.getInt("storage.jdbc.retries", 3));
+
+    // Events are served from memory; local writes invalidate after they commit, the poller on other nodes' writes
+    private final EventCache events = new EventCache(this::loadAllEvents);
+    private volatile EventSearch search = new EventSearch(() -> events.get().events);
+    // highest events change counter this node has seen reflected in its cache
+    private final AtomicLong eventsVersion = new AtomicLong(-1);
+
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder promoted = new LongAdder();
+
+    private final ExecutorService promoter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-promoter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    JdbcStorage() throws SQLException {
+        long t0 = System.nanoTime();
+        pool = new JdbcPool(url,
+                Config.get("storage.jdbc.user", "sa"),
+                Config.get("storage.jdbc.password", ""),
+                Config.getInt("storage.jdbc.poolSize", 16),
+                Config.getLong("storage.jdbc.checkoutTimeoutMs", 5000),
+                Config.getLong("storage.jdbc.validateAfterMs", 5000));
+        try (JdbcPool.Lease c = pool.lease()) {
+            createSchema(c.connection());
+            eventsVersion.set(readEventsVersion(c));
+        }
+        Startup.phase("db.schema", t0);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "db-shutdown"));
+        startPoller(Math.max(50, Config.getLong("storage.jdbc.pollMs", 1000)));
+    }
+
+    private void shutdown() {
+        promoter.shutdown();
+        pool.close();
+    }
+
+    // Every node runs this at startup; IF NOT EXISTS and the unique constraints make it safe when several start at once
+    private static void createSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS events (" +
+                    "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "title VARCHAR NOT NULL, type VARCHAR, start_datetime VARCHAR, end_datetime VARCHAR, venue VARCHAR, " +
+                    "description VARCHAR, rules VARCHAR, coordinators VARCHAR, prizes VARCHAR, fee VARCHAR, banner VARCHAR, " +
+                    "capacity INTEGER, " +
+                    // confirmed tickets and waitlisted registrations, kept in step with the registrations table
+                    "sold INTEGER DEFAULT 0 NOT NULL, " +
+                    "waiting INTEGER DEFAULT 0 NOT NULL)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS registrations (" +
+                    "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "student_name VARCHAR NOT NULL, event_name VARCHAR, event_id INTEGER, tickets INTEGER NOT NULL, " +
+                    "email VARCHAR, phone VARCHAR, created_at VARCHAR NOT NULL, idempotency_key VARCHAR, " +
+                    "status VARCHAR DEFAULT 'confirmed' NOT NULL, " +
+                    // lower(trim(email)) for lookups, and the same again only while the row is not cancelled:
+                    // a plain unique constraint on it is the one-email-per-event rule without a partial index
+                    "email_key VARCHAR, active_email VARCHAR, cancel_token VARCHAR, " +
+                    "CONSTRAINT uq_registrations_idempotency_key UNIQUE (idempotency_key), " +
+                    "CONSTRAINT uq_registrations_email_event UNIQUE (event_id, active_email))");
+            // added after the first release of this backend
+            stmt.execute("ALTER TABLE registrations ADD COLUMN IF NOT EXISTS cancel_token VARCHAR");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_registrations_created ON registrations(created_at, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_registrations_event ON registrations(event_id, status, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_registrations_email ON registrations(email_key)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+                    "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                    "username VARCHAR NOT NULL UNIQUE, password VARCHAR NOT NULL, role VARCHAR NOT NULL)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS admin_sessions (" +
+                    "token_hash VARCHAR PRIMARY KEY, username VARCHAR NOT NULL, expires_at BIGINT NOT NULL)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS change_counters (name VARCHAR PRIMARY KEY, version BIGINT NOT NULL)");
+        }
+        try {
+            try (PreparedStatement p = conn.prepareStatement("INSERT INTO change_counters(name, version) SELECT 'events', 0 WHERE NOT EXISTS (SELECT 1 FROM change_counters WHERE name = 'events')")) {
+                p.executeUpdate();
+            }
+            SchemaMigrations.createAdminIfNotExists(conn, "admin", "admin");
+        } catch (SQLException ex) {
+            // another node inserted the same row first
+            if (!isUniqueViolation(ex)) throw ex;
+        }
+    }
+
+    private interface Work<T> {
+        T run(JdbcPool.Lease c) throws SQLException;
+    }
+
+    // Runs one auto-commit call, timed under {@code query}
+    private <T> T call(String query, Work<T> work) throws SQLException {
+        long t0 = System.nanoTime();
+        try (JdbcPool.Lease c = pool.lease()) {
+            try {
+                return work.run(c);
+            } catch (SQLException e) {
+                throw c.failed(e);
+            }
+        } catch (SQLException ex) {
+            if (!isUniqueViolation(ex)) Metrics.queryFailed(query);
+            throw ex;
+        } finally {
+            Metrics.recordQuery(query, t0);
+        }
+    }
+
+    // Runs {@code work} in one transaction, again if the server aborted it to resolve a conflict with another transaction
+    private <T> T transaction(String query, Work<T> work) throws SQLException {
+        long t0 = System.nanoTime();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try (JdbcPool.Lease c = pool.lease()) {
+                    Connection conn = c.connection();
+                    conn.setAutoCommit(false);
+                    try {
+                        T result = work.run(c);
+                        conn.commit();
+                        return result;
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw c.failed(e);
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                } catch (SQLException ex) {
+                    if (attempt < retries && isRetryable(ex)) continue;
+                    throw ex;
+                }
+            }
+        } catch (SQLException ex) {
+            if (!isUniqueViolation(ex)) Metrics.queryFailed(query);
+            throw ex;
+        } finally {
+            Metrics.recordQuery(query, t0);
+        }
+    }
+
+    /**
+     * SQLState 23505 (H2, PostgreSQL): a unique index said no, which is an answer, not a failure.
+     * NOT NULL, check and foreign key violations share class 23 but are bugs and surface as such.
+     */
+    static boolean isUniqueViolation(SQLException e) {
+        return "23505".equals(e.getSQLState());
+    }
+
+    // 40001 serialization failure / deadlock victim, 40P01 PostgreSQL deadlock, 90131 H2 concurrent update, HYT00 H2 lock timeout
+    private static boolean isRetryable(SQLException e) {
+        String state = e.getSQLState();
+        return "40001".equals(state) || "40P01".equals(state) || "90131".equals(state) || "HYT00".equals(state);
+    }
+
+    // ---- change polling
+
+    private void startPoller(long pollMs) {
+        Thread t = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(pollMs);
+                    long v = call("poll_changes", this::readEventsVersion);
+                    if (v > eventsVersion.get()) eventsChanged(v);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (SQLException ex) {
+                    // the server may be restarting; try again next round
+                    System.err.println("Change poll failed: " + ex.getMessage());
+                }
+            }
+        }, "storage-poll");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private long readEventsVersion(JdbcPool.Lease c) throws SQLException {
+        try (ResultSet rs = c.prepare("SELECT version FROM change_counters WHERE name = 'events'").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // inside an event write's transaction; returns the new counter value
+    private long bumpEventsVersion(JdbcPool.Lease c) throws SQLException {
+        c.prepare("UPDATE change_counters SET version = version + 1 WHERE name = 'events'").executeUpdate();
+        return readEventsVersion(c);
+    }
+
+    // An event change committed with counter value {@code version}; the next read reloads everything up to it
+    private void eventsChanged(long version) {
+        eventsVersion.accumulateAndGet(version, Math::max);
+        events.invalidate();
+        // a fresh index builds from the reloaded cache on its first search
+        search = new EventSearch(() -> events.get().events);
+    }
+
+    // ---- events
+
+    @Override
+    public int createEvent(Event e) {
+        String sql = "INSERT INTO events(title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner,capacity) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)";
+        try {
+            long[] idAndVersion = transaction("create_event", c -> {
+                PreparedStatement p = c.prepare(sql, Statement.RETURN_GENERATED_KEYS);
+                bindEvent(p, e);
+                p.executeUpdate();
+                int id = -1;
+                try (ResultSet rs = p.getGeneratedKeys()) {
+                    if (rs.next()) id = rs.getInt(1);
+                }
+                return new long[]{id, bumpEventsVersion(c)};
+            });
+            eventsChanged(idAndVersion[1]);
+            return (int) idAndVersion[0];
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+
+    private static void bindEvent(PreparedStatement p, Event e) throws SQLException {
+        p.setString(1, e.title);
+        p.setString(2, e.type);
+        p.setString(3, e.startDatetime);
+        p.setString(4, e.endDatetime);
+        p.setString(5, e.venue);
+        p.setString(6, e.description);
+        p.setString(7, e.rules);
+        p.setString(8, e.coordinators);
+        p.setString(9, e.prizes);
+        p.setString(10, e.fee);
+        p.setString(11, e.banner);
+        p.setObject(12, e.capacity, java.sql.Types.INTEGER);
+    }
+
+    @Override
+    public boolean updateEvent(Event e) {
+        String sql = "UPDATE events SET title=?,type=?,start_datetime=?,end_datetime=?,venue=?,description=?,rules=?,coordinators=?,prizes=?,fee=?,banner=?,capacity=? WHERE id=?";
+        try {
+            long version = transaction("update_event", c -> {
+                PreparedStatement p = c.prepare(sql);
+                bindEvent(p, e);
+                p.setInt(13, e.id);
+                return p.executeUpdate() > 0 ? bumpEventsVersion(c) : -1L;
+            });
+            if (version < 0) return false;
+            eventsChanged(version);
+            // a larger capacity may have room for people on the waitlist
+            if (getWaitlistSize(e.id) > 0) schedulePromotion(e.id);
+            return true;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean deleteEvent(int id) {
+        // registrations of the event outlive it, so they get its title back before the event row goes
+        String keepTitles = "UPDATE registrations SET event_name = (SELECT title FROM events WHERE id = ?) WHERE event_id = ? AND event_name IS NULL";
+        try {
+            long version = transaction("delete_event", c -> {
+                PreparedStatement keep = c.prepare(keepTitles);
+                keep.setInt(1, id);
+                keep.setInt(2, id);
+                keep.executeUpdate();
+                PreparedStatement p = c.prepare("DELETE FROM events WHERE id = ?");
+                p.setInt(1, id);
+                return p.executeUpdate() > 0 ? bumpEventsVersion(c) : -1L;
+            });
+            if (version < 0) return false;
+            eventsChanged(version);
+            return true;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    private List<Event> loadAllEvents() throws SQLException {
+        return call("load_events", c -> {
+            List<Event> list = new ArrayList<>();
+            try (ResultSet rs = c.prepare("SELECT " + EVENT_COLUMNS + " FROM events ORDER BY start_datetime ASC").executeQuery()) {
+                while (rs.next()) {
+                    Event ev = new Event(
+                            rs.getInt("id"), rs.getString("title"), rs.getString("type"), rs.getString("start_datetime"), rs.getString("end_datetime"),
+                            rs.getString("venue"), rs.getString("description"), rs.getString("rules"), rs.getString("coordinators"), rs.getString("prizes"), rs.getString("fee"), rs.getString("banner")
+                    );
+                    int cap = rs.getInt("capacity");
+                    ev.capacity = rs.wasNull() ? null : cap;
+                    list.add(ev);
+                }
+            }
+            return list;
+        });
+    }
+
+    @Override
+    public List<Event> getAllEvents() {
+        return events.get().events;
+    }
+
+    @Override
+    public Event getEventById(int id) {
+        return events.get().byId.get(id);
+    }
+
+    @Override
+    public EventCache.Snapshot getEventSnapshot() {
+        return events.get();
+    }
+
+    @Override
+    public EventSearch.Result searchEvents(String query, String type, String from, String to, int limit) {
+        return search.search(query, type, from, to, limit, events.get());
+    }
+
+    // ---- seats and waitlist
+
+    /**
+     * Only looks: the seats are claimed by the insert itself, in its transaction, so a registration
+     * that loses the last seats to another node gets {@code SOLD_OUT} from the insert instead.
+     */
+    @Override
+    public boolean reserveSeats(int eventId, int tickets) {
+        SeatAllocator.Availability a = getSeatAvailability(eventId);
+        return a.waitlisted == 0 && (a.remaining == null || a.remaining >= tickets);
+    }
+
+    /** Nothing to give back; see {@link #reserveSeats}. */
+    @Override
+    public void releaseSeats(int eventId, int tickets) {
+    }
+
+    @Override
+    public SeatAllocator.Availability getSeatAvailability(int eventId) {
+        SeatAllocator.Availability a = new SeatAllocator.Availability();
+        a.eventId = eventId;
+        try {
+            call("seat_availability", c -> {
+                PreparedStatement p = c.prepare("SELECT capacity, sold, waiting FROM events WHERE id = ?");
+                p.setInt(1, eventId);
+                try (ResultSet rs = p.executeQuery()) {
+                    if (rs.next()) {
+                        int cap = rs.getInt("capacity");
+                        a.capacity = rs.wasNull() ? null : cap;
+                        a.sold = rs.getInt("sold");
+                        a.remaining = a.capacity == null ? null : Math.max(0, a.capacity - a.sold);
+                        a.waitlisted = rs.getInt("waiting");
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        return a;
+    }
+
+    @Override
+    public int getWaitlistSize(int eventId) {
+        return getSeatAvailability(eventId).waitlisted;
+    }
+
+    @Override
+    public int getWaitlistPosition(int eventId, int registrationId) {
+        String sql = "SELECT COUNT(*) FROM registrations w WHERE w.event_id = ? AND w.status = 'waitlisted' AND w.id <= ? " +
+                "AND EXISTS (SELECT 1 FROM registrations r WHERE r.id = ? AND r.event_id = ? AND r.status = 'waitlisted')";
+        try {
+            return call("waitlist_position", c -> {
+                PreparedStatement p = c.prepare(sql);
+                p.setInt(1, eventId);
+                p.setInt(2, registrationId);
+                p.setInt(3, registrationId);
+                p.setInt(4, eventId);
+                try (ResultSet rs = p.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+
+    @Override
+    public Waitlist.Stats getWaitlistStats() {
+        Waitlist.Stats s = new Waitlist.Stats();
+        try {
+            s.waiting = call("waitlist_total", c -> {
+                try (ResultSet rs = c.prepare("SELECT COALESCE(SUM(waiting), 0) FROM events").executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        // these two count this node's work only
+        s.promoted = promoted.sum();
+        s.cancelled = cancelled.sum();
+        return s;
+    }
+
+    // ---- registrations
+
+    @Override
+    public InsertResult insertRegistration(Registration r) {
+        try {
+            long id = transaction("insert_registration", c -> {
+                if (!claim(c, r)) return -1L;
+                return insert(c, r);
+            });
+            if (id < 0) return new InsertResult(InsertResult.Status.SOLD_OUT, -1);
+            r.id = (int) id;
+            onCommitted(Collections.singletonList(r));
+            return new InsertResult(InsertResult.Status.INSERTED, id);
+        } catch (SQLTimeoutException ex) {
+            // no connection came free in time
+            return new InsertResult(InsertResult.Status.BUSY, -1);
+        } catch (SQLException ex) {
+            if (isUniqueViolation(ex)) {
+                // a replayed request can trip the email rule before the key's, so look for the key either way
+                long existing = r.idempotencyKey == null ? -1 : findRegistrationIdByIdempotencyKey(r.idempotencyKey);
+                if (existing > 0) return new InsertResult(InsertResult.Status.DUPLICATE_KEY, existing);
+                return new InsertResult(InsertResult.Status.DUPLICATE_EMAIL, -1);
+            }
+            ex.printStackTrace();
+            return new InsertResult(InsertResult.Status.FAILED, -1);
+        }
+    }
+
+    /**
+     * Updates the event's counters for a row about to be inserted in the same transaction. A
+     * confirmed row takes its seats only if they fit and nobody is waiting; false means they do
+     * not. Rows of unknown events count nowhere, as with SQLite.
+     */
+    private boolean claim(JdbcPool.Lease c, Registration r) throws SQLException {
+        if (r.eventId == null) return true;
+        if (Registration.WAITLISTED.equals(r.status)) {
+            PreparedStatement p = c.prepare("UPDATE events SET waiting = waiting + 1 WHERE id = ?");
+            p.setInt(1, r.eventId);
+            p.executeUpdate();
+            return true;
+        }
+        PreparedStatement p = c.prepare("UPDATE events SET sold = sold + ? WHERE id = ? AND waiting = 0 AND (capacity IS NULL OR sold + ? <= capacity)");
+        p.setInt(1, r.tickets);
+        p.setInt(2, r.eventId);
+        p.setInt(3, r.tickets);
+        if (p.executeUpdate() > 0) return true;
+        // an event deleted meanwhile has no counters left to respect
+        PreparedStatement exists = c.prepare("SELECT 1 FROM events WHERE id = ?");
+        exists.setInt(1, r.eventId);
+        try (ResultSet rs = exists.executeQuery()) {
+            return !rs.next();
+        }
+    }
+
+    private long insert(JdbcPool.Lease c, Registration r) throws SQLException {
+        PreparedStatement p = c.prepare("INSERT INTO registrations(student_name, event_name, event_id, tickets, email, phone, created_at, idempotency_key, status, email_key, active_email, cancel_token) " +
+                "VALUES(?,?,?,?,?,?,?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+        if (r.createdAt == null) r.createdAt = RegistrationWriter.timestamp();
+        String status = Database.storedStatus(r);
+        String emailKey = r.email == null ? null : Database.normalizeEmail(r.email);
+        p.setString(1, r.studentName);
+        p.setString(2, Database.storedEventName(r));
+        p.setObject(3, r.eventId, java.sql.Types.INTEGER);
+        p.setInt(4, r.tickets);
+        p.setString(5, r.email);
+        p.setString(6, r.phone);
+        p.setString(7, r.createdAt);
+        p.setString(8, r.idempotencyKey);
+        p.setString(9, status);
+        p.setString(10, emailKey);
+        p.setString(11, Registration.CANCELLED.equals(status) ? null : emailKey);
+        p.setString(12, r.cancelTokenHash);
+        p.executeUpdate();
+        try (ResultSet rs = p.getGeneratedKeys()) {
+            if (!rs.next()) throw new SQLException("no id returned for the new registration");
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Inserts the rows in one transaction, each behind a savepoint: a row that breaks a unique
+     * rule, or whose seats are gone, is rolled back alone and gets a null {@code id}. Ids always
+     * come from the server.
+     */
+    @Override
+    public int insertRegistrationBatch(List<Registration> rows) throws SQLException {
+        if (rows.isEmpty()) return 0;
+        for (Registration r : rows) r.id = null;
+        // ids are only handed out once the batch has committed; a retried transaction starts from scratch
+        long[] ids = transaction("insert_registration_batch", c -> {
+            long[] out = new long[rows.size()];
+            Connection conn = c.connection();
+            for (int i = 0; i < rows.size(); i++) {
+                Registration r = rows.get(i);
+                Savepoint sp = conn.setSavepoint();
+                try {
+                    out[i] = claim(c, r) ? insert(c, r) : -1;
+                    if (out[i] < 0) conn.rollback(sp);
+                    else conn.releaseSavepoint(sp);
+                } catch (SQLException e) {
+                    if (!isUniqueViolation(e)) throw e;
+                    conn.rollback(sp);
+                    out[i] = -1;
+                }
+            }
+            return out;
+        });
+        List<Registration> inserted = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (ids[i] < 0) continue;
+            rows.get(i).id = (int) ids[i];
+            inserted.add(rows.get(i));
+        }
+        if (!inserted.isEmpty()) onCommitted(inserted);
+        return inserted.size();
+    }
+
+    private String cancelTokenHash(int id) {
+        try {
+            return call("registration_cancel_token", c -> {
+                PreparedStatement p = c.prepare("SELECT cancel_token FROM registrations WHERE id = ?");
+                p.setInt(1, id);
+                try (ResultSet rs = p.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public long findRegistrationIdByIdempotencyKey(String key) {
+        try {
+            return call("registration_by_key", c -> {
+                PreparedStatement p = c.prepare("SELECT id FROM registrations WHERE idempotency_key = ?");
+                p.setString(1, key);
+                try (ResultSet rs = p.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : -1L;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+
+    // Committed rows go to this node's listeners; a waitlisted row may have arrived just after seats came free
+    private void onCommitted(List<Registration> batch) {
+        registrationBus.publish(batch);
+        for (Registration r : batch) {
+            if (Registration.WAITLISTED.equals(r.status) && r.eventId != null) {
+                SeatAllocator.Availability a = getSeatAvailability(r.eventId);
+                if (a.remaining == null || a.remaining > 0) schedulePromotion(r.eventId);
+            }
+        }
+    }
+
+    @Override
+    public CancelResult cancelRegistration(int id, String cancelToken) {
+        Registration r = getRegistration(id);
+        if (r == null || (cancelToken != null && !PasswordHash.matchesToken(cancelToken, cancelTokenHash(id)))) {
+            return new CancelResult(CancelResult.Status.NOT_FOUND, 0);
+        }
+        if (Registration.CANCELLED.equals(r.status)) return new CancelResult(CancelResult.Status.ALREADY_CANCELLED, 0);
+        return settle(r.eventId, r);
+    }
+
+    @Override
+    public int promoteWaitlist(int eventId) {
+        return settle(eventId, null).promoted;
+    }
+
+    private void schedulePromotion(int eventId) {
+        try {
+            promoter.execute(() -> promoteWaitlist(eventId));
+        } catch (RejectedExecutionException ignored) {
+            // shutting down; the next cancellation or capacity change promotes instead
+        }
+    }
+
+    // Cancels {@code cancel} (if given) and promotes waitlisted registrations into the seats that frees or that are
+    // already free, in one transaction holding the event row's lock, so promotions of one event never overlap on any node
+    private CancelResult settle(Integer eventId, Registration cancel) {
+        List<Registration> changed = new ArrayList<>();
+        int[] promotedCount = new int[1];
+        try {
+            Boolean done = transaction("settle_waitlist", c -> {
+                changed.clear();
+                int capacity = -1, sold = 0, waiting = 0;
+                boolean locked = false;
+                if (eventId != null) {
+                    PreparedStatement lock = c.prepare("SELECT capacity, sold, waiting FROM events WHERE id = ? FOR UPDATE");
+                    lock.setInt(1, eventId);
+                    try (ResultSet rs = lock.executeQuery()) {
+                        if (rs.next()) {
+                            locked = true;
+                            int cap = rs.getInt("capacity");
+                            capacity = rs.wasNull() ? -1 : cap;
+                            sold = rs.getInt("sold");
+                            waiting = rs.getInt("waiting");
+                        }
+                    }
+                }
+                String was = null;
+                if (cancel != null) {
+                    PreparedStatement p = c.prepare("UPDATE registrations SET status = 'cancelled', active_email = NULL WHERE id = ? AND status = ?");
+                    was = cancel.status == null ? Registration.CONFIRMED : cancel.status;
+                    p.setInt(1, cancel.id);
+                    p.setString(2, was);
+                    // changed since it was read: cancelled or promoted by someone else
+                    if (p.executeUpdate() == 0) return false;
+                    if (Registration.CONFIRMED.equals(was)) sold -= cancel.tickets;
+                    else if (Registration.WAITLISTED.equals(was)) waiting--;
+                }
+                List<int[]> promoted = new ArrayList<>();
+                // cancelling a waitlisted registration frees no seats, so nobody moves up
+                if (locked && waiting > 0 && (cancel == null || Registration.CONFIRMED.equals(was))) {
+                    PreparedStatement head = c.prepare("SELECT id, tickets FROM registrations WHERE event_id = ? AND status = 'waitlisted' ORDER BY id LIMIT ?");
+                    head.setInt(1, eventId);
+                    head.setInt(2, promotionBatch);
+                    try (ResultSet rs = head.executeQuery()) {
+                        while (rs.next()) {
+                            int tickets = rs.getInt("tickets");
+                            // the first one that does not fit stops the run, so nobody is overtaken
+                            if (capacity >= 0 && sold + tickets > capacity) break;
+                            sold += tickets;
+                            waiting--;
+                            promoted.add(new int[]{rs.getInt("id"), tickets});
+                        }
+                    }
+                    if (!promoted.isEmpty()) {
+                        PreparedStatement up = c.prepare("UPDATE registrations SET status = 'confirmed' WHERE id = ? AND status = 'waitlisted'");
+                        for (int[] e : promoted) {
+                            up.setInt(1, e[0]);
+                            up.addBatch();
+                        }
+                        up.executeBatch();
+                        changed.addAll(readRegistrations(c, promoted));
+                    }
+                }
+                if (locked) {
+                    PreparedStatement counts = c.prepare("UPDATE events SET sold = ?, waiting = ? WHERE id = ?");
+                    counts.setInt(1, Math.max(0, sold));
+                    counts.setInt(2, Math.max(0, waiting));
+                    counts.setInt(3, eventId);
+                    counts.executeUpdate();
+                }
+                promotedCount[0] = promoted.size();
+                return true;
+            });
+            if (!done) return new CancelResult(CancelResult.Status.ALREADY_CANCELLED, 0);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return new CancelResult(CancelResult.Status.FAILED, 0);
+        }
+        if (cancel != null) {
+            cancel.previousStatus = cancel.status == null ? Registration.CONFIRMED : cancel.status;
+            cancel.status = Registration.CANCELLED;
+            changed.add(0, cancel);
+            cancelled.increment();
+        }
+        for (Registration r : changed) {
+            if (r.previousStatus == null) r.previousStatus = Registration.WAITLISTED;
+        }
+        promoted.add(promotedCount[0]);
+        if (!changed.isEmpty()) registrationBus.publish(changed);
+        // the batch was capped; whoever is next may fit too
+        if (promotedCount[0] == promotionBatch) schedulePromotion(eventId);
+        return new CancelResult(CancelResult.Status.CANCELLED, promotedCount[0]);
+    }
+
+    private List<Registration> readRegistrations(JdbcPool.Lease c, List<int[]> ids) throws SQLException {
+        List<Registration> out = new ArrayList<>(ids.size());
+        EventCache.Snapshot names = events.get();
+        PreparedStatement p = c.prepare("SELECT " + REGISTRATION_COLUMNS + " FROM registrations WHERE id = ?");
+        for (int[] id : ids) {
+            p.setInt(1, id[0]);
+            try (ResultSet rs = p.executeQuery()) {
+                if (rs.next()) out.add(Database.readRegistration(rs, names));
+            }
+        }
+        return out;
+    }
+
+    // ---- registration reads
+
+    // Rows of one query, mapped with the event titles of the current snapshot
+    private List<Registration> list(String query, String sql, Object... params) {
+        EventCache.Snapshot names = events.get();
+        try {
+            return call(query, c -> {
+                PreparedStatement p = c.prepare(sql);
+                for (int i = 0; i < params.length; i++) p.setObject(i + 1, params[i]);
+                List<Registration> out = new ArrayList<>();
+                try (ResultSet rs = p.executeQuery()) {
+                    while (rs.next()) out.add(Database.readRegistration(rs, names));
+                }
+                return out;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Registration getRegistration(int id) {
+        List<Registration> one = list("registration_by_id", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations WHERE id = ?", id);
+        return one.isEmpty() ? null : one.get(0);
+    }
+
+    @Override
+    public List<Registration> getRecentRegistrations(int limit) {
+        return list("recent_registrations", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC LIMIT ?", limit);
+    }
+
+    @Override
+    public Page<Registration> getRegistrationsPage(String after, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, 500));
+        String[] cursor = after == null || after.isEmpty() ? null : Database.decodeCursor(after);
+        List<Registration> list = cursor == null
+                ? list("registrations_page", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC LIMIT ?", size + 1)
+                : list("registrations_page", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations WHERE created_at < ? OR (created_at = ? AND id < ?) ORDER BY created_at DESC, id DESC LIMIT ?",
+                        cursor[0], cursor[0], Long.parseLong(cursor[1]), size + 1);
+        String next = null;
+        if (list.size() > size) {
+            list.remove(size);
+            Registration last = list.get(size - 1);
+            next = Database.encodeCursor(last.createdAt, last.id);
+        }
+        return new Page<>(list, next);
+    }
+
+    @Override
+    public List<Registration> getRegistrationsForEvent(int eventId) {
+        return list("registrations_for_event", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations WHERE event_id = ? ORDER BY created_at DESC, id DESC", eventId);
+    }
+
+    @Override
+    public List<Registration> getRegistrationsForEmail(String email) {
+        return Collections.unmodifiableList(list("registrations_for_email",
+                "SELECT " + REGISTRATION_COLUMNS + " FROM registrations WHERE email_key = ? ORDER BY created_at DESC, id DESC", Database.normalizeEmail(email)));
+    }
+
+    @Override
+    public List<Registration> getAllRegistrations() {
+        return list("all_registrations", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC");
+    }
+
+    @Override
+    public void streamRegistrations(RegistrationSink sink) throws SQLException, IOException {
+        stream("stream_registrations", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC", sink);
+    }
+
+    @Override
+    public void scanRegistrations(RegistrationSink sink) throws SQLException, IOException {
+        stream("scan_registrations", "SELECT " + REGISTRATION_COLUMNS + " FROM registrations", sink);
+    }
+
+    // Feeds rows to the sink as they are read; the sink's I/O errors are carried out of the JDBC callback and rethrown
+    private void stream(String query, String sql, RegistrationSink sink) throws SQLException, IOException {
+        EventCache.Snapshot names = events.get();
+        IOException[] failed = new IOException[1];
+        call(query, c -> {
+            Connection conn = c.connection();
+            // PostgreSQL only streams with a fetch size inside a transaction
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement p = c.prepare(sql);
+                p.setFetchSize(Config.getInt("export.fetchSize", 500));
+                try (ResultSet rs = p.executeQuery()) {
+                    while (rs.next()) sink.accept(Database.readRegistration(rs, names));
+                }
+            } catch (IOException e) {
+                failed[0] = e;
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            return null;
+        });
+        if (failed[0] != null) throw failed[0];
+    }
+
+    // ---- users and sessions
+
+    @Override
+    public String getAdminPasswordHash(String username) {
+        try {
+            return call("admin_credentials", c -> {
+                PreparedStatement p = c.prepare("SELECT password FROM users WHERE username = ? AND role = 'admin'");
+                p.setString(1, username);
+                try (ResultSet rs = p.executeQuery()) {
+                    return rs.next() ? rs.getString("password") : null;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean updatePasswordHash(String username, String hash, String expected) {
+        String sql = expected == null
+                ? "UPDATE users SET password = ? WHERE username = ?"
+                : "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+        try {
+            return call("update_password", c -> {
+                PreparedStatement p = c.prepare(sql);
+                p.setString(1, hash);
+                p.setString(2, username);
+                if (expected != null) p.setString(3, expected);
+                return p.executeUpdate() > 0;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean sharesSessions() {
+        return true;
+    }
+
+    @Override
+    public void saveSession(String tokenHash, String username, long expiresAtMillis) {
+        try {
+            call("save_session", c -> {
+                // expired sessions of anyone go with each new one, so the table stays small
+                PreparedStatement sweep = c.prepare("DELETE FROM admin_sessions WHERE expires_at < ?");
+                sweep.setLong(1, System.currentTimeMillis());
+                sweep.executeUpdate();
+                PreparedStatement p = c.prepare("INSERT INTO admin_sessions(token_hash, username, expires_at) VALUES(?,?,?)");
+                p.setString(1, tokenHash);
+                p.setString(2, username);
+                p.setLong(3, expiresAtMillis);
+                return p.executeUpdate();
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public String findSession(String tokenHash) {
+        try {
+            return call("find_session", c -> {
+                PreparedStatement p = c.prepare("SELECT username FROM admin_sessions WHERE token_hash = ? AND expires_at > ?");
+                p.setString(1, tokenHash);
+                p.setLong(2, System.currentTimeMillis());
+                try (ResultSet rs = p.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void deleteSession(String tokenHash) {
+        try {
+            call("delete_session", c -> {
+                PreparedStatement p = c.prepare("DELETE FROM admin_sessions WHERE token_hash = ?");
+                p.setString(1, tokenHash);
+                return p.executeUpdate();
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void deleteSessions(String username) {
+        try {
+            call("delete_session", c -> {
+                PreparedStatement p = c.prepare("DELETE FROM admin_sessions WHERE username = ?");
+                p.setString(1, username);
+                return p.executeUpdate();
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // ---- figures
+
+    @Override
+    public void initDatabase() {
+        // the schema was created when this opened; there are no local checks to run
+    }
+
+    @Override
+    public String getLocation() {
+        return url;
+    }
+
+    @Override
+    public String getJournalPath() {
+        return null;
+    }
+
+    @Override
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.stats();
+    }
+
+    @Override
+    public RegistrationWriter.Stats getWriterStats() {
+        return null;
+    }
+
+    @Override
+    public RegistrationJournal.Stats getJournalStats() {
+        return null;
+    }
+
+    @Override
+    public WriteBehindBuffer.Stats getWriteBehindStats() {
+        return null;
+    }
+
+    @Override
+    public Database.SchemaStats getSchemaStats() {
+        return null;
+    }
+
+    @Override
+    public EventCache.Stats getEventCacheStats() {
+        return events.stats();
+    }
+
+    @Override
+    public EventSearch.Stats getEventSearchStats() {
+        return search.stats();
+    }
+
+    @Override
+    public EmailLookupCache.Stats getEmailLookupStats() {
+        return null;
+    }
+
+    @Override
+    public RegistrationBus getRegistrationBus() {
+        return registrationBus;
+    }
+}
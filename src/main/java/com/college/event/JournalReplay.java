@@ -0,0 +1,290 @@
+package com.college.event;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Reads {@link RegistrationJournal} segments back. At startup it re-inserts every journaled
+ * registration newer than the highest id already in {@code registrations} and re-applies journaled
+ * status changes (cancellations, promotions) whose row still has the old status, in one batched
+ * transaction. Replay starts at the position checkpointed in {@code journal_checkpoint}, so only
+ * the tail written since the last checkpoint is read. Run from the command line it can also
+ * rebuild a database file from the whole journal or print it as portable SQL:
+ * <pre>
+ *   java -cp app.jar com.college.event.JournalReplay [journalDir] [dbFile]
+ *   java -cp app.jar com.college.event.JournalReplay --sql [journalDir] &gt; registrations.sql
+ * </pre>
+ */
+public final class JournalReplay {
+    private static final int BATCH = 10000;
+    private static final String INSERT_SQL = "INSERT OR IGNORE INTO registrations(id, student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status, cancel_token) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
+    // a no-op once the row has moved on, so replaying a change twice is harmless
+    private static final String UPDATE_SQL = "UPDATE registrations SET status = ? WHERE id = ? AND status = ?";
+
+    private JournalReplay() {}
+
+    /** What a replay changed, and where the journal ends. */
+    public static final class Result {
+        public int inserted;
+        public int updated;
+        /** Position after the last intact record, or null when there are no segments. */
+        public RegistrationJournal.Position end;
+    }
+
+    /** Replays the whole journal. */
+    public static Result replay(Path dir, Connection conn) throws IOException, SQLException {
+        return replay(dir, conn, null);
+    }
+
+    /**
+     * Replays the journal from the given position (null: from the start) into the database. A
+     * position that no longer matches the journal, e.g. after its segments were deleted, falls back
+     * to a full replay.
+     */
+    public static Result replay(Path dir, Connection conn, RegistrationJournal.Position from) throws IOException, SQLException {
+        long maxId;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM registrations")) {
+            maxId = rs.next() ? rs.getLong(1) : 0;
+        }
+        Result result = new Result();
+        boolean auto = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement ins = conn.prepareStatement(INSERT_SQL);
+             PreparedStatement upd = conn.prepareStatement(UPDATE_SQL)) {
+            Batch batch = new Batch(ins, upd, result);
+            result.end = forEach(dir, from, r -> {
+                if (r.id == null) return;
+                try {
+                    if (r.previousStatus != null) {
+                        upd.setString(1, status(r));
+                        upd.setInt(2, r.id);
+                        upd.setString(3, r.previousStatus);
+                        batch.add(upd);
+                    } else if (r.id > maxId) {
+                        ins.setInt(1, r.id);
+                        ins.setString(2, r.studentName);
+                        ins.setString(3, storedEventName(r));
+                        ins.setInt(4, r.tickets);
+                        ins.setString(5, r.email);
+                        ins.setString(6, r.phone);
+                        ins.setString(7, r.createdAt);
+                        ins.setObject(8, r.eventId);
+                        ins.setString(9, r.idempotencyKey);
+                        ins.setString(10, status(r));
+                        ins.setString(11, r.cancelTokenHash);
+                        batch.add(ins);
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            batch.flush();
+            conn.commit();
+        } catch (IllegalStateException e) {
+            conn.rollback();
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw e;
+        } finally {
+            conn.setAutoCommit(auto);
+        }
+        return result;
+    }
+
+    // One statement's batch at a time, flushed when the kind changes so a status change never runs before its insert
+    private static final class Batch {
+        private final PreparedStatement insert;
+        private final PreparedStatement update;
+        private final Result result;
+        private PreparedStatement pending;
+        private int size;
+
+        Batch(PreparedStatement insert, PreparedStatement update, Result result) {
+            this.insert = insert;
+            this.update = update;
+            this.result = result;
+        }
+
+        void add(PreparedStatement ps) throws SQLException {
+            if (ps != pending) flush();
+            ps.addBatch();
+            pending = ps;
+            if (++size == BATCH) flush();
+        }
+
+        void flush() throws SQLException {
+            if (pending == null) return;
+            int rows = 0;
+            for (int n : pending.executeBatch()) rows += Math.max(n, 0);
+            if (pending == insert) result.inserted += rows;
+            else result.updated += rows;
+            pending = null;
+            size = 0;
+        }
+    }
+
+    /** The position checkpointed by the server, or null if none has been written yet. */
+    public static RegistrationJournal.Position readCheckpoint(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT segment, byte_offset FROM journal_checkpoint WHERE id = 1")) {
+            return rs.next() ? new RegistrationJournal.Position(rs.getInt(1), rs.getLong(2)) : null;
+        }
+    }
+
+    /** Records that the database holds everything journaled before the given position. */
+    public static void writeCheckpoint(Connection conn, RegistrationJournal.Position p) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT OR REPLACE INTO journal_checkpoint(id, segment, byte_offset) VALUES(1, ?, ?)")) {
+            ps.setInt(1, p.segment);
+            ps.setLong(2, p.offset);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Streams every intact record of every segment, oldest first. */
+    public static void forEach(Path dir, Consumer<Registration> consumer) throws IOException {
+        forEach(dir, null, consumer);
+    }
+
+    // Streams the intact records from the given position on; returns the position after the last one
+    private static RegistrationJournal.Position forEach(Path dir, RegistrationJournal.Position from,
+                                                        Consumer<Registration> consumer) throws IOException {
+        List<Path> segs = segments(dir);
+        if (from != null && !contains(segs, from)) {
+            System.err.println("Journal checkpoint " + from + " is not in " + dir + "; replaying the whole journal");
+            from = null;
+        }
+        RegistrationJournal.Position end = null;
+        for (Path seg : segs) {
+            int index = segmentIndex(seg);
+            if (from != null && index < from.segment) continue;
+            long offset = from != null && index == from.segment ? from.offset : 0;
+            try (InputStream in = Files.newInputStream(seg)) {
+                in.skipNBytes(offset);
+                end = new RegistrationJournal.Position(index, offset + read(in, consumer));
+            }
+        }
+        return end;
+    }
+
+    // the checkpoint must fall on a record boundary of an existing segment, which its intact prefix then covers
+    private static boolean contains(List<Path> segs, RegistrationJournal.Position p) throws IOException {
+        for (Path seg : segs) {
+            if (segmentIndex(seg) == p.segment) return validLength(seg) >= p.offset;
+        }
+        return false;
+    }
+
+    static List<Path> segments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith(RegistrationJournal.SEGMENT_PREFIX) && n.endsWith(RegistrationJournal.SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static int segmentIndex(Path segment) {
+        String n = segment.getFileName().toString();
+        return Integer.parseInt(n.substring(RegistrationJournal.SEGMENT_PREFIX.length(), n.length() - RegistrationJournal.SEGMENT_SUFFIX.length()));
+    }
+
+    /** Byte length of the intact prefix of a segment: everything before the first empty or corrupt record. */
+    static long validLength(Path segment) throws IOException {
+        try (InputStream in = Files.newInputStream(segment)) {
+            return read(in, r -> {});
+        }
+    }
+
+    private static long read(InputStream raw, Consumer<Registration> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[256];
+        long valid = 0;
+        while (true) {
+            int len;
+            int sum;
+            try {
+                len = in.readInt();
+                sum = in.readInt();
+                if (len <= 0) return valid; // preallocated, never written
+                if (len > buf.length) buf = new byte[Math.max(len, buf.length * 2)];
+                in.readFully(buf, 0, len);
+            } catch (EOFException e) {
+                return valid;
+            }
+            crc.reset();
+            crc.update(buf, 0, len);
+            if ((int) crc.getValue() != sum) return valid; // torn write
+            consumer.accept(RegistrationCodec.read(ByteBuffer.wrap(buf, 0, len)));
+            valid += RegistrationCodec.HEADER_BYTES + len;
+        }
+    }
+
+    // not Database.storedStatus / storedEventName: the CLI must not open the server's database
+    private static String status(Registration r) {
+        return r.status == null ? Registration.CONFIRMED : r.status;
+    }
+
+    // rows linked to an event store no title, so a renamed event shows its new one
+    private static String storedEventName(Registration r) {
+        return r.eventId != null ? null : r.eventName;
+    }
+
+    private static String sqlLiteral(String s) {
+        return s == null ? "NULL" : "'" + s.replace("'", "''") + "'";
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean sql = args.length > 0 && "--sql".equals(args[0]);
+        int i = sql ? 1 : 0;
+        Path dir = Paths.get(args.length > i ? args[i] : Config.get("journal.dir", "journal"));
+        if (sql) {
+            PrintStream out = System.out;
+            forEach(dir, r -> {
+                if (r.previousStatus != null) {
+                    out.printf("UPDATE registrations SET status = %s WHERE id = %d AND status = %s;%n",
+                            sqlLiteral(status(r)), r.id, sqlLiteral(r.previousStatus));
+                    return;
+                }
+                out.printf("INSERT INTO registrations(id, student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status, cancel_token) VALUES(%d,%s,%s,%d,%s,%s,%s,%s,%s,%s,%s);%n",
+                        r.id, sqlLiteral(r.studentName), sqlLiteral(storedEventName(r)), r.tickets, sqlLiteral(r.email), sqlLiteral(r.phone), sqlLiteral(r.createdAt),
+                        r.eventId == null ? "NULL" : r.eventId.toString(), sqlLiteral(r.idempotencyKey), sqlLiteral(status(r)), sqlLiteral(r.cancelTokenHash));
+            });
+            out.flush();
+            return;
+        }
+        String dbFile = args.length > i + 1 ? args[i + 1] : "registrations.db";
+        long start = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS registrations (id INTEGER PRIMARY KEY AUTOINCREMENT, student_name TEXT NOT NULL, event_name TEXT, tickets INTEGER NOT NULL, email TEXT, phone TEXT, created_at DATETIME DEFAULT CURRENT_TIMESTAMP, event_id INTEGER DEFAULT NULL, idempotency_key TEXT DEFAULT NULL, status TEXT NOT NULL DEFAULT 'confirmed', cancel_token TEXT DEFAULT NULL)");
+            }
+            Result r = replay(dir, conn);
+            System.out.printf("Replayed %d registrations and %d status changes from %s into %s in %d ms%n",
+                    r.inserted, r.updated, dir, dbFile, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
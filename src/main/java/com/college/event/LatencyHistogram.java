@@ -0,0 +1,43 @@
+package com.college.event;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram in the Prometheus style. Recording is a short scan over the
+ * bucket bounds and two {@link LongAdder} increments, so it never locks and stays cheap under
+ * contention; readers sum the adders when the metrics are scraped.
+ */
+public final class LatencyHistogram {
+    /** Upper bounds of the buckets in seconds, as Prometheus {@code le} labels; slower values land in +Inf. */
+    static final String[] BOUNDS = {"0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) BOUND_NANOS[i] = (long) (Double.parseDouble(BOUNDS[i]) * 1e9);
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) i++;
+        buckets[i].increment();
+        sumNanos.add(nanos);
+    }
+
+    /** Per-bucket (not cumulative) counts; the last element is the +Inf bucket. */
+    long[] counts() {
+        long[] c = new long[buckets.length];
+        for (int i = 0; i < c.length; i++) c[i] = buckets[i].sum();
+        return c;
+    }
+
+    double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+}
@@ -0,0 +1,322 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-Sent Events behind {@code GET /api/stream}: per-event registration counts and notices of
+ * new registrations, pushed instead of polled. Committed batches arrive from the
+ * {@link RegistrationBus} and are only accumulated; every {@code tickMs} a ticker thread turns what
+ * accumulated into one encoded frame (one for the public, one for signed-in admins, whose notices
+ * include contact details) and hands the same bytes to every subscriber. A burst of registrations
+ * therefore costs one frame per tick however many dashboards are open, and no subscriber ever
+ * queries the database.
+ * <p>
+ * Subscribers are async requests written without blocking. A client that cannot keep up holds at
+ * most one unsent frame and a newer frame replaces it: it misses deltas and notices, but the
+ * {@code sold} and {@code remaining} totals in each frame are always current.
+ */
+public final class LiveUpdates {
+    private static final Gson gson = new Gson();
+    private static final int RETRY_MS = 3000;
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final long tickMs;
+    private final long heartbeatNanos;
+    private final int maxSubscribers;
+    private final int maxNotices;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    // accumulated since the last tick; guarded by this
+    private Map<Integer, int[]> deltas = new LinkedHashMap<>();
+    private List<Registration> notices = new ArrayList<>();
+    private int moreNotices;
+
+    private long sequence;
+    private long lastSend = System.nanoTime();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public LiveUpdates(RegistrationBus bus, long tickMs, long heartbeatMs, int maxSubscribers, int maxNotices) {
+        this.tickMs = Math.max(10, tickMs);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMs);
+        this.maxSubscribers = maxSubscribers;
+        this.maxNotices = maxNotices;
+        bus.subscribe(this::onCommit);
+        Thread ticker = new Thread(this::tickLoop, "sse-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Turns the request into an event stream: sends the current counts, then leaves the response
+     * open for the ticker. Returns false, without touching the response, when the subscriber
+     * limit is reached.
+     */
+    public boolean subscribe(HttpServletRequest req, HttpServletResponse res, boolean admin) throws IOException {
+        if (subscribers.size() >= maxSubscribers) {
+            rejected.increment();
+            return false;
+        }
+        res.setStatus(200);
+        res.setContentType("text/event-stream;charset=utf-8");
+        res.setHeader("Cache-Control", "no-cache");
+        res.setHeader("X-Accel-Buffering", "no"); // keep nginx and similar proxies from buffering the stream
+        ServletOutputStream out = res.getOutputStream();
+        out.write(("retry: " + RETRY_MS + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.write(snapshot());
+        // committing the response here also keeps Spark from writing a body of its own afterwards
+        out.flush();
+
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(0);
+        Subscriber s = new Subscriber(ctx, out, admin);
+        ctx.addListener(s);
+        subscribers.add(s);
+        out.setWriteListener(s);
+        return true;
+    }
+
+    private synchronized void onCommit(List<Registration> batch) {
+        if (subscribers.isEmpty()) return;
+        for (Registration r : batch) {
+            if (r.eventId != null) {
+                // confirmed rows count; a cancellation takes them back off, a waitlisted row only moves "waitlisted"
+                int added = (r.isConfirmed() ? 1 : 0) - (Registration.CONFIRMED.equals(r.previousStatus) ? 1 : 0);
+                int[] d = deltas.computeIfAbsent(r.eventId, k -> new int[2]);
+                d[0] += added;
+                d[1] += added * r.tickets;
+            }
+            // notices are for new registrations only, not status changes
+            if (r.previousStatus != null) continue;
+            if (notices.size() < maxNotices) notices.add(r);
+            else moreNotices++;
+        }
+    }
+
+    private void tickLoop() {
+        while (true) {
+            try {
+                Thread.sleep(tickMs);
+                tick();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void tick() {
+        Map<Integer, int[]> d;
+        List<Registration> n;
+        int more;
+        long id;
+        synchronized (this) {
+            d = deltas;
+            n = notices;
+            more = moreNotices;
+            if (!d.isEmpty() || !n.isEmpty()) {
+                deltas = new LinkedHashMap<>();
+                notices = new ArrayList<>();
+                moreNotices = 0;
+            }
+            id = ++sequence;
+        }
+        if (subscribers.isEmpty()) return;
+        if (d.isEmpty() && n.isEmpty()) {
+            if (System.nanoTime() - lastSend >= heartbeatNanos) broadcast(HEARTBEAT, HEARTBEAT);
+            return;
+        }
+
+        List<Map<String, Object>> events = new ArrayList<>(d.size());
+        for (Map.Entry<Integer, int[]> e : d.entrySet()) {
+            Map<String, Object> m = counts(Database.getSeatAvailability(e.getKey()));
+            m.put("added", e.getValue()[0]);
+            m.put("addedTickets", e.getValue()[1]);
+            events.add(m);
+        }
+        boolean anyAdmin = false;
+        for (Subscriber s : subscribers) anyAdmin |= s.admin;
+        byte[] pub = frame("registrations", id, body(events, n, more, false));
+        byte[] adm = anyAdmin ? frame("registrations", id, body(events, n, more, true)) : pub;
+        broadcast(pub, adm);
+        frames.increment();
+    }
+
+    private void broadcast(byte[] pub, byte[] adm) {
+        lastSend = System.nanoTime();
+        for (Subscriber s : subscribers) s.send(s.admin ? adm : pub);
+    }
+
+    private static String body(List<Map<String, Object>> events, List<Registration> regs, int more, boolean admin) {
+        List<Map<String, Object>> notices = new ArrayList<>(regs.size());
+        for (Registration r : regs) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", r.id);
+            m.put("eventId", r.eventId);
+            m.put("eventName", r.eventName);
+            m.put("tickets", r.tickets);
+            m.put("createdAt", r.createdAt);
+            m.put("status", r.status);
+            if (admin) {
+                m.put("studentName", r.studentName);
+                m.put("email", r.email);
+                m.put("phone", r.phone);
+            }
+            notices.add(m);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("events", events);
+        body.put("registrations", notices);
+        body.put("more", more);
+        return gson.toJson(body);
+    }
+
+    /** Current counts of every event, sent to a new subscriber before any delta. */
+    private static byte[] snapshot() {
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (Event e : Database.getAllEvents()) {
+            Map<String, Object> m = counts(Database.getSeatAvailability(e.id));
+            m.put("title", e.title);
+            events.add(m);
+        }
+        return frame("snapshot", -1, gson.toJson(Map.of("events", events)));
+    }
+
+    private static Map<String, Object> counts(SeatAllocator.Availability a) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("eventId", a.eventId);
+        m.put("sold", a.sold);
+        m.put("capacity", a.capacity);
+        m.put("remaining", a.remaining);
+        m.put("waitlisted", a.waitlisted);
+        return m;
+    }
+
+    private static byte[] frame(String event, long id, String data) {
+        StringBuilder sb = new StringBuilder(data.length() + 48);
+        if (id >= 0) sb.append("id: ").append(id).append('\n');
+        sb.append("event: ").append(event).append('\n');
+        sb.append("data: ").append(data).append("\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.subscribers = subscribers.size();
+        s.frames = frames.sum();
+        s.replaced = replaced.sum();
+        s.rejected = rejected.sum();
+        return s;
+    }
+
+    public static class Stats {
+        public int subscribers;
+        public long frames;
+        public long replaced;
+        public long rejected;
+    }
+
+    /** One open stream. Writes never block: whatever the connection cannot take yet waits in {@code next}. */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        final AsyncContext ctx;
+        final ServletOutputStream out;
+        final boolean admin;
+        private byte[] next;
+        private boolean unflushed;
+        private boolean closed;
+
+        Subscriber(AsyncContext ctx, ServletOutputStream out, boolean admin) {
+            this.ctx = ctx;
+            this.out = out;
+            this.admin = admin;
+        }
+
+        synchronized void send(byte[] frame) {
+            if (closed) return;
+            if (next != null) replaced.increment();
+            next = frame;
+            drain();
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            drain();
+        }
+
+        // write the waiting frame, then flush; stop wherever the connection is not ready and resume in onWritePossible
+        private void drain() {
+            try {
+                while (!closed && out.isReady()) {
+                    if (next != null) {
+                        byte[] f = next;
+                        next = null;
+                        out.write(f);
+                        unflushed = true;
+                    } else if (unflushed) {
+                        unflushed = false;
+                        out.flush();
+                    } else {
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            subscribers.remove(this);
+            try {
+                ctx.complete();
+            } catch (IllegalStateException ignored) {
+                // already completed by the container
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
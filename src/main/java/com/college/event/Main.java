@@ -10,57 +10,134 @@ import java.util.Map;
 
 public class Main {
     private static final Gson gson = new Gson();
+    private static final IdempotencyCache idempotency = new IdempotencyCache(
+            Config.getInt("idempotency.maxEntries", 100000),
+            Config.getLong("idempotency.ttlMs", 3600000),
+            Config.getLong("idempotency.waitMs", 10000));
+    // seconds a client is asked to wait before retrying a registration turned away with 503
+    private static final int RETRY_AFTER_SECONDS = Config.getInt("register.retryAfterSeconds", 1);
 
     public static void main(String[] args) {
-        // Initialize DB
-        Database.initDatabase();
+        // Database class init (connections, pending schema migrations, journal replay, seat counts) runs
+        // alongside loading and starting the server; integrity checks then continue in the background
+        java.util.concurrent.CompletableFuture<Void> database = java.util.concurrent.CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            Database.initDatabase();
+            Startup.phase("database", start);
+        }, r -> new Thread(r, "startup-database").start());
 
-        // Configure Spark
-        port(3000);
+        // Configure Spark; the thread pool must be chosen before the server starts
+        ServerThreads.install();
+        port(Config.getInt("server.port", 3000));
         staticFiles.location("/static"); // resources/static
 
+        // The server starts in the background while the database and statistics load;
+        // /api requests that arrive before they are ready wait here instead of failing
+        before("/api/*", (req, res) -> Startup.awaitReady());
+        afterAfter((req, res) -> Startup.requestServed());
+
+        // Per-route latency: stamp the start, then record under the route pattern once the response is done
+        before((req, res) -> req.attribute("metrics.start", System.nanoTime()));
+        afterAfter((req, res) -> {
+            Long start = req.attribute("metrics.start");
+            if (start != null) Metrics.recordRequest(req.requestMethod(), req.pathInfo(), res.status(), System.nanoTime() - start);
+        });
+
+        // Per-client rate limits (429) and a cap on requests working against the database (503)
+        AdmissionControl admission = new AdmissionControl();
+        admission.install();
+        Metrics.useAdmission(admission);
+        AdminAuth auth = new AdminAuth();
+        Metrics.useAuth(auth);
+        init();
+
+        long t0 = System.nanoTime();
+        database.join();
+        Startup.phase("database.wait", t0);
+        t0 = System.nanoTime();
+        RegistrationStats stats = RegistrationStats.load(Database.getRegistrationBus());
+        Startup.phase("statistics", t0);
+        LiveUpdates live = new LiveUpdates(Database.getRegistrationBus(),
+                Config.getLong("sse.tickMs", 250),
+                Config.getLong("sse.heartbeatMs", 15000),
+                Config.getInt("sse.maxSubscribers", 10000),
+                Config.getInt("sse.maxNotices", 50));
+        Metrics.useLiveUpdates(live);
+        t0 = System.nanoTime();
+
+        get("/api/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return Metrics.render();
+        });
+
         // Simple health
         get("/api/health", (req, res) -> {
             res.type("application/json");
             Map<String, Object> m = new HashMap<>();
-            m.put("status", "ok");
+            RegistrationJournal.Stats journal = Database.getJournalStats();
+            // committed registrations are not reaching the journal; they are kept in memory and retried
+            m.put("status", journal != null && journal.failing ? "degraded" : "ok");
+            if (journal != null) m.put("journal", journal);
+            m.put("pool", Database.getPoolStats());
+            RegistrationWriter.Stats writer = Database.getWriterStats();
+            if (writer != null) m.put("writer", writer);
+            m.put("eventCache", Database.getEventCacheStats());
+            m.put("eventSearch", Database.getEventSearchStats());
+            EmailLookupCache.Stats emailLookups = Database.getEmailLookupStats();
+            if (emailLookups != null) m.put("emailLookups", emailLookups);
+            m.put("threads", ServerThreads.stats());
+            WriteBehindBuffer.Stats writeBehind = Database.getWriteBehindStats();
+            if (writeBehind != null) m.put("writeBehind", writeBehind);
+            m.put("stream", live.stats());
+            m.put("admission", admission.stats());
+            m.put("waitlist", Database.getWaitlistStats());
+            m.put("auth", auth.stats());
+            Database.SchemaStats schema = Database.getSchemaStats();
+            if (schema != null) m.put("schema", schema);
+            m.put("startup", Startup.stats());
             return gson.toJson(m);
         });
 
-        // POST registration
+        // Live seat counts and new-registration notices as Server-Sent Events; admins also get names and contacts
+        get("/api/stream", (req, res) -> {
+            boolean admin = auth.user(req) != null;
+            if (!live.subscribe(req.raw(), res.raw(), admin)) {
+                res.status(503);
+                res.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                res.type("application/json");
+                return gson.toJson(Map.of("success", false, "message", "Too many live connections; please try again shortly"));
+            }
+            return "";
+        });
+
+        // POST registration; an Idempotency-Key header makes retries return the first response instead of registering twice
         post("/api/register", (req, res) -> {
             res.type("application/json");
-            try {
-                Registration payload = gson.fromJson(req.body(), Registration.class);
-                if (payload == null || payload.studentName == null || payload.studentName.trim().isEmpty()
-                        || (payload.eventName == null && payload.id == null)) {
-                    res.status(400);
-                    return gson.toJson(Map.of("success", false, "message", "studentName and event selection are required"));
-                }
-
-                // If event id provided, fetch event
-                Event ev = null;
-                if (payload.id != null) ev = Database.getEventById(payload.id);
-                String eventName = payload.eventName;
-                if (ev != null) eventName = ev.title;
-
-                boolean ok = Database.insertRegistration(payload.studentName.trim(), eventName, payload.tickets <= 0 ? 1 : payload.tickets,
-                        payload.email, payload.phone);
-                if (ok) {
-                    return gson.toJson(Map.of("success", true, "message", "Registration saved"));
-                } else {
-                    res.status(500);
-                    return gson.toJson(Map.of("success", false, "message", "Failed to save registration"));
-                }
-            } catch (Exception ex) {
-                res.status(500);
-                return gson.toJson(Map.of("success", false, "message", ex.getMessage()));
+            String key = req.headers("Idempotency-Key");
+            IdempotencyCache.Reply reply;
+            if (key == null) {
+                reply = register(req.body(), null);
+            } else if (key.trim().isEmpty() || key.length() > 255) {
+                reply = new IdempotencyCache.Reply(400, gson.toJson(Map.of("success", false, "message", "Idempotency-Key must be 1-255 characters")));
+            } else {
+                String body = req.body();
+                String fingerprint = Integer.toHexString(body.hashCode()) + ":" + body.length();
+                reply = idempotency.execute(key, fingerprint, () -> register(body, key));
+                if (reply.replayed) res.header("Idempotent-Replayed", "true");
             }
+            if (reply.status == 503) res.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            res.status(reply.status);
+            return reply.body;
         });
 
-        // GET recent registrations
+        // GET recent registrations; with ?pageSize= or ?after= returns {items, nextCursor} pages.
+        // Without an admin session only names, events and dates are shown: no ids or contact details.
         get("/api/registrations", (req, res) -> {
             res.type("application/json");
+            boolean admin = auth.user(req) != null;
+            if (req.queryParams("pageSize") != null || req.queryParams("after") != null) {
+                return registrationsPage(req, res, admin);
+            }
             int limit = 50;
             try {
                 String l = req.queryParams("limit");
@@ -68,46 +145,125 @@ public class Main {
             } catch (NumberFormatException ignored) {
             }
             List<Registration> list = Database.getRecentRegistrations(limit);
-            return gson.toJson(list);
+            return gson.toJson(admin ? list : publicView(list));
         });
 
-        // Events endpoints
-        get("/api/events", (req, res) -> {
+        // Student dashboard: registrations for one email (case-insensitive). Anyone can type any
+        // email, so without an admin session it gets the same public view as the list above.
+        get("/api/registrations/lookup", (req, res) -> {
             res.type("application/json");
-            return gson.toJson(Database.getAllEvents());
+            String email = req.queryParams("email");
+            if (email == null || email.trim().isEmpty()) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "email is required"));
+            }
+            List<Registration> list = Database.getRegistrationsForEmail(email);
+            return gson.toJson(auth.user(req) != null ? list : publicView(list));
+        });
+
+        // Cancel a registration: the registrant (the cancelToken from the registration reply in the body) or a signed-in admin.
+        // Freed seats go to the head of the event's waitlist in the same transaction.
+        post("/api/registrations/:id/cancel", (req, res) -> {
+            res.type("application/json");
+            int id;
+            try {
+                id = Integer.parseInt(req.params(":id"));
+            } catch (NumberFormatException ex) {
+                res.status(400);
+                return gson.toJson(Map.of("success", false, "message", "invalid id"));
+            }
+            String token = null;
+            if (auth.user(req) == null) {
+                CancelRequest payload = req.body() == null || req.body().isEmpty() ? null : gson.fromJson(req.body(), CancelRequest.class);
+                if (payload == null || payload.cancelToken == null || payload.cancelToken.isEmpty()) {
+                    res.status(400);
+                    return gson.toJson(Map.of("success", false, "message", "cancelToken is required"));
+                }
+                token = payload.cancelToken;
+            }
+            RegistrationStore.CancelResult result = Database.cancelRegistration(id, token);
+            switch (result.status) {
+                case CANCELLED:
+                    return gson.toJson(Map.of("success", true, "promoted", result.promoted));
+                case NOT_FOUND:
+                    res.status(404);
+                    return gson.toJson(Map.of("success", false, "message", "registration not found"));
+                case ALREADY_CANCELLED:
+                    res.status(409);
+                    return gson.toJson(Map.of("success", false, "message", "registration is already cancelled"));
+                default:
+                    res.status(500);
+                    return gson.toJson(Map.of("success", false, "message", "Failed to cancel registration"));
+            }
+        });
+
+        // Events endpoints (pre-rendered per event snapshot, with ETag/304 and gzip)
+        get("/api/events", (req, res) -> Database.getEventSnapshot().listJson.send(req, res));
+
+        // Search events: ?q= words matched as prefixes, optional ?type=, ?from= / ?to= on the start date, ?limit= (max 100).
+        // Registered before /api/events/:id so "search" is not taken for an id.
+        get("/api/events/search", (req, res) -> {
+            res.type("application/json");
+            int limit = 20;
+            try {
+                String l = req.queryParams("limit");
+                if (l != null) limit = Math.max(1, Math.min(100, Integer.parseInt(l)));
+            } catch (NumberFormatException ignored) {
+            }
+            return gson.toJson(Database.searchEvents(req.queryParams("q"), req.queryParams("type"),
+                    req.queryParams("from"), req.queryParams("to"), limit));
         });
 
         get("/api/events/:id", (req, res) -> {
             res.type("application/json");
             try {
                 int id = Integer.parseInt(req.params(":id"));
-                Event e = Database.getEventById(id);
+                RenderedJson e = Database.getEventSnapshot().jsonById.get(id);
                 if (e == null) {
                     res.status(404);
                     return gson.toJson(Map.of("error", "not found"));
                 }
-                return gson.toJson(e);
+                return e.send(req, res);
+            } catch (NumberFormatException ex) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "invalid id"));
+            }
+        });
+
+        get("/api/events/:id/seats", (req, res) -> {
+            res.type("application/json");
+            try {
+                int id = Integer.parseInt(req.params(":id"));
+                if (Database.getEventById(id) == null) {
+                    res.status(404);
+                    return gson.toJson(Map.of("error", "not found"));
+                }
+                return gson.toJson(Database.getSeatAvailability(id));
             } catch (NumberFormatException ex) {
                 res.status(400);
                 return gson.toJson(Map.of("error", "invalid id"));
             }
         });
 
-        // Admin login (simple)
+        // Admin login: the password is checked on the hashing executor, then the session lives in memory only
         post("/api/admin/login", (req, res) -> {
             res.type("application/json");
             try {
-                Map payload = gson.fromJson(req.body(), Map.class);
-                String user = (String) payload.get("username");
-                String pass = (String) payload.get("password");
+                LoginRequest payload = gson.fromJson(req.body(), LoginRequest.class);
+                String user = payload == null ? null : payload.username;
+                String pass = payload == null ? null : payload.password;
                 if (user == null || pass == null) {
                     res.status(400);
                     return gson.toJson(Map.of("success", false, "message", "username/password required"));
                 }
-                boolean ok = Database.validateAdmin(user, pass);
-                if (ok) {
-                    req.session(true).attribute("admin", user);
+                AdminAuth.Result result = auth.login(user, pass);
+                if (result.status == AdminAuth.Status.OK) {
+                    auth.setCookie(res, result.token);
                     return gson.toJson(Map.of("success", true));
+                } else if (result.status == AdminAuth.Status.BUSY) {
+                    res.status(503);
+                    res.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                    return gson.toJson(Map.of("success", false, "message", "Too many sign-ins in progress; please try again shortly"));
                 } else {
                     res.status(401);
                     return gson.toJson(Map.of("success", false, "message", "invalid credentials"));
@@ -119,13 +275,39 @@ public class Main {
         });
 
         get("/api/admin/logout", (req, res) -> {
-            req.session().removeAttribute("admin");
+            auth.logout(req, res);
+            return gson.toJson(Map.of("success", true));
+        });
+
+        // Admin: change own password; other sessions of the same admin are signed out
+        post("/api/admin/password", (req, res) -> {
+            res.type("application/json");
+            String admin = auth.user(req);
+            if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
+            PasswordRequest payload = gson.fromJson(req.body(), PasswordRequest.class);
+            String current = payload == null ? null : payload.currentPassword;
+            String next = payload == null ? null : payload.newPassword;
+            if (current == null || next == null || next.length() < 8) {
+                res.status(400);
+                return gson.toJson(Map.of("success", false, "message", "currentPassword and a newPassword of at least 8 characters are required"));
+            }
+            AdminAuth.Result result = auth.changePassword(admin, current, next);
+            if (result.status == AdminAuth.Status.BUSY) {
+                res.status(503);
+                res.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                return gson.toJson(Map.of("success", false, "message", "Too many sign-ins in progress; please try again shortly"));
+            }
+            if (result.status == AdminAuth.Status.INVALID) {
+                res.status(401);
+                return gson.toJson(Map.of("success", false, "message", "current password is wrong"));
+            }
+            auth.setCookie(res, result.token);
             return gson.toJson(Map.of("success", true));
         });
 
         // Admin: add event
         post("/api/admin/events", (req, res) -> {
-            String admin = req.session().attribute("admin");
+            String admin = auth.user(req);
             if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
             Event ev = gson.fromJson(req.body(), Event.class);
             int id = Database.createEvent(ev);
@@ -135,15 +317,218 @@ public class Main {
 
         // Admin: view registrations
         get("/api/admin/registrations", (req, res) -> {
-            String admin = req.session().attribute("admin");
+            String admin = auth.user(req);
             if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
+            if (req.queryParams("pageSize") != null || req.queryParams("after") != null) {
+                return registrationsPage(req, res, true);
+            }
             return gson.toJson(Database.getAllRegistrations());
         });
 
+        // Admin: per-event aggregates kept in memory; ?eventId= for one event, ?hourly=true for every event's hourly buckets
+        get("/api/admin/stats", (req, res) -> {
+            res.type("application/json");
+            String admin = auth.user(req);
+            if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
+            String eventId = req.queryParams("eventId");
+            if (eventId == null) return gson.toJson(stats.summary("true".equalsIgnoreCase(req.queryParams("hourly"))));
+            RegistrationStats.EventSummary one;
+            try {
+                one = stats.event(Integer.parseInt(eventId));
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Map.of("success", false, "message", "eventId must be a number"));
+            }
+            if (one == null) { res.status(404); return gson.toJson(Map.of("success", false, "message", "no registrations for event " + eventId)); }
+            return gson.toJson(one);
+        });
+
+        // Admin: stream all registrations as NDJSON (default) or CSV, ?format=csv, ?gzip=true
+        get("/api/admin/registrations/export", (req, res) -> {
+            String admin = auth.user(req);
+            if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
+            RegistrationExport.Format format = RegistrationExport.Format.parse(req.queryParams("format"));
+            String accept = req.headers("Accept-Encoding");
+            boolean gzip = "true".equalsIgnoreCase(req.queryParams("gzip")) || (accept != null && accept.contains("gzip"));
+            javax.servlet.http.HttpServletResponse raw = res.raw();
+            raw.setContentType(format.contentType + ";charset=utf-8");
+            raw.setHeader("Content-Disposition", "attachment; filename=\"registrations." + format.extension + (gzip ? ".gz" : "") + "\"");
+            if (gzip) raw.setHeader("Content-Encoding", "gzip");
+            // no Content-Length, so Jetty sends the body chunked as it is produced
+            try {
+                RegistrationExport.write(format, gzip, raw.getOutputStream());
+            } catch (java.sql.SQLException ex) {
+                // headers are already sent; all we can do is cut the stream short and log
+                ex.printStackTrace();
+            }
+            raw.flushBuffer();
+            return "";
+        });
+
+        // Admin: bulk import registrations from NDJSON (default) or CSV (?format=csv or a text/csv body), optionally gzipped;
+        // progress and per-row errors are streamed back as NDJSON
+        post("/api/admin/registrations/import", (req, res) -> {
+            String admin = auth.user(req);
+            if (admin == null) { res.status(403); return gson.toJson(Map.of("success", false, "message", "forbidden")); }
+            // read the upload as it arrives; Spark's own request wrapper would buffer all of it first. Taking the
+            // stream before any queryParams() call also stops Jetty from consuming a form-encoded body as parameters.
+            java.io.InputStream in = ((javax.servlet.ServletRequestWrapper) req.raw()).getRequest().getInputStream();
+            String contentType = req.contentType();
+            RegistrationExport.Format format = req.queryParams("format") != null
+                    ? RegistrationExport.Format.parse(req.queryParams("format"))
+                    : contentType != null && contentType.contains("csv") ? RegistrationExport.Format.CSV : RegistrationExport.Format.NDJSON;
+            if ("gzip".equalsIgnoreCase(req.headers("Content-Encoding"))) in = new java.util.zip.GZIPInputStream(in, 64 * 1024);
+            RegistrationImport importer = new RegistrationImport(format,
+                    Config.getInt("import.batchSize", 5000), Config.getInt("import.maxErrors", 1000));
+            RegistrationImport.Rows rows;
+            try {
+                rows = importer.open(in);
+            } catch (IllegalArgumentException ex) {
+                res.status(400);
+                res.type("application/json");
+                return gson.toJson(Map.of("success", false, "message", ex.getMessage()));
+            }
+            javax.servlet.http.HttpServletResponse raw = res.raw();
+            raw.setContentType("application/x-ndjson;charset=utf-8");
+            importer.run(rows, raw.getOutputStream());
+            raw.flushBuffer();
+            return "";
+        });
+
         // Root serves index.html from static
         get("/", (req, res) -> {
             res.redirect("/index.html");
             return null;
         });
+
+        Metrics.useRoutes(new RouteTable(routes()));
+        Startup.phase("routes", t0);
+        t0 = System.nanoTime();
+        awaitInitialization();
+        // only what is left of the server's start once everything above is done
+        Startup.phase("server", t0);
+        Startup.ready();
+    }
+
+    static IdempotencyCache.Reply register(String body, String idempotencyKey) {
+        try {
+            RegisterRequest payload = gson.fromJson(body, RegisterRequest.class);
+            if (payload == null || payload.studentName == null || payload.studentName.trim().isEmpty()
+                    || (payload.eventName == null && payload.id == null)) {
+                return new IdempotencyCache.Reply(400, gson.toJson(Map.of("success", false, "message", "studentName and event selection are required")));
+            }
+
+            // If event id provided, fetch event
+            Event ev = null;
+            if (payload.id != null) ev = Database.getEventById(payload.id);
+            String eventName = payload.eventName;
+            if (ev != null) eventName = ev.title;
+
+            int tickets = payload.tickets <= 0 ? 1 : payload.tickets;
+            // while anyone is waiting, new registrants queue behind them instead of taking a freed seat
+            boolean waitlisted = false;
+            if (ev != null && (Database.getWaitlistSize(ev.id) > 0 || !Database.reserveSeats(ev.id, tickets))) {
+                if (!Boolean.TRUE.equals(payload.waitlist)) return soldOut(ev, idempotencyKey);
+                waitlisted = true;
+            }
+
+            Registration r = new Registration(null, payload.studentName.trim(), eventName, tickets, payload.email, payload.phone, null);
+            r.eventId = ev == null ? null : ev.id;
+            r.idempotencyKey = idempotencyKey;
+            // only the hash is stored; the token itself goes back once, in this reply
+            String cancelToken = PasswordHash.newToken();
+            r.cancelTokenHash = PasswordHash.tokenHash(cancelToken);
+            r.status = waitlisted ? Registration.WAITLISTED : Registration.CONFIRMED;
+            RegistrationStore.InsertResult result = Database.insertRegistration(r);
+            if (result.status != RegistrationStore.InsertResult.Status.INSERTED && ev != null && !waitlisted) Database.releaseSeats(ev.id, tickets);
+            // with shared storage the seats are claimed by the insert, and another node may have taken them since the check
+            if (result.status == RegistrationStore.InsertResult.Status.SOLD_OUT) {
+                if (!Boolean.TRUE.equals(payload.waitlist)) return soldOut(ev, idempotencyKey);
+                waitlisted = true;
+                r.status = Registration.WAITLISTED;
+                result = Database.insertRegistration(r);
+            }
+            switch (result.status) {
+                case INSERTED:
+                    if (waitlisted) {
+                        // with write-behind the row may not be committed yet, so it is not in the queue either
+                        int position = Database.getWaitlistPosition(ev.id, (int) result.id);
+                        if (position == 0) position = Database.getWaitlistSize(ev.id) + 1;
+                        return new IdempotencyCache.Reply(200, gson.toJson(Map.of("success", true, "waitlisted", true, "id", result.id, "position", position,
+                                "cancelToken", cancelToken, "message", "You are on the waitlist for " + ev.title + " (position " + position + ")")));
+                    }
+                    return new IdempotencyCache.Reply(200, gson.toJson(Map.of("success", true, "message", "Registration saved", "id", result.id, "cancelToken", cancelToken)));
+                case DUPLICATE_KEY: // the first request with this key was saved before the in-memory table forgot it
+                    return new IdempotencyCache.Reply(200, gson.toJson(Map.of("success", true, "message", "Registration saved", "id", result.id)));
+                case DUPLICATE_EMAIL:
+                    return new IdempotencyCache.Reply(409, gson.toJson(Map.of("success", false, "duplicate", true,
+                            "message", payload.email.trim() + " is already registered for " + eventName)));
+                case BUSY:
+                    return new IdempotencyCache.Reply(503, gson.toJson(Map.of("success", false, "busy", true,
+                            "message", "Too many registrations are waiting to be saved; please try again shortly")));
+                default:
+                    return new IdempotencyCache.Reply(500, gson.toJson(Map.of("success", false, "message", "Failed to save registration")));
+            }
+        } catch (Exception ex) {
+            return new IdempotencyCache.Reply(500, gson.toJson(Map.of("success", false, "message", String.valueOf(ex.getMessage()))));
+        }
+    }
+
+    // a retry whose first attempt took the last seats gets that registration back, not "sold out"
+    private static IdempotencyCache.Reply soldOut(Event ev, String idempotencyKey) {
+        long existing = idempotencyKey == null ? -1 : Database.findRegistrationIdByIdempotencyKey(idempotencyKey);
+        if (existing > 0) return new IdempotencyCache.Reply(200, gson.toJson(Map.of("success", true, "message", "Registration saved", "id", existing)));
+        return new IdempotencyCache.Reply(409, gson.toJson(Map.of("success", false, "soldOut", true, "message", "Sorry, " + ev.title + " is sold out",
+                "seats", Database.getSeatAvailability(ev.id))));
+    }
+
+    // register body: a registration plus whether to join the waitlist when the event is full
+    private static final class RegisterRequest extends Registration {
+        Boolean waitlist;
+    }
+
+    // cancel body from a registrant: the token handed out with the registration reply
+    private static final class CancelRequest {
+        String cancelToken;
+    }
+
+    private static final class LoginRequest {
+        String username;
+        String password;
+    }
+
+    private static final class PasswordRequest {
+        String currentPassword;
+        String newPassword;
+    }
+
+    // what anonymous callers see of a registration: nothing that identifies or contacts the registrant
+    private static List<Registration> publicView(List<Registration> list) {
+        List<Registration> out = new java.util.ArrayList<>(list.size());
+        for (Registration r : list) {
+            Registration v = new Registration(null, r.studentName, r.eventName, r.tickets, null, null, r.createdAt);
+            v.eventId = r.eventId;
+            v.status = r.status;
+            out.add(v);
+        }
+        return out;
+    }
+
+    private static String registrationsPage(spark.Request req, spark.Response res, boolean admin) {
+        res.type("application/json");
+        int pageSize = 50;
+        try {
+            String p = req.queryParams("pageSize");
+            if (p != null) pageSize = Integer.parseInt(p);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            Page<Registration> page = Database.getRegistrationsPage(req.queryParams("after"), pageSize);
+            if (!admin) page.items = publicView(page.items);
+            return gson.toJson(page);
+        } catch (IllegalArgumentException ex) {
+            res.status(400);
+            return gson.toJson(Map.of("error", "invalid cursor"));
+        }
     }
 }
\ No newline at end of file
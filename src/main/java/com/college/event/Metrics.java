@@ -0,0 +1,234 @@
+package com.college.event;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide request and query metrics, rendered for {@code GET /api/metrics} in the
+ * Prometheus text format. Series are created on first use and then only recorded into, so the
+ * hot path is a map lookup plus a few uncontended adds; pool, writer and cache figures are read
+ * from their own stats when the endpoint is scraped.
+ */
+public final class Metrics {
+    private static final Map<String, Series> requests = new ConcurrentHashMap<>();
+    private static final Map<String, Series> queries = new ConcurrentHashMap<>();
+
+    private static volatile RouteTable routes;
+    private static volatile LiveUpdates live;
+    private static volatile AdmissionControl admission;
+    private static volatile AdminAuth auth;
+
+    private Metrics() {}
+
+    /** Installs the table used to label requests by route; call once every route is registered. */
+    public static void useRoutes(RouteTable table) {
+        routes = table;
+    }
+
+    /** Includes the Server-Sent Events subscriber figures in the output. */
+    public static void useLiveUpdates(LiveUpdates updates) {
+        live = updates;
+    }
+
+    /** Includes rate limiting and database admission figures in the output. */
+    public static void useAdmission(AdmissionControl control) {
+        admission = control;
+    }
+
+    /** Includes admin sign-in and session figures in the output. */
+    public static void useAuth(AdminAuth adminAuth) {
+        auth = adminAuth;
+    }
+
+    /** Records one HTTP request, labelled with the route pattern that matched {@code path}. */
+    public static void recordRequest(String method, String path, int status, long nanos) {
+        RouteTable table = routes;
+        String route = table == null ? RouteTable.UNMATCHED : table.resolve(method, path);
+        String key = method + ' ' + route + ' ' + status;
+        Series s = requests.get(key);
+        if (s == null) {
+            s = requests.computeIfAbsent(key, k -> new Series(
+                    "method=\"" + method + "\",route=\"" + escape(route) + "\",status=\"" + status + "\""));
+        }
+        s.histogram.record(nanos);
+    }
+
+    /** Records the time a {@link Database} call spent, measured from {@code startNanos}. */
+    public static void recordQuery(String query, long startNanos) {
+        query(query).histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /** Counts a {@link Database} call that failed with an exception. */
+    public static void queryFailed(String query) {
+        query(query).errors.increment();
+    }
+
+    private static Series query(String query) {
+        Series s = queries.get(query);
+        if (s == null) s = queries.computeIfAbsent(query, k -> new Series("query=\"" + escape(query) + "\""));
+        return s;
+    }
+
+    public static String render() {
+        StringBuilder sb = new StringBuilder(8192);
+        sb.append("# HELP http_request_duration_seconds Time to handle an HTTP request, by route and status.\n");
+        sb.append("# TYPE http_request_duration_seconds histogram\n");
+        for (Series s : sorted(requests).values()) histogram(sb, "http_request_duration_seconds", s);
+
+        sb.append("# HELP db_query_duration_seconds Time spent in a Database call, including waiting for a connection.\n");
+        sb.append("# TYPE db_query_duration_seconds histogram\n");
+        Map<String, Series> q = sorted(queries);
+        for (Series s : q.values()) histogram(sb, "db_query_duration_seconds", s);
+        sb.append("# HELP db_query_errors_total Database calls that failed with an exception.\n");
+        sb.append("# TYPE db_query_errors_total counter\n");
+        for (Series s : q.values()) sample(sb, "db_query_errors_total", s.labels, s.errors.sum());
+
+        ConnectionPool.Stats pool = Database.getPoolStats();
+        gauge(sb, "db_pool_readers", "Read-only connections in the pool.", pool.readers);
+        gauge(sb, "db_pool_active_connections", "Connections currently checked out.", pool.active);
+        gauge(sb, "db_pool_waiters", "Threads waiting for a connection.", pool.waiters);
+        counter(sb, "db_pool_checkouts_total", "Connection checkouts.", pool.checkouts);
+        counter(sb, "db_pool_timeouts_total", "Checkouts that timed out.", pool.timeouts);
+        gauge(sb, "db_pool_checkout_wait_max_seconds", "Longest wait for a connection.", pool.maxCheckoutMicros / 1e6);
+
+        RegistrationWriter.Stats writer = Database.getWriterStats();
+        if (writer != null) {
+            gauge(sb, "registration_writer_queued", "Registrations waiting for the writer thread.", writer.queued);
+            counter(sb, "registration_writer_batches_total", "Group-commit transactions.", writer.batches);
+            counter(sb, "registration_writer_rows_total", "Registrations committed by the writer.", writer.rows);
+            counter(sb, "registration_writer_failures_total", "Registrations the writer failed to insert.", writer.failures);
+        }
+
+        RegistrationJournal.Stats journal = Database.getJournalStats();
+        if (journal != null) {
+            gauge(sb, "journal_pending_bytes", "Journal bytes appended but not yet written to a segment.", journal.pendingBytes);
+            counter(sb, "journal_write_failures_total", "Journal writes or fsyncs that failed and were retried.", journal.writeFailures);
+        }
+
+        WriteBehindBuffer.Stats wb = Database.getWriteBehindStats();
+        if (wb != null) {
+            gauge(sb, "writebehind_pending", "Registrations logged but not yet flushed to the database.", wb.pending);
+            gauge(sb, "writebehind_max_pending", "Pending registrations allowed before new ones get 503.", wb.maxPending);
+            counter(sb, "writebehind_appended_total", "Registrations acknowledged from the write-behind log.", wb.appended);
+            counter(sb, "writebehind_flushed_total", "Logged registrations inserted into the database.", wb.flushed);
+            counter(sb, "writebehind_batches_total", "Flush transactions.", wb.batches);
+            counter(sb, "writebehind_rejected_total", "Registrations turned away because the buffer was full.", wb.rejected);
+            counter(sb, "writebehind_skipped_total", "Logged registrations the database refused at flush time.", wb.skipped);
+            counter(sb, "writebehind_flush_failures_total", "Flush transactions that failed and were retried.", wb.failures);
+        }
+
+        EventCache.Stats events = Database.getEventCacheStats();
+        counter(sb, "event_cache_hits_total", "Event reads served from the cached snapshot.", events.hits);
+        counter(sb, "event_cache_misses_total", "Event reads that found no snapshot.", events.misses);
+        counter(sb, "event_cache_loads_total", "Event snapshots loaded from the database.", events.loads);
+        gauge(sb, "event_cache_events", "Events in the current snapshot.", events.size);
+
+        Waitlist.Stats waitlist = Database.getWaitlistStats();
+        gauge(sb, "waitlist_entries", "Registrations waiting for a seat, across all events.", waitlist.waiting);
+        counter(sb, "waitlist_promoted_total", "Waitlisted registrations promoted to confirmed.", waitlist.promoted);
+        counter(sb, "registrations_cancelled_total", "Registrations cancelled.", waitlist.cancelled);
+
+        ServerThreads.Stats threads = ServerThreads.stats();
+        gauge(sb, "http_threads", "Threads currently serving Jetty tasks (virtual or pooled).", threads.threads);
+        gauge(sb, "http_threads_idle", "Idle pooled threads.", threads.idle);
+        gauge(sb, "http_queued_tasks", "Jetty tasks waiting for a pooled thread.", threads.queued);
+
+        LiveUpdates updates = live;
+        if (updates != null) {
+            LiveUpdates.Stats sse = updates.stats();
+            gauge(sb, "sse_subscribers", "Open /api/stream connections.", sse.subscribers);
+            counter(sb, "sse_frames_total", "Update frames encoded and fanned out to every subscriber.", sse.frames);
+            counter(sb, "sse_frames_replaced_total", "Frames a slow subscriber skipped because a newer one replaced them.", sse.replaced);
+            counter(sb, "sse_rejected_total", "Stream requests turned away at the subscriber limit.", sse.rejected);
+        }
+
+        AdmissionControl control = admission;
+        if (control != null) {
+            AdmissionControl.Stats a = control.stats();
+            gauge(sb, "ratelimit_clients", "Client buckets currently tracked.", a.clients);
+            counter(sb, "ratelimit_evicted_total", "Idle client buckets dropped.", a.evicted);
+            counter(sb, "ratelimit_limited_total", "Requests answered with 429.", a.limited);
+            gauge(sb, "admission_in_flight", "Requests holding a database admission permit.", a.inFlight);
+            gauge(sb, "admission_max_concurrent", "Database admission permits.", a.maxConcurrent);
+            counter(sb, "admission_overloaded_total", "Requests answered with 503 for lack of a permit.", a.overloaded);
+        }
+
+        AdminAuth signIn = auth;
+        if (signIn != null) {
+            AdminAuth.Stats a = signIn.stats();
+            gauge(sb, "admin_sessions", "Admin sessions currently signed in.", a.sessions);
+            counter(sb, "admin_logins_total", "Successful admin sign-ins.", a.logins);
+            counter(sb, "admin_login_failures_total", "Admin sign-ins or password changes with wrong credentials.", a.failures);
+            counter(sb, "admin_login_busy_total", "Sign-ins turned away because the hashing executor was saturated.", a.busy);
+            counter(sb, "admin_sessions_revoked_total", "Admin sessions ended by logout or password change.", a.revoked);
+            gauge(sb, "admin_hash_queued", "Password hashes waiting for a hashing thread.", a.hashQueued);
+        }
+
+        EmailLookupCache.Stats lookups = Database.getEmailLookupStats();
+        if (lookups != null) {
+            counter(sb, "email_lookup_cache_hits_total", "Per-email lookups served from the LRU.", lookups.hits);
+            counter(sb, "email_lookup_cache_misses_total", "Per-email lookups that went to the database.", lookups.misses);
+            gauge(sb, "email_lookup_cache_entries", "Entries in the per-email LRU.", lookups.size);
+        }
+
+        Database.SchemaStats schema = Database.getSchemaStats();
+        if (schema != null) gauge(sb, "schema_version", "Schema version recorded in the database.", schema.version);
+        Startup.Stats startup = Startup.stats();
+        if (startup.readyMs >= 0) gauge(sb, "startup_ready_seconds", "Time from JVM start until the server accepted /api requests.", startup.readyMs / 1e3);
+        if (startup.firstRequestMs >= 0) gauge(sb, "startup_first_request_seconds", "Time from JVM start until the first request was answered.", startup.firstRequestMs / 1e3);
+        return sb.toString();
+    }
+
+    private static Map<String, Series> sorted(Map<String, Series> m) {
+        return new TreeMap<>(m);
+    }
+
+    private static void histogram(StringBuilder sb, String name, Series s) {
+        long[] counts = s.histogram.counts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String le = i < LatencyHistogram.BOUNDS.length ? LatencyHistogram.BOUNDS[i] : "+Inf";
+            sb.append(name).append("_bucket{").append(s.labels).append(",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+        }
+        sb.append(name).append("_sum{").append(s.labels).append("} ").append(s.histogram.sumSeconds()).append('\n');
+        sb.append(name).append("_count{").append(s.labels).append("} ").append(cumulative).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sample(sb, name, null, value);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, double value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sample(sb, name, null, value);
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (labels != null) sb.append('{').append(labels).append('}');
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) sb.append((long) value);
+        else sb.append(value);
+        sb.append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Series {
+        final String labels;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+
+        Series(String labels) {
+            this.labels = labels;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.college.event;
+
+import java.util.List;
+
+/** One page of a keyset-paginated listing. {@code nextCursor} is null on the last page. */
+public class Page<T> {
+    public List<T> items;
+    public String nextCursor;
+
+    public Page() {}
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,6 +1,11 @@
 package com.college.event;
 
 public class Registration {
+    // values of status; a row without one (written before the column existed) is confirmed
+    public static final String CONFIRMED = "confirmed";
+    public static final String WAITLISTED = "waitlisted";
+    public static final String CANCELLED = "cancelled";
+
     public Integer id;
     public String studentName;
     public String eventName;
@@ -8,6 +13,13 @@ public class Registration {
     public String email;
     public String phone;
     public String createdAt;
+    public Integer eventId;
+    public String idempotencyKey; // client-supplied Idempotency-Key the row was created under, if any
+    public String status;
+    // SHA-256 of the cancel token handed to the registrant; never serialized, so lists cannot leak it
+    public transient String cancelTokenHash;
+    // set only on rows published for a status change (cancel, promotion); null for new rows
+    public transient String previousStatus;
 
     public Registration() {}
 
@@ -20,4 +32,8 @@ public class Registration {
         this.phone = phone;
         this.createdAt = createdAt;
     }
+
+    public boolean isConfirmed() {
+        return status == null || CONFIRMED.equals(status);
+    }
 }
@@ -0,0 +1,34 @@
+package com.college.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe for committed registrations. {@link Database} publishes each
+ * committed batch on the thread that committed it (the writer thread, the write-behind flusher or
+ * an importing request), so listeners must be quick and must not block. A listener that throws is
+ * reported and the others still run.
+ */
+public final class RegistrationBus {
+    private final List<Consumer<List<Registration>>> listeners = new CopyOnWriteArrayList<>();
+
+    public void subscribe(Consumer<List<Registration>> listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(Consumer<List<Registration>> listener) {
+        listeners.remove(listener);
+    }
+
+    /** Hands a committed batch (ids and created_at filled in) to every listener. */
+    public void publish(List<Registration> batch) {
+        for (Consumer<List<Registration>> l : listeners) {
+            try {
+                l.accept(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.college.event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary record format shared by the {@link RegistrationJournal} and the {@link WriteBehindLog}.
+ * <p>
+ * Record layout: {@code int length, int crc32(payload), payload}, where the payload is
+ * {@code long id, int tickets} followed by student name, event name, email, phone and created_at,
+ * each as {@code int byteLength (-1 for null)} plus UTF-8 bytes, then {@code int eventId (-1 for
+ * null)}, the idempotency key, the status, the cancel token hash and the previous status as
+ * further strings. Records written before those fields existed simply end early. A record with a
+ * previous status is a status change of an existing row rather than a new registration.
+ */
+final class RegistrationCodec {
+    static final int HEADER_BYTES = 8;
+
+    private RegistrationCodec() {}
+
+    /**
+     * Writes one framed record at the buffer's position, which must be backed by an array.
+     *
+     * @throws BufferOverflowException if the record does not fit
+     */
+    static void write(Registration r, ByteBuffer buf, CRC32 crc) {
+        int start = buf.position();
+        buf.position(start + HEADER_BYTES);
+        buf.putLong(r.id == null ? -1 : r.id);
+        buf.putInt(r.tickets);
+        putString(buf, r.studentName);
+        putString(buf, r.eventName);
+        putString(buf, r.email);
+        putString(buf, r.phone);
+        putString(buf, r.createdAt);
+        buf.putInt(r.eventId == null ? -1 : r.eventId);
+        putString(buf, r.idempotencyKey);
+        putString(buf, r.status);
+        putString(buf, r.cancelTokenHash);
+        putString(buf, r.previousStatus);
+        int payload = buf.position() - start - HEADER_BYTES;
+        crc.reset();
+        crc.update(buf.array(), buf.arrayOffset() + start + HEADER_BYTES, payload);
+        buf.putInt(start, payload);
+        buf.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /** Decodes the payload of one record (the bytes after its header). */
+    static Registration read(ByteBuffer b) {
+        long id = b.getLong();
+        int tickets = b.getInt();
+        String student = getString(b);
+        String event = getString(b);
+        String email = getString(b);
+        String phone = getString(b);
+        String createdAt = getString(b);
+        Registration r = new Registration(id < 0 ? null : (int) id, student, event, tickets, email, phone, createdAt);
+        if (b.hasRemaining()) {
+            int eventId = b.getInt();
+            r.eventId = eventId < 0 ? null : eventId;
+            r.idempotencyKey = getString(b);
+        }
+        if (b.hasRemaining()) r.status = getString(b);
+        if (b.hasRemaining()) r.cancelTokenHash = getString(b);
+        if (b.hasRemaining()) r.previousStatus = getString(b);
+        return r;
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(b.length);
+        buf.put(b);
+    }
+
+    private static String getString(ByteBuffer b) {
+        int n = b.getInt();
+        if (n < 0) return null;
+        String s = new String(b.array(), b.arrayOffset() + b.position(), n, StandardCharsets.UTF_8);
+        b.position(b.position() + n);
+        return s;
+    }
+}
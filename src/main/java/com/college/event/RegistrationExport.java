@@ -0,0 +1,90 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every registration to an output stream as NDJSON or CSV. Rows go from the result set
+ * through a fixed-size buffer straight to the stream, so memory use does not depend on how many
+ * registrations there are.
+ */
+public final class RegistrationExport {
+    private static final Gson gson = new Gson();
+    private static final int BUFFER = 64 * 1024;
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        public final String contentType;
+        public final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public static Format parse(String s) {
+            return s != null && s.equalsIgnoreCase("csv") ? CSV : NDJSON;
+        }
+    }
+
+    private RegistrationExport() {}
+
+    /** Writes all registrations, newest first; returns the number of rows written. */
+    public static long write(Format format, boolean gzip, OutputStream target) throws IOException, SQLException {
+        OutputStream out = gzip ? new GZIPOutputStream(target, BUFFER) : target;
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+        long[] rows = {0};
+        if (format == Format.CSV) w.write("id,student_name,event_name,tickets,email,phone,created_at,event_id,status\n");
+        Database.streamRegistrations(r -> {
+            if (format == Format.CSV) {
+                w.write(String.valueOf(r.id));
+                w.write(',');
+                csv(w, r.studentName);
+                w.write(',');
+                csv(w, r.eventName);
+                w.write(',');
+                w.write(String.valueOf(r.tickets));
+                w.write(',');
+                csv(w, r.email);
+                w.write(',');
+                csv(w, r.phone);
+                w.write(',');
+                csv(w, r.createdAt);
+                w.write(',');
+                if (r.eventId != null) w.write(String.valueOf(r.eventId));
+                w.write(',');
+                csv(w, r.status);
+            } else {
+                gson.toJson(r, Registration.class, w);
+            }
+            w.write('\n');
+            rows[0]++;
+        });
+        w.flush();
+        if (gzip) ((GZIPOutputStream) out).finish();
+        out.flush();
+        return rows[0];
+    }
+
+    private static void csv(Writer w, String value) throws IOException {
+        if (value == null) return;
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
@@ -109,10 +109,12 @@ public class RegistrationGUI extends JFrame {
             return;
         }
 
-        boolean ok = Database.insertRegistration(studentName, eventName, tickets, email.isEmpty() ? null : email, phone.isEmpty() ? null : phone);
-        if (ok) {
-            JOptionPane.showMessageDialog(this, "Registration saved.\nDB: " + Database.getDbFilePath() + "\nSQL log: " + Database.getSqlLogPath(), "Success", JOptionPane.INFORMATION_MESSAGE);
+        RegistrationStore.InsertResult result = Database.insertRegistration(studentName, eventName, tickets, email.isEmpty() ? null : email, phone.isEmpty() ? null : phone);
+        if (result.status == RegistrationStore.InsertResult.Status.INSERTED) {
+            JOptionPane.showMessageDialog(this, "Registration saved.\nDB: " + Database.getDbFilePath() + "\nJournal: " + Database.getJournalPath(), "Success", JOptionPane.INFORMATION_MESSAGE);
             clearForm();
+        } else if (result.status == RegistrationStore.InsertResult.Status.SOLD_OUT) {
+            JOptionPane.showMessageDialog(this, eventName + " is sold out.", "Sold Out", JOptionPane.WARNING_MESSAGE);
         } else {
             JOptionPane.showMessageDialog(this, "Failed to save registration. Check console for details.", "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -0,0 +1,350 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bulk registration import from CSV or NDJSON. The input is parsed one row at a time as it
+ * arrives; each row is validated, its event resolved from the event cache and its seats reserved,
+ * and accepted rows are inserted {@code batchSize} at a time through
+ * {@link Database#insertRegistrationBatch}, one transaction per batch. Progress and per-row
+ * errors are written back as NDJSON lines while the import runs, ending with a summary line.
+ *
+ * <p>CSV needs a header row. Recognized columns (case and underscores ignored) are
+ * {@code student_name}, {@code event_id} and/or {@code event_name}, {@code tickets},
+ * {@code email}, {@code phone}, {@code created_at} and {@code status}; others, such as the
+ * {@code id} column of an export, are ignored. NDJSON lines use the same fields in camelCase.
+ * Imported rows take seats, so only confirmed ones are accepted; waitlisted and cancelled rows
+ * are rejected, and so are rows for an event with anyone on its waitlist.
+ */
+public final class RegistrationImport {
+    private static final Gson gson = new Gson();
+    private static final int BUFFER = 64 * 1024;
+
+    private final RegistrationExport.Format format;
+    private final int batchSize;
+    private final int maxErrors;
+    private final EventCache.Snapshot events;
+    private final Map<String, Event> eventsByTitle = new HashMap<>();
+
+    private long rows;
+    private long inserted;
+    private long rejected;
+    private long reportedErrors;
+
+    public RegistrationImport(RegistrationExport.Format format, int batchSize, int maxErrors) {
+        this.format = format;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxErrors = maxErrors;
+        this.events = Database.getEventSnapshot();
+        for (Event e : events.events) {
+            if (e.title != null) eventsByTitle.putIfAbsent(e.title.trim().toLowerCase(Locale.ROOT), e);
+        }
+    }
+
+    /**
+     * Starts reading the input and checks that it can be imported (for CSV, that the header names
+     * a student and an event column).
+     *
+     * @throws IllegalArgumentException if it cannot; nothing has been written yet, so the caller can still answer 400
+     */
+    public Rows open(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER);
+        return format == RegistrationExport.Format.CSV ? new CsvRows(reader) : new NdjsonRows(reader);
+    }
+
+    /** Runs the import, streaming progress to {@code target}. */
+    public void run(Rows source, OutputStream target) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 8192);
+        long start = System.nanoTime();
+        List<Registration> batch = new ArrayList<>(batchSize);
+        List<Long> lines = new ArrayList<>(batchSize);
+        Row row;
+        while ((row = source.next()) != null) {
+            rows++;
+            Registration r = row.registration;
+            String error = row.error != null ? row.error : validate(r);
+            // as in /api/register, nobody takes a freed seat ahead of the waitlist
+            if (error == null && r.eventId != null && Database.getWaitlistSize(r.eventId) > 0) {
+                error = "sold out: " + r.eventName + " has a waitlist";
+            } else if (error == null && r.eventId != null && !Database.reserveSeats(r.eventId, r.tickets)) {
+                error = "sold out: not enough seats left for " + r.eventName;
+            }
+            if (error != null) {
+                reject(out, row.line, error);
+                continue;
+            }
+            batch.add(r);
+            lines.add(row.line);
+            if (batch.size() >= batchSize) flush(out, batch, lines, start);
+        }
+        flush(out, batch, lines, start);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("type", "summary");
+        summary.put("rows", rows);
+        summary.put("inserted", inserted);
+        summary.put("rejected", rejected);
+        summary.put("seconds", Math.round(seconds * 1000) / 1000.0);
+        summary.put("rowsPerSecond", seconds > 0 ? Math.round(rows / seconds) : rows);
+        line(out, summary);
+        out.flush();
+    }
+
+    // whether a row the batch skipped was turned away for its email rather than for seats
+    private static boolean isRegistered(Registration r) {
+        if (r.email == null || r.eventId == null) return true;
+        for (Registration existing : Database.getRegistrationsForEmail(r.email)) {
+            if (r.eventId.equals(existing.eventId) && !Registration.CANCELLED.equals(existing.status)) return true;
+        }
+        return false;
+    }
+
+    private void flush(Writer out, List<Registration> batch, List<Long> lines, long start) throws IOException {
+        if (batch.isEmpty()) return;
+        try {
+            inserted += Database.insertRegistrationBatch(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                Registration r = batch.get(i);
+                if (r.id != null) continue;
+                if (r.eventId != null) Database.releaseSeats(r.eventId, r.tickets);
+                // with shared storage the batch claims seats itself, so a row can also lose them to another node
+                reject(out, lines.get(i), isRegistered(r) ? r.email + " is already registered for " + r.eventName
+                        : "sold out: not enough seats left for " + r.eventName);
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            for (int i = 0; i < batch.size(); i++) {
+                Registration r = batch.get(i);
+                if (r.eventId != null) Database.releaseSeats(r.eventId, r.tickets);
+                reject(out, lines.get(i), "database error: " + ex.getMessage());
+            }
+        }
+        batch.clear();
+        lines.clear();
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("type", "progress");
+        progress.put("rows", rows);
+        progress.put("inserted", inserted);
+        progress.put("rejected", rejected);
+        progress.put("seconds", Math.round((System.nanoTime() - start) / 1e6) / 1000.0);
+        line(out, progress);
+        out.flush();
+    }
+
+    /** Fills in the event from the cache and normalizes the row; returns an error message or null. */
+    private String validate(Registration r) {
+        if (r.studentName == null || r.studentName.trim().isEmpty()) return "student_name is required";
+        r.studentName = r.studentName.trim();
+        if (r.status != null) r.status = r.status.trim().isEmpty() ? null : r.status.trim().toLowerCase(Locale.ROOT);
+        if (r.status != null && !r.isConfirmed()) return "only confirmed registrations can be imported (status " + r.status + ")";
+        Event ev = null;
+        if (r.eventId != null) {
+            ev = events.byId.get(r.eventId);
+            if (ev == null) return "unknown event_id " + r.eventId;
+        } else if (r.eventName != null && !r.eventName.trim().isEmpty()) {
+            ev = eventsByTitle.get(r.eventName.trim().toLowerCase(Locale.ROOT));
+            if (ev == null) return "unknown event \"" + r.eventName.trim() + "\"";
+        } else {
+            return "event_id or event_name is required";
+        }
+        r.eventId = ev.id;
+        r.eventName = ev.title;
+        if (r.tickets <= 0) return "tickets must be a positive number";
+        if (r.email != null) {
+            r.email = r.email.trim();
+            if (r.email.isEmpty()) r.email = null;
+            else if (r.email.indexOf('@') <= 0) return "invalid email " + r.email;
+        }
+        if (r.phone != null && r.phone.trim().isEmpty()) r.phone = null;
+        if (r.createdAt != null && !r.createdAt.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}")) {
+            return "created_at must look like 2024-01-31 09:30:00";
+        }
+        return null;
+    }
+
+    private void reject(Writer out, long line, String message) throws IOException {
+        rejected++;
+        if (reportedErrors >= maxErrors) return;
+        reportedErrors++;
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", "error");
+        error.put("line", line);
+        error.put("message", message);
+        line(out, error);
+    }
+
+    private static void line(Writer out, Map<String, Object> value) throws IOException {
+        gson.toJson(value, out);
+        out.write('\n');
+    }
+
+    /** One parsed input row; {@code error} is set when the row could not be parsed at all. */
+    static final class Row {
+        final long line;
+        final Registration registration;
+        final String error;
+
+        Row(long line, Registration registration, String error) {
+            this.line = line;
+            this.registration = registration;
+            this.error = error;
+        }
+    }
+
+    /** Rows of an import source, read on demand. */
+    public abstract static class Rows {
+        /** The next row, or null at the end of the input. */
+        abstract Row next() throws IOException;
+    }
+
+    private static final class NdjsonRows extends Rows {
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                if (text == null) return null;
+                line++;
+            } while (text.trim().isEmpty());
+            try {
+                Registration r = gson.fromJson(text, Registration.class);
+                if (r == null) return new Row(line, new Registration(), "empty record");
+                // "id" in an export line is the registration's own id, never something to import
+                r.id = null;
+                r.idempotencyKey = null;
+                return new Row(line, r, null);
+            } catch (JsonParseException | IllegalStateException e) {
+                return new Row(line, new Registration(), "invalid JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    /** RFC 4180 CSV: quoted fields may contain commas, doubled quotes and line breaks. */
+    private static final class CsvRows extends Rows {
+        private final BufferedReader reader;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private long line = 1;
+        private int student = -1, eventId = -1, eventName = -1, tickets = -1, email = -1, phone = -1, createdAt = -1, status = -1;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            if (!readRecord()) throw new IllegalArgumentException("empty CSV: a header row is required");
+            for (int i = 0; i < fields.size(); i++) {
+                String name = fields.get(i).trim().replace("_", "").replace(" ", "").toLowerCase(Locale.ROOT);
+                if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1); // Excel's byte order mark
+                switch (name) {
+                    case "studentname": case "name": student = i; break;
+                    case "eventid": eventId = i; break;
+                    case "eventname": case "event": eventName = i; break;
+                    case "tickets": tickets = i; break;
+                    case "email": email = i; break;
+                    case "phone": phone = i; break;
+                    case "createdat": createdAt = i; break;
+                    case "status": status = i; break;
+                    default: break;
+                }
+            }
+            if (student < 0) throw new IllegalArgumentException("CSV header needs a student_name column");
+            if (eventId < 0 && eventName < 0) throw new IllegalArgumentException("CSV header needs an event_id or event_name column");
+        }
+
+        @Override
+        Row next() throws IOException {
+            long start;
+            do {
+                start = line;
+                if (!readRecord()) return null;
+            } while (fields.size() == 1 && fields.get(0).isEmpty());
+            Registration r = new Registration();
+            r.studentName = get(student);
+            r.eventName = get(eventName);
+            r.email = get(email);
+            r.phone = get(phone);
+            r.createdAt = get(createdAt);
+            r.status = get(status);
+            String id = get(eventId);
+            String t = get(tickets);
+            try {
+                if (id != null && !id.trim().isEmpty()) r.eventId = Integer.parseInt(id.trim());
+                if (t != null && !t.trim().isEmpty()) r.tickets = Integer.parseInt(t.trim());
+            } catch (NumberFormatException e) {
+                return new Row(start, r, "event_id and tickets must be whole numbers");
+            }
+            return new Row(start, r, null);
+        }
+
+        private String get(int column) {
+            if (column < 0 || column >= fields.size()) return null;
+            String v = fields.get(column);
+            return v.isEmpty() ? null : v;
+        }
+
+        /** Reads one record into {@link #fields}; false at end of input. */
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        int n = reader.read();
+                        if (n == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (n != -1) reader.reset();
+                        }
+                    } else {
+                        if (ch == '\n') line++;
+                        field.append(ch);
+                    }
+                } else if (ch == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    line++;
+                    break;
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+            }
+            if (!any) return false;
+            fields.add(field.toString());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of committed registrations and their status changes, replacing the
+ * old per-row text SQL log.
+ * <p>
+ * Appends copy an encoded record into a preallocated ring buffer and return; a background flusher
+ * drains the ring into the current segment file and fsyncs it according to {@link FsyncPolicy}.
+ * Segments are rotated by size. {@link JournalReplay} reads the segments back, starting from the
+ * {@link Position} last checkpointed into the database. Records use the {@link RegistrationCodec}
+ * layout.
+ */
+public class RegistrationJournal implements AutoCloseable {
+    static final String SEGMENT_PREFIX = "registrations-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    public enum FsyncPolicy {
+        /** fsync after every drain of the ring, i.e. as soon as a write reaches the file */
+        ALWAYS,
+        /** fsync at most once per {@code fsyncIntervalMs} */
+        INTERVAL,
+        /** fsync once {@code fsyncBytes} unsynced bytes have accumulated */
+        SIZE
+    }
+
+    /** A point in the journal: a segment index and a byte offset within that segment. */
+    public static final class Position {
+        public final int segment;
+        public final long offset;
+
+        public Position(int segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return segment + ":" + offset;
+        }
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalNanos;
+    private final long fsyncBytes;
+
+    private final ByteBuffer ring;
+    private final ByteBuffer scratch;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // positions are monotonically increasing byte counts; index into the ring is position % capacity
+    private long head;
+    private long tail;
+
+    private FileChannel channel;
+    private Path segment;
+    private int segmentIndex;
+    private long unsyncedBytes;
+    private long lastSync = System.nanoTime();
+    // end of the fsynced prefix; only this is safe to checkpoint, an unsynced tail may be lost and rewritten
+    private volatile Position synced;
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // written by the flusher only
+    private volatile long failures;
+    private volatile String lastError;
+    private volatile boolean failing;
+
+    public RegistrationJournal(Path dir, int bufferBytes, long segmentBytes, FsyncPolicy policy,
+                               long fsyncIntervalMs, long fsyncBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.policy = policy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.fsyncBytes = fsyncBytes;
+        this.ring = ByteBuffer.allocateDirect(bufferBytes);
+        this.scratch = ByteBuffer.allocate(Math.min(bufferBytes, 64 * 1024));
+
+        Files.createDirectories(dir);
+        List<Path> existing = JournalReplay.segments(dir);
+        if (existing.isEmpty()) {
+            openSegment(1);
+            synced = new Position(1, 0);
+        } else {
+            // continue after the last intact record of the newest segment
+            Path last = existing.get(existing.size() - 1);
+            segmentIndex = JournalReplay.segmentIndex(last);
+            segment = last;
+            channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            // drop a torn tail, then grow the file back to its preallocated size
+            long end = JournalReplay.validLength(last);
+            channel.truncate(end);
+            preallocate();
+            channel.position(end);
+            channel.force(false);
+            synced = new Position(segmentIndex, end);
+        }
+
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public Path currentSegment() {
+        return segment;
+    }
+
+    /** Everything before this position has been written and fsynced. */
+    public Position syncedPosition() {
+        return synced;
+    }
+
+    /** Deletes the segments older than the given index, at most the synced one; returns how many went. */
+    public int deleteSegmentsBefore(int index) throws IOException {
+        int n = 0;
+        for (Path p : JournalReplay.segments(dir)) {
+            int i = JournalReplay.segmentIndex(p);
+            if (i < index && Files.deleteIfExists(p)) n++;
+        }
+        return n;
+    }
+
+    /** Encodes the given committed registrations into the ring; blocks only if the ring is full. */
+    public void append(List<Registration> regs) {
+        lock.lock();
+        try {
+            for (Registration r : regs) {
+                encode(r);
+                int len = scratch.remaining();
+                while (ring.capacity() - (tail - head) < len) {
+                    notEmpty.signal();
+                    notFull.awaitUninterruptibly();
+                }
+                int idx = (int) (tail % ring.capacity());
+                int first = Math.min(len, ring.capacity() - idx);
+                ring.clear().position(idx);
+                ring.put(scratch.array(), 0, first);
+                if (first < len) {
+                    ring.position(0);
+                    ring.put(scratch.array(), first, len - first);
+                }
+                tail += len;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void encode(Registration r) {
+        try {
+            scratch.clear();
+            RegistrationCodec.write(r, scratch, crc);
+            scratch.flip();
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Registration " + r.id + " is too large for the journal", e);
+        }
+    }
+
+    private void flushLoop() {
+        long backoffMs = 0;
+        while (true) {
+            long from;
+            long to;
+            lock.lock();
+            try {
+                if (head == tail) {
+                    if (!running) break;
+                    notEmpty.await(10, TimeUnit.MILLISECONDS);
+                }
+                from = head;
+                to = tail;
+            } catch (InterruptedException e) {
+                running = false;
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (to > from) write(from, to);
+            } catch (IOException e) {
+                // the bytes stay in the ring (appends block once it fills) and are written again after a pause
+                backoffMs = failed(e, backoffMs);
+                continue;
+            }
+            if (to > from) {
+                lock.lock();
+                try {
+                    head = to;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            try {
+                maybeSync();
+                failing = false;
+                backoffMs = 0;
+            } catch (IOException e) {
+                // still unsynced, so the next pass tries again and the checkpoint stays behind
+                backoffMs = failed(e, backoffMs);
+            }
+        }
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long failed(IOException e, long backoffMs) {
+        failures++;
+        lastError = String.valueOf(e);
+        if (!failing) e.printStackTrace();
+        failing = true;
+        long next = Math.min(1000, Math.max(10, backoffMs * 2));
+        try {
+            Thread.sleep(next);
+        } catch (InterruptedException ie) {
+            running = false;
+        }
+        return next;
+    }
+
+    // Only the flusher touches [head, tail) and the channel, so no lock is needed here
+    private void write(long from, long to) throws IOException {
+        int len = (int) (to - from);
+        // a rotation that failed half way left the old channel closed; open the new segment again
+        if (!channel.isOpen()) openSegment(segmentIndex);
+        if (channel.position() > 0 && channel.position() + len > segmentBytes) {
+            sync();
+            channel.truncate(channel.position());
+            channel.close();
+            openSegment(segmentIndex + 1);
+        }
+        long start = channel.position();
+        ByteBuffer view = ring.duplicate();
+        int idx = (int) (from % ring.capacity());
+        int first = Math.min(len, ring.capacity() - idx);
+        try {
+            view.clear().position(idx).limit(idx + first);
+            while (view.hasRemaining()) channel.write(view);
+            if (first < len) {
+                view.clear().position(0).limit(len - first);
+                while (view.hasRemaining()) channel.write(view);
+            }
+        } catch (IOException e) {
+            // the retry writes the same bytes from here, so no half-written record is left in between
+            try {
+                channel.position(start);
+            } catch (IOException ignored) {
+                // the retry will fail the same way and say so
+            }
+            throw e;
+        }
+        unsyncedBytes += len;
+    }
+
+    private void maybeSync() throws IOException {
+        if (unsyncedBytes == 0) return;
+        switch (policy) {
+            case ALWAYS:
+                sync();
+                break;
+            case INTERVAL:
+                if (System.nanoTime() - lastSync >= fsyncIntervalNanos) sync();
+                break;
+            case SIZE:
+                if (unsyncedBytes >= fsyncBytes) sync();
+                break;
+        }
+    }
+
+    private void sync() throws IOException {
+        if (unsyncedBytes > 0) channel.force(false);
+        unsyncedBytes = 0;
+        lastSync = System.nanoTime();
+        synced = new Position(segmentIndex, channel.position());
+    }
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        segment = dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        preallocate();
+        channel.position(0);
+    }
+
+    // Grow the segment up front so appends do not extend the file; replay stops at the zeroed tail
+    private void preallocate() throws IOException {
+        if (channel.size() < segmentBytes) {
+            channel.write(ByteBuffer.allocate(1), segmentBytes - 1);
+        }
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        lock.lock();
+        try {
+            s.pendingBytes = tail - head;
+        } finally {
+            lock.unlock();
+        }
+        s.writeFailures = failures;
+        s.failing = failing;
+        s.lastError = lastError;
+        Position p = synced;
+        s.syncedPosition = p == null ? null : p.toString();
+        return s;
+    }
+
+    public static class Stats {
+        /** Appended bytes not yet written to a segment. */
+        public long pendingBytes;
+        public long writeFailures;
+        /** True from a failed write or fsync until the next one succeeds. */
+        public boolean failing;
+        public String lastError;
+        public String syncedPosition;
+    }
+
+    /** Flushes everything appended so far and stops the flusher thread. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
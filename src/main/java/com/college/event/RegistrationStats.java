@@ -0,0 +1,191 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-event registration aggregates kept in memory: registrations, tickets, distinct emails and
+ * hourly buckets. {@link #load} fills them from the table in one streaming pass at startup, before
+ * requests are served; from then on each committed batch arrives from the {@link RegistrationBus}
+ * and is added in place, so reading them never touches {@code registrations}. Rows that carry no
+ * event id are matched to an event by title, and grouped by name when no event has that title.
+ * Only confirmed registrations are counted: a promotion adds one, a cancellation takes it back off.
+ */
+public final class RegistrationStats {
+    private final Map<String, EventCounters> byEvent = new ConcurrentHashMap<>();
+    // normalized email -> confirmed registrations using it, so a cancellation can drop it again
+    private final Map<String, Integer> emails = new ConcurrentHashMap<>();
+    private final LongAdder registrations = new LongAdder();
+    private final LongAdder tickets = new LongAdder();
+
+    private volatile TitleIndex titles;
+
+    private RegistrationStats() {}
+
+    /** Builds the counters from the table, then keeps them current from {@code bus}. */
+    public static RegistrationStats load(RegistrationBus bus) {
+        RegistrationStats stats = new RegistrationStats();
+        long start = System.nanoTime();
+        try {
+            Database.scanRegistrations(stats::add);
+        } catch (SQLException | IOException ex) {
+            ex.printStackTrace();
+        }
+        System.out.printf("Built statistics for %d registrations in %d ms%n", stats.registrations.sum(), (System.nanoTime() - start) / 1_000_000);
+        bus.subscribe(stats::record);
+        return stats;
+    }
+
+    private void record(List<Registration> batch) {
+        for (Registration r : batch) add(r);
+    }
+
+    private void add(Registration r) {
+        boolean was = Registration.CONFIRMED.equals(r.previousStatus);
+        boolean is = r.isConfirmed();
+        if (is != was) count(r, is ? 1 : -1);
+    }
+
+    private void count(Registration r, int sign) {
+        Integer eventId = r.eventId != null ? r.eventId : resolve(r.eventName);
+        String key = eventId != null ? "id:" + eventId : "name:" + r.eventName;
+        EventCounters c = byEvent.get(key);
+        if (c == null) c = byEvent.computeIfAbsent(key, k -> new EventCounters(eventId));
+        String email = r.email == null ? null : Database.normalizeEmail(r.email);
+        c.add(r, email, sign);
+        registrations.add(sign);
+        tickets.add(sign * r.tickets);
+        if (email != null && !email.isEmpty()) countEmail(emails, email, sign);
+    }
+
+    private static void countEmail(Map<String, Integer> emails, String email, int sign) {
+        if (sign > 0) emails.merge(email, 1, Integer::sum);
+        else emails.computeIfPresent(email, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    private Integer resolve(String title) {
+        if (title == null) return null;
+        EventCache.Snapshot snapshot = Database.getEventSnapshot();
+        TitleIndex t = titles;
+        if (t == null || t.generation != snapshot.generation) titles = t = new TitleIndex(snapshot);
+        return t.ids.get(title.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /** Totals plus one entry per event; with {@code hourly}, each event's per-hour buckets too. */
+    public Summary summary(boolean hourly) {
+        Summary s = new Summary();
+        s.registrations = registrations.sum();
+        s.tickets = tickets.sum();
+        s.uniqueEmails = emails.size();
+        s.events = new ArrayList<>(byEvent.size());
+        for (EventCounters c : byEvent.values()) s.events.add(c.summary(hourly));
+        s.events.sort((a, b) -> Long.compare(b.tickets, a.tickets));
+        return s;
+    }
+
+    /** One event's figures, or null if it has no registrations. */
+    public EventSummary event(int eventId) {
+        EventCounters c = byEvent.get("id:" + eventId);
+        return c == null ? null : c.summary(true);
+    }
+
+    public static class Summary {
+        public long registrations;
+        public long tickets;
+        public int uniqueEmails;
+        public List<EventSummary> events;
+    }
+
+    public static class EventSummary {
+        public Integer eventId;
+        public String eventName;
+        public long registrations;
+        public long tickets;
+        public int uniqueEmails;
+        public String firstAt;
+        public String lastAt;
+        public SeatAllocator.Availability seats;
+        public List<Bucket> hourly;
+    }
+
+    public static class Bucket {
+        public String hour;
+        public long registrations;
+        public long tickets;
+    }
+
+    private static final class EventCounters {
+        final Integer eventId;
+        String eventName;
+        long registrations;
+        long tickets;
+        final Map<String, Integer> emails = new HashMap<>();
+        // "yyyy-MM-dd HH:00" -> {registrations, tickets}
+        final TreeMap<String, long[]> hours = new TreeMap<>();
+        String firstAt;
+        String lastAt;
+
+        EventCounters(Integer eventId) {
+            this.eventId = eventId;
+        }
+
+        // sign -1 undoes a cancelled registration, in the hour it was made; first/last times are left as they were
+        synchronized void add(Registration r, String email, int sign) {
+            if (r.eventName != null) eventName = r.eventName;
+            registrations += sign;
+            tickets += sign * r.tickets;
+            if (email != null && !email.isEmpty()) countEmail(emails, email, sign);
+            String at = r.createdAt;
+            if (at != null && at.length() >= 13) {
+                long[] h = hours.computeIfAbsent(at.substring(0, 13) + ":00", k -> new long[2]);
+                h[0] += sign;
+                h[1] += sign * r.tickets;
+                if (sign > 0 && (firstAt == null || at.compareTo(firstAt) < 0)) firstAt = at;
+                if (sign > 0 && (lastAt == null || at.compareTo(lastAt) > 0)) lastAt = at;
+            }
+        }
+
+        synchronized EventSummary summary(boolean hourly) {
+            EventSummary s = new EventSummary();
+            s.eventId = eventId;
+            s.eventName = eventName;
+            s.registrations = registrations;
+            s.tickets = tickets;
+            s.uniqueEmails = emails.size();
+            s.firstAt = firstAt;
+            s.lastAt = lastAt;
+            if (eventId != null) s.seats = Database.getSeatAvailability(eventId);
+            if (hourly) {
+                s.hourly = new ArrayList<>(hours.size());
+                for (Map.Entry<String, long[]> e : hours.entrySet()) {
+                    Bucket b = new Bucket();
+                    b.hour = e.getKey();
+                    b.registrations = e.getValue()[0];
+                    b.tickets = e.getValue()[1];
+                    s.hourly.add(b);
+                }
+            }
+            return s;
+        }
+    }
+
+    private static final class TitleIndex {
+        final long generation;
+        final Map<String, Integer> ids = new HashMap<>();
+
+        TitleIndex(EventCache.Snapshot snapshot) {
+            generation = snapshot.generation;
+            for (Event e : snapshot.events) {
+                if (e.title != null) ids.putIfAbsent(e.title.trim().toLowerCase(Locale.ROOT), e.id);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Registrations, the seats they hold and the per-event waitlist. Every committed insert or status
+ * change is published on {@link #getRegistrationBus} by the node that made it.
+ */
+public interface RegistrationStore {
+    /** Result of {@link #insertRegistration}: the new row's id, or why no row was added. */
+    class InsertResult {
+        /**
+         * {@code BUSY}: too many registrations are already waiting to be written; try again shortly.
+         * {@code SOLD_OUT}: the seats {@link #reserveSeats} saw were taken by another node first.
+         */
+        public enum Status { INSERTED, DUPLICATE_KEY, DUPLICATE_EMAIL, SOLD_OUT, BUSY, FAILED }
+
+        public final Status status;
+        public final long id;
+
+        InsertResult(Status status, long id) {
+            this.status = status;
+            this.id = id;
+        }
+    }
+
+    /** Result of {@link #cancelRegistration}: how many waitlisted registrations took the freed seats. */
+    class CancelResult {
+        public enum Status { CANCELLED, NOT_FOUND, ALREADY_CANCELLED, FAILED }
+
+        public final Status status;
+        public final int promoted;
+
+        CancelResult(Status status, int promoted) {
+            this.status = status;
+            this.promoted = promoted;
+        }
+    }
+
+    /** Receives rows from {@link #streamRegistrations}; may fail with an I/O error from its output. */
+    interface RegistrationSink {
+        void accept(Registration r) throws IOException;
+    }
+
+    /**
+     * Inserts a registration. A reused idempotency key is {@code DUPLICATE_KEY} (with the id of
+     * the row that already has it) and a repeated email for the same event is
+     * {@code DUPLICATE_EMAIL}; neither writes anything.
+     */
+    InsertResult insertRegistration(Registration r);
+
+    /** Id of the registration saved with this idempotency key, or -1 if there is none. */
+    long findRegistrationIdByIdempotencyKey(String key);
+
+    /**
+     * Inserts already-validated rows in one transaction. A row that breaks a unique rule, or whose
+     * seats are gone, is skipped: its {@code id} is set to null. Returns the number inserted.
+     */
+    int insertRegistrationBatch(List<Registration> rows) throws SQLException;
+
+    /**
+     * Cancels a registration. With {@code cancelToken} set, it must be the token issued when the
+     * registration was made (a student cancelling their own; rows without one are NOT_FOUND);
+     * null skips the check (an admin). Seats a confirmed registration held go to the head of the
+     * event's waitlist in the same transaction.
+     */
+    CancelResult cancelRegistration(int id, String cancelToken);
+
+    /** Promotes from the head of the event's waitlist as far as the free seats go; returns how many. */
+    int promoteWaitlist(int eventId);
+
+    /**
+     * Claims seats for a confirmed registration about to be inserted; false means the event is
+     * sold out. Pair with {@link #releaseSeats} when the registration is not saved after all.
+     */
+    boolean reserveSeats(int eventId, int tickets);
+
+    /** Returns seats taken by {@link #reserveSeats} when the registration could not be saved. */
+    void releaseSeats(int eventId, int tickets);
+
+    SeatAllocator.Availability getSeatAvailability(int eventId);
+
+    /** Registrations waiting for a seat at the event. */
+    int getWaitlistSize(int eventId);
+
+    /** 1-based waitlist place of a registration, or 0 if it is not waiting. */
+    int getWaitlistPosition(int eventId, int registrationId);
+
+    /** One registration by id, or null. */
+    Registration getRegistration(int id);
+
+    List<Registration> getRecentRegistrations(int limit);
+
+    /**
+     * Keyset-paginated registrations, newest first. {@code after} is the opaque cursor from the
+     * previous page (null for the first page).
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by this method
+     */
+    Page<Registration> getRegistrationsPage(String after, int pageSize);
+
+    List<Registration> getRegistrationsForEvent(int eventId);
+
+    /** Registrations for an email, compared case-insensitively. */
+    List<Registration> getRegistrationsForEmail(String email);
+
+    List<Registration> getAllRegistrations();
+
+    /** Feeds every registration, newest first, to the sink one row at a time without collecting them. */
+    void streamRegistrations(RegistrationSink sink) throws SQLException, IOException;
+
+    /**
+     * Feeds every registration to the sink in table order; only the columns aggregates need (id,
+     * event, tickets, email, created_at, status) are filled in.
+     */
+    void scanRegistrations(RegistrationSink sink) throws SQLException, IOException;
+
+    /** Registrations committed by this node, published after every insert path's commit. */
+    RegistrationBus getRegistrationBus();
+}
@@ -0,0 +1,247 @@
+package com.college.event;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Single writer thread that group-commits registration inserts. Callers enqueue a row and get a
+ * future; the thread takes whatever is queued (up to {@code maxBatch} rows, waiting at most
+ * {@code lingerMs} for the batch to fill), inserts it in one transaction and completes every
+ * future once the commit has returned. One fsync is paid per batch instead of per registration.
+ */
+public class RegistrationWriter implements AutoCloseable {
+    private static final String INSERT_SQL = "INSERT INTO registrations(student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status, cancel_token) VALUES(?,?,?,?,?,?,?,?,?,?)";
+    // same text format SQLite uses for CURRENT_TIMESTAMP
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ConnectionPool pool;
+    private final Consumer<List<Registration>> onCommit;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param onCommit called on the writer thread with each committed batch (ids and created_at
+     *                 filled in) before the callers' futures complete
+     */
+    public RegistrationWriter(ConnectionPool pool, int maxBatch, long lingerMs, int queueCapacity,
+                              Consumer<List<Registration>> onCommit) {
+        this.pool = pool;
+        this.onCommit = onCommit;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::run, "registration-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Queues a registration; the future yields the new row id once its batch is committed. */
+    public CompletableFuture<Long> submit(Registration r) {
+        return enqueue(r).future;
+    }
+
+    /**
+     * Queues a registration and waits up to {@code timeoutMs} for its id. A row the writer has not
+     * started on by then is withdrawn, so it is never inserted, and {@link TimeoutException} is
+     * thrown. A row already being inserted is waited for; its batch completes within one commit.
+     */
+    public long insert(Registration r, long timeoutMs) throws InterruptedException, ExecutionException, TimeoutException {
+        Pending p = enqueue(r);
+        try {
+            return p.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (p.taken.compareAndSet(false, true)) {
+                p.future.cancel(false);
+                throw e;
+            }
+            return p.future.get();
+        }
+    }
+
+    private Pending enqueue(Registration r) {
+        Pending p = new Pending(r);
+        if (!running) {
+            p.future.completeExceptionally(new RejectedExecutionException("registration writer is shut down"));
+        } else if (!queue.offer(p)) {
+            p.future.completeExceptionally(new RejectedExecutionException("registration queue is full"));
+        }
+        return p;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<Pending> inserted = new ArrayList<>(batch.size());
+        String now = timestamp();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            Connection conn = c.connection();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement ps = c.prepare(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                for (Pending p : batch) {
+                    // withdrawn by a caller that stopped waiting
+                    if (!p.taken.compareAndSet(false, true)) continue;
+                    Registration r = p.registration;
+                    try {
+                        ps.setString(1, r.studentName);
+                        ps.setString(2, Database.storedEventName(r));
+                        ps.setInt(3, r.tickets);
+                        ps.setString(4, r.email);
+                        ps.setString(5, r.phone);
+                        ps.setString(6, now);
+                        ps.setObject(7, r.eventId);
+                        ps.setString(8, r.idempotencyKey);
+                        ps.setString(9, Database.storedStatus(r));
+                        ps.setString(10, r.cancelTokenHash);
+                        ps.executeUpdate();
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            p.id = keys.next() ? keys.getLong(1) : -1;
+                        }
+                        r.id = (int) p.id;
+                        r.createdAt = now;
+                        inserted.add(p);
+                    } catch (SQLException rowError) {
+                        // SQLite rolls back only the failed statement (e.g. a duplicate rejected by a
+                        // unique index); the rest of the batch still commits
+                        failures.increment();
+                        p.future.completeExceptionally(rowError);
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            // the checkout, the transaction or the commit failed: nothing in the batch was written
+            Metrics.queryFailed("registration_batch");
+            e.printStackTrace();
+            fail(batch, e);
+            return;
+        }
+        Metrics.recordQuery("registration_batch", t0);
+        batches.increment();
+        rows.add(inserted.size());
+        if (!inserted.isEmpty()) {
+            List<Registration> committed = new ArrayList<>(inserted.size());
+            for (Pending p : inserted) committed.add(p.registration);
+            try {
+                onCommit.accept(committed);
+            } catch (RuntimeException e) {
+                // the rows are already durable in SQLite; a listener failure must not fail the callers
+                e.printStackTrace();
+            }
+        }
+        for (Pending p : inserted) p.future.complete(p.id);
+    }
+
+    // Fails every caller in the batch that has no answer yet
+    private void fail(List<Pending> batch, Exception e) {
+        for (Pending p : batch) {
+            if (p.future.isDone()) continue;
+            // counted first, so a caller that sees its failure also sees it in the stats
+            failures.increment();
+            p.future.completeExceptionally(e);
+        }
+    }
+
+    /** The current UTC time in the created_at format. */
+    static String timestamp() {
+        return LocalDateTime.now(ZoneOffset.UTC).format(CREATED_AT);
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.queued = queue.size();
+        s.batches = batches.sum();
+        s.rows = rows.sum();
+        s.failures = failures.sum();
+        s.avgBatchSize = s.batches == 0 ? 0 : (double) s.rows / s.batches;
+        return s;
+    }
+
+    /** Stops accepting work and waits for already queued registrations to be committed. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Stats {
+        public int queued;
+        public long batches;
+        public long rows;
+        public long failures;
+        public double avgBatchSize;
+    }
+
+    private static final class Pending {
+        final Registration registration;
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        // claimed by the writer before it inserts the row, or by a caller that gives up waiting
+        final AtomicBoolean taken = new AtomicBoolean();
+        long id;
+
+        Pending(Registration registration) {
+            this.registration = registration;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A JSON response rendered once: UTF-8 bytes, a gzipped copy and strong ETags derived from the
+ * content, one per encoding since the two byte sequences differ. {@link #send} answers
+ * conditional requests with 304 and otherwise writes the bytes straight to the servlet response,
+ * so repeated requests cost neither serialization nor compression.
+ */
+public final class RenderedJson {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public final byte[] body;
+    public final byte[] gzipped;
+    public final String etag;
+    public final String gzipEtag;
+
+    private RenderedJson(byte[] body) {
+        this.body = body;
+        this.gzipped = gzip(body);
+        this.etag = etagOf(body);
+        this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    public static RenderedJson of(Gson gson, Object value) {
+        return new RenderedJson(gson.toJson(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Writes this response (or a 304) and returns the empty string for Spark to ignore. */
+    public Object send(Request req, Response res) throws IOException {
+        HttpServletResponse raw = res.raw();
+        String accept = req.headers("Accept-Encoding");
+        boolean gz = accept != null && accept.contains("gzip");
+        raw.setContentType("application/json;charset=utf-8");
+        raw.setHeader("ETag", gz ? gzipEtag : etag);
+        raw.setHeader("Cache-Control", "no-cache");
+        raw.setHeader("Vary", "Accept-Encoding");
+        // either tag means the client holds this content, whichever encoding it was fetched in
+        if (matches(req.headers("If-None-Match"))) {
+            raw.setStatus(304);
+            raw.flushBuffer();
+            return "";
+        }
+        byte[] bytes = body;
+        if (gz) {
+            raw.setHeader("Content-Encoding", "gzip");
+            bytes = gzipped;
+        }
+        raw.setContentLength(bytes.length);
+        // writing and flushing commits the response, so Spark skips its own serialization (and gzip)
+        ServletOutputStream out = raw.getOutputStream();
+        out.write(bytes);
+        out.flush();
+        return "";
+    }
+
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || t.equals(etag) || t.equals(gzipEtag)) return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+            gz.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) sb.append(HEX[(d[i] >> 4) & 0xf]).append(HEX[d[i] & 0xf]);
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
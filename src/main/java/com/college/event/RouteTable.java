@@ -0,0 +1,64 @@
+package com.college.event;
+
+import spark.routematch.RouteMatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a request back to the route pattern that served it (e.g. {@code /api/events/42} to
+ * {@code /api/events/:id}) so metrics are labelled per route rather than per URL. Spark only
+ * exposes the filter's own pattern to an {@code afterAfter} filter, so the routes are matched
+ * here again, segment by segment and in registration order, the way Spark picks them.
+ */
+public final class RouteTable {
+    /** Label for requests no route matched: static files and 404s. */
+    public static final String UNMATCHED = "unmatched";
+
+    private final List<String> methods = new ArrayList<>();
+    private final List<String> patterns = new ArrayList<>();
+    private final List<String[]> segments = new ArrayList<>();
+
+    public RouteTable(List<RouteMatch> routes) {
+        for (RouteMatch m : routes) {
+            String method = m.getHttpMethod().name();
+            // before/after filters are listed too; only real routes serve requests
+            if (method.startsWith("before") || method.startsWith("after")) continue;
+            methods.add(method.toUpperCase());
+            patterns.add(m.getMatchUri());
+            segments.add(split(m.getMatchUri()));
+        }
+    }
+
+    public String resolve(String method, String path) {
+        String[] parts = null;
+        for (int i = 0; i < patterns.size(); i++) {
+            if (!methods.get(i).equals(method)) continue;
+            if (patterns.get(i).equals(path)) return patterns.get(i);
+            if (parts == null) parts = split(path);
+            if (matches(segments.get(i), parts)) return patterns.get(i);
+        }
+        return UNMATCHED;
+    }
+
+    private static boolean matches(String[] pattern, String[] path) {
+        for (int i = 0; i < pattern.length; i++) {
+            String p = pattern[i];
+            if (p.equals("*")) {
+                if (i == pattern.length - 1) return path.length >= pattern.length;
+                if (i >= path.length) return false;
+                continue;
+            }
+            if (i >= path.length) return false;
+            if (p.startsWith(":")) continue;
+            if (!p.equals(path[i])) return false;
+        }
+        return pattern.length == path.length;
+    }
+
+    private static String[] split(String path) {
+        String p = path.startsWith("/") ? path.substring(1) : path;
+        if (p.endsWith("/")) p = p.substring(0, p.length() - 1);
+        return p.isEmpty() ? new String[0] : p.split("/");
+    }
+}
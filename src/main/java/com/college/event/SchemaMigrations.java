@@ -0,0 +1,340 @@
+package com.college.event;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned schema changes. The version a database has reached is kept in SQLite's
+ * {@code PRAGMA user_version}, so a start against a current database costs one pragma read;
+ * otherwise each pending step runs in its own transaction and moves the version on as it commits.
+ * Databases from before versioning report version 0 and run every step, which is why steps only
+ * change what is missing ({@code IF NOT EXISTS}, {@link #addColumnIfMissing}).
+ * <p>
+ * {@link #check} holds the cheap integrity checks that used to run on every start (a
+ * {@code quick_check} and that every index the steps create is present); it runs on a background
+ * thread while the server starts, and recreates an index that has gone missing.
+ */
+final class SchemaMigrations {
+    private SchemaMigrations() {}
+
+    interface Step {
+        void apply(Connection conn, Statement stmt) throws SQLException;
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    static final String REGISTRATIONS_DDL = "CREATE TABLE IF NOT EXISTS registrations (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "student_name TEXT NOT NULL, " +
+            "event_name TEXT, " +
+            "tickets INTEGER NOT NULL, " +
+            "email TEXT, " +
+            "phone TEXT, " +
+            "created_at DATETIME DEFAULT CURRENT_TIMESTAMP" +
+            ");";
+
+    // every index the steps create, by name; check() recreates any that is missing
+    private static final Map<String, String> INDEXES = new LinkedHashMap<>();
+
+    static {
+        // matching the (created_at DESC, id DESC) order of every registration listing
+        INDEXES.put("idx_registrations_created", "CREATE INDEX IF NOT EXISTS idx_registrations_created ON registrations(created_at DESC, id DESC);");
+        INDEXES.put("idx_registrations_event", "CREATE INDEX IF NOT EXISTS idx_registrations_event ON registrations(event_id, created_at DESC, id DESC);");
+        // email lookups are case-insensitive, so index the same expression they filter on
+        INDEXES.put("idx_registrations_email_norm", "CREATE INDEX IF NOT EXISTS idx_registrations_email_norm ON registrations(lower(trim(email)), created_at DESC, id DESC);");
+        // dedupe rules, checked by SQLite as part of each insert: a client retry carrying the same
+        // Idempotency-Key, and a second live registration of the same email for the same event
+        INDEXES.put("idx_registrations_idempotency", "CREATE UNIQUE INDEX IF NOT EXISTS idx_registrations_idempotency ON registrations(idempotency_key) WHERE idempotency_key IS NOT NULL;");
+        INDEXES.put("idx_registrations_email_event", "CREATE UNIQUE INDEX IF NOT EXISTS idx_registrations_email_event ON registrations(lower(trim(email)), event_id) " +
+                "WHERE email IS NOT NULL AND event_id IS NOT NULL AND status <> 'cancelled';");
+        // each event's waitlist in FIFO order, read once at startup
+        INDEXES.put("idx_registrations_waitlist", "CREATE INDEX IF NOT EXISTS idx_registrations_waitlist ON registrations(event_id, id) WHERE status = 'waitlisted';");
+    }
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "registrations, events and users tables", (conn, stmt) -> {
+                stmt.execute(REGISTRATIONS_DDL);
+                stmt.execute("CREATE TABLE IF NOT EXISTS events (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "title TEXT NOT NULL, " +
+                        "type TEXT, " +
+                        "start_datetime TEXT, " +
+                        "end_datetime TEXT, " +
+                        "venue TEXT, " +
+                        "description TEXT, " +
+                        "rules TEXT, " +
+                        "coordinators TEXT, " +
+                        "prizes TEXT, " +
+                        "fee TEXT, " +
+                        "banner TEXT" +
+                        ");");
+                stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "username TEXT UNIQUE NOT NULL, " +
+                        "password TEXT NOT NULL, " +
+                        "role TEXT NOT NULL" +
+                        ");");
+            }),
+            new Migration(2, "event_id, capacity and idempotency_key columns", (conn, stmt) -> {
+                addColumnIfMissing(stmt, "registrations", "event_id", "INTEGER DEFAULT NULL");
+                addColumnIfMissing(stmt, "events", "capacity", "INTEGER DEFAULT NULL");
+                addColumnIfMissing(stmt, "registrations", "idempotency_key", "TEXT DEFAULT NULL");
+            }),
+            new Migration(3, "registration status", (conn, stmt) ->
+                    addColumnIfMissing(stmt, "registrations", "status", "TEXT NOT NULL DEFAULT 'confirmed'")),
+            // Rows used to repeat the event title; they now reference events by id and event_name is
+            // only filled in when no event matches. Tables from before that get rebuilt once.
+            new Migration(4, "registrations reference events by id", (conn, stmt) -> {
+                if (isNotNull(stmt, "registrations", "event_name")) {
+                    rebuildRegistrations(stmt);
+                    // the rebuild dropped the indexes; the backfill wants the one-email-per-event rule in place
+                    createIndexes(stmt);
+                    backfillEventIds(stmt);
+                }
+            }),
+            new Migration(5, "registration indexes", (conn, stmt) -> {
+                stmt.execute("DROP INDEX IF EXISTS idx_registrations_email;");
+                // the (email, event) rule used to count cancelled rows too
+                dropIndexUnless(stmt, "idx_registrations_email_event", "status");
+                createIndexes(stmt);
+            }),
+            new Migration(6, "default admin and hashed passwords", (conn, stmt) -> {
+                createAdminIfNotExists(conn, "admin", "admin");
+                hashPlaintextPasswords(conn);
+            }),
+            // older rows have none and can only be cancelled by an admin
+            new Migration(7, "registration cancel tokens", (conn, stmt) ->
+                    addColumnIfMissing(stmt, "registrations", "cancel_token", "TEXT DEFAULT NULL")),
+            // one row: the journal position the database is known to hold everything before
+            new Migration(8, "journal replay checkpoint", (conn, stmt) ->
+                    stmt.execute("CREATE TABLE IF NOT EXISTS journal_checkpoint (id INTEGER PRIMARY KEY CHECK (id = 1), segment INTEGER NOT NULL, byte_offset INTEGER NOT NULL);"))
+    );
+
+    static final int LATEST = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
+    /** What {@link #migrate} found and did. */
+    static final class Result {
+        int fromVersion;
+        int version;
+        final List<String> applied = new ArrayList<>();
+    }
+
+    /** Brings the database to {@link #LATEST}; call with the writer connection. */
+    static Result migrate(Connection conn) throws SQLException {
+        Result result = new Result();
+        try (Statement stmt = conn.createStatement()) {
+            result.fromVersion = result.version = userVersion(stmt);
+            if (result.version > LATEST) {
+                System.err.printf("Database schema version %d is newer than this build knows (%d)%n", result.version, LATEST);
+                return result;
+            }
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= result.version) continue;
+                long start = System.nanoTime();
+                conn.setAutoCommit(false);
+                try {
+                    m.step.apply(conn, stmt);
+                    stmt.execute("PRAGMA user_version = " + m.version + ";");
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Schema migration " + m.version + " (" + m.description + ") failed: " + e.getMessage(), e);
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                result.version = m.version;
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                result.applied.add(m.version + ": " + m.description + " (" + ms + " ms)");
+                System.out.printf("Applied schema migration %d (%s) in %d ms%n", m.version, m.description, ms);
+            }
+        }
+        return result;
+    }
+
+    private static int userVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Outcome of {@link #check}. */
+    static final class Check {
+        public String quickCheck;
+        public List<String> recreatedIndexes = new ArrayList<>();
+        public List<String> missingIndexes = new ArrayList<>();
+        public long ms;
+    }
+
+    /** Runs the integrity checks; recreating a missing index takes the writer, everything else a reader. */
+    static Check check(ConnectionPool pool) {
+        long start = System.nanoTime();
+        Check check = new Check();
+        List<String> missing = new ArrayList<>();
+        try (ConnectionPool.Lease c = pool.reader();
+             Statement stmt = c.connection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA quick_check;")) {
+                StringBuilder sb = new StringBuilder();
+                while (rs.next()) sb.append(sb.length() == 0 ? "" : "; ").append(rs.getString(1));
+                check.quickCheck = sb.toString();
+            }
+            java.util.Set<String> present = new java.util.HashSet<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'registrations';")) {
+                while (rs.next()) present.add(rs.getString(1));
+            }
+            for (String name : INDEXES.keySet()) {
+                if (!present.contains(name)) missing.add(name);
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            check.quickCheck = "failed: " + ex.getMessage();
+        }
+        if (!missing.isEmpty()) {
+            try (ConnectionPool.Lease c = pool.writer();
+                 Statement stmt = c.connection().createStatement()) {
+                for (String name : missing) {
+                    try {
+                        stmt.execute(INDEXES.get(name));
+                        check.recreatedIndexes.add(name);
+                    } catch (SQLException ex) {
+                        // e.g. duplicate (email, event) rows from before the rule; it is retried at the next start
+                        check.missingIndexes.add(name + ": " + ex.getMessage());
+                    }
+                }
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+        check.ms = (System.nanoTime() - start) / 1_000_000;
+        if (!"ok".equals(check.quickCheck)) System.err.println("Database quick_check: " + check.quickCheck);
+        for (String m : check.missingIndexes) System.err.println("Index not in place: " + m);
+        return check;
+    }
+
+    private static void createIndexes(Statement stmt) throws SQLException {
+        for (Map.Entry<String, String> index : INDEXES.entrySet()) {
+            try {
+                stmt.execute(index.getValue());
+            } catch (SQLException dup) {
+                // only a unique index can fail here: rows from before the rule already break it; keep running
+                // without it until they are cleaned up (check() retries it at every start)
+                System.err.println("Not enforcing " + index.getKey() + ": " + dup.getMessage());
+            }
+        }
+    }
+
+    static void addColumnIfMissing(Statement stmt, String table, String column, String definition) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ");")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return;
+            }
+        }
+        stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition + ";");
+    }
+
+    // drops an index whose definition predates a change, so the CREATE INDEX IF NOT EXISTS after it builds the new one
+    private static void dropIndexUnless(Statement stmt, String index, String mustContain) throws SQLException {
+        String sql = null;
+        try (ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'index' AND name = '" + index + "';")) {
+            if (rs.next()) sql = rs.getString(1);
+        }
+        if (sql != null && !sql.contains(mustContain)) stmt.execute("DROP INDEX " + index + ";");
+    }
+
+    private static boolean isNotNull(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ");")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return rs.getInt("notnull") != 0;
+            }
+        }
+        return false;
+    }
+
+    // SQLite cannot drop a NOT NULL constraint in place, so copy the rows into a table without it
+    private static void rebuildRegistrations(Statement st) throws SQLException {
+        long start = System.nanoTime();
+        long seq = 0;
+        try (ResultSet rs = st.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'registrations'")) {
+            if (rs.next()) seq = rs.getLong(1);
+        }
+        st.execute("DROP TABLE IF EXISTS registrations_new;");
+        st.execute(REGISTRATIONS_DDL.replace("registrations (", "registrations_new ("));
+        st.execute("ALTER TABLE registrations_new ADD COLUMN event_id INTEGER DEFAULT NULL;");
+        st.execute("ALTER TABLE registrations_new ADD COLUMN idempotency_key TEXT DEFAULT NULL;");
+        st.execute("ALTER TABLE registrations_new ADD COLUMN status TEXT NOT NULL DEFAULT 'confirmed';");
+        int rows = st.executeUpdate("INSERT INTO registrations_new(id, student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status) " +
+                "SELECT id, student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status FROM registrations;");
+        // dropping the table also drops its indexes; the caller rebuilds them
+        st.execute("DROP TABLE registrations;");
+        st.execute("ALTER TABLE registrations_new RENAME TO registrations;");
+        // keep AUTOINCREMENT from reusing the ids of rows deleted before the rebuild
+        try (PreparedStatement ps = st.getConnection().prepareStatement("UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = 'registrations'")) {
+            ps.setLong(1, seq);
+            ps.executeUpdate();
+        }
+        System.out.printf("Rebuilt registrations (%d rows) with a nullable event_name in %d ms%n", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // After the rebuild: match legacy rows to events by title, then drop titles the events table already holds
+    private static void backfillEventIds(Statement stmt) throws SQLException {
+        // OR IGNORE leaves a row as it was when its new event_id would break the one-email-per-event rule
+        int matched = stmt.executeUpdate("UPDATE OR IGNORE registrations SET event_id = " +
+                "(SELECT e.id FROM events e WHERE lower(trim(e.title)) = lower(trim(registrations.event_name)) ORDER BY e.id LIMIT 1) " +
+                "WHERE event_id IS NULL AND event_name IS NOT NULL " +
+                "AND EXISTS (SELECT 1 FROM events e WHERE lower(trim(e.title)) = lower(trim(registrations.event_name)));");
+        int cleared = stmt.executeUpdate("UPDATE registrations SET event_name = NULL WHERE event_name IS NOT NULL AND event_id IN (SELECT id FROM events);");
+        System.out.printf("Linked %d registrations to events by title; %d no longer store the title%n", matched, cleared);
+    }
+
+    static void createAdminIfNotExists(Connection conn, String username, String password) throws SQLException {
+        try (PreparedStatement p = conn.prepareStatement("SELECT id FROM users WHERE username = ? LIMIT 1")) {
+            p.setString(1, username);
+            try (ResultSet rs = p.executeQuery()) {
+                if (rs.next()) return; // exists
+            }
+        }
+        try (PreparedStatement pi = conn.prepareStatement("INSERT INTO users(username,password,role) VALUES(?,?,?)")) {
+            pi.setString(1, username);
+            pi.setString(2, PasswordHash.hash(password));
+            pi.setString(3, "admin");
+            pi.executeUpdate();
+        }
+    }
+
+    // Users stored before passwords were hashed
+    private static void hashPlaintextPasswords(Connection conn) throws SQLException {
+        Map<Integer, String> plain = new LinkedHashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, password FROM users")) {
+            while (rs.next()) {
+                if (!PasswordHash.isHashed(rs.getString("password"))) plain.put(rs.getInt("id"), rs.getString("password"));
+            }
+        }
+        if (plain.isEmpty()) return;
+        try (PreparedStatement up = conn.prepareStatement("UPDATE users SET password = ? WHERE id = ? AND password = ?")) {
+            for (Map.Entry<Integer, String> e : plain.entrySet()) {
+                up.setString(1, PasswordHash.hash(e.getValue()));
+                up.setInt(2, e.getKey());
+                up.setString(3, e.getValue());
+                up.executeUpdate();
+            }
+        }
+        System.out.printf("Hashed %d plaintext user passwords%n", plain.size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.college.event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory seat counters per event. Reservations are a compare-and-set on the event's sold
+ * count, so concurrent registrations can never push it past the capacity, and no query is run
+ * per request. Counters are seeded from the registrations table once and then kept in step by
+ * the registration and event write paths.
+ */
+public class SeatAllocator {
+    private final Map<Integer, Seats> seats = new ConcurrentHashMap<>();
+
+    /** Registers (or updates) an event's capacity; {@code null} means unlimited. */
+    public void setCapacity(int eventId, Integer capacity) {
+        seats.computeIfAbsent(eventId, id -> new Seats()).capacity = capacity == null ? -1 : capacity;
+    }
+
+    /** Seeds the sold count, used once when counters are loaded from the database. */
+    public void setSold(int eventId, int sold) {
+        seats.computeIfAbsent(eventId, id -> new Seats()).sold.set(sold);
+    }
+
+    public void remove(int eventId) {
+        seats.remove(eventId);
+    }
+
+    /** Atomically takes {@code tickets} seats; returns false, leaving the count untouched, if they do not fit. */
+    public boolean tryReserve(int eventId, int tickets) {
+        Seats s = seats.computeIfAbsent(eventId, id -> new Seats());
+        while (true) {
+            int sold = s.sold.get();
+            int cap = s.capacity;
+            if (cap >= 0 && sold + tickets > cap) return false;
+            if (s.sold.compareAndSet(sold, sold + tickets)) return true;
+        }
+    }
+
+    /** Seats still free: -1 when unlimited, 0 when sold out or unknown. */
+    public int remaining(int eventId) {
+        Seats s = seats.get(eventId);
+        if (s == null) return 0;
+        int cap = s.capacity;
+        return cap < 0 ? -1 : Math.max(0, cap - s.sold.get());
+    }
+
+    /** Gives back seats from a reservation whose registration was not saved, or that was cancelled. */
+    public void release(int eventId, int tickets) {
+        Seats s = seats.get(eventId);
+        if (s != null) s.sold.addAndGet(-tickets);
+    }
+
+    public Availability availability(int eventId) {
+        Seats s = seats.get(eventId);
+        Availability a = new Availability();
+        a.eventId = eventId;
+        if (s != null) {
+            a.sold = s.sold.get();
+            a.capacity = s.capacity < 0 ? null : s.capacity;
+            a.remaining = s.capacity < 0 ? null : Math.max(0, s.capacity - a.sold);
+        }
+        return a;
+    }
+
+    public static class Availability {
+        public int eventId;
+        public Integer capacity;
+        public int sold;
+        public Integer remaining;
+        public int waitlisted;
+    }
+
+    private static final class Seats {
+        final AtomicInteger sold = new AtomicInteger();
+        volatile int capacity = -1;
+    }
+}
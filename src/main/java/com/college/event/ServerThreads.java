@@ -0,0 +1,159 @@
+package com.college.event;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.TryExecutor;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the threads Jetty serves requests on. {@code server.threads=platform} (the default) is a
+ * {@link QueuedThreadPool} whose size, idle timeout and queue are all taken from configuration;
+ * {@code server.threads=virtual} runs every task on its own virtual thread, so a request blocked on
+ * a connection checkout or a group commit parks cheaply instead of holding one of a few hundred
+ * pool threads. Virtual threads need JDK 21+; they are looked up reflectively so the build still
+ * targets 17, and the platform pool is used when they are not available.
+ */
+public final class ServerThreads {
+    private static volatile ThreadPool pool;
+
+    private ServerThreads() {}
+
+    /** Builds the configured pool and makes Spark's embedded Jetty use it; call before the first route is mapped. */
+    public static void install() {
+        ThreadPool p = null;
+        if (Config.get("server.threads", "platform").equalsIgnoreCase("virtual")) {
+            ThreadFactory factory = virtualThreadFactory();
+            if (factory != null) p = new VirtualThreadPool(factory);
+            else System.err.println("server.threads=virtual needs JDK 21 or newer; using the platform thread pool");
+        }
+        if (p == null) {
+            int max = Config.getInt("server.threads.max", 200);
+            int min = Math.min(max, Config.getInt("server.threads.min", 8));
+            int idle = Config.getInt("server.threads.idleTimeoutMs", 60000);
+            int capacity = Config.getInt("server.threads.queueCapacity", 0);
+            // a bounded queue makes Jetty turn requests away when it is full instead of queueing without limit
+            QueuedThreadPool q = capacity > 0
+                    ? new QueuedThreadPool(max, min, idle, new BlockingArrayQueue<>(capacity, capacity))
+                    : new QueuedThreadPool(max, min, idle);
+            q.setName("http");
+            p = q;
+        }
+        pool = p;
+        EmbeddedServers.add(EmbeddedServers.defaultIdentifier(), new EmbeddedJettyFactory().withThreadPool(p));
+    }
+
+    public static Stats stats() {
+        Stats s = new Stats();
+        ThreadPool p = pool;
+        if (p == null) return s;
+        s.mode = p instanceof VirtualThreadPool ? "virtual" : "platform";
+        s.threads = p.getThreads();
+        s.idle = p.getIdleThreads();
+        s.lowOnThreads = p.isLowOnThreads();
+        if (p instanceof QueuedThreadPool) {
+            QueuedThreadPool q = (QueuedThreadPool) p;
+            s.maxThreads = q.getMaxThreads();
+            s.queued = q.getQueueSize();
+        }
+        return s;
+    }
+
+    public static class Stats {
+        public String mode;
+        public int threads;
+        public int idle;
+        public int maxThreads;
+        public int queued;
+        public boolean lowOnThreads;
+    }
+
+    /** {@code Thread.ofVirtual().name("http-v-", 0).factory()}, or null before JDK 21. */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, "http-v-", 0L);
+            return (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Jetty thread pool that starts a new virtual thread per task. It never runs out of threads,
+     * so it also tells Jetty that every {@code tryExecute} succeeds.
+     */
+    static final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool, TryExecutor {
+        private final ExecutorService executor;
+        private final AtomicInteger running = new AtomicInteger();
+
+        VirtualThreadPool(ThreadFactory factory) {
+            this.executor = newThreadPerTaskExecutor(factory);
+        }
+
+        private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+            try {
+                Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) m.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            executor.execute(() -> {
+                running.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public boolean tryExecute(Runnable task) {
+            execute(task);
+            return true;
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            while (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+                // keep waiting until the server stops
+            }
+        }
+
+        @Override
+        public int getThreads() {
+            return running.get();
+        }
+
+        @Override
+        public int getIdleThreads() {
+            return 0;
+        }
+
+        @Override
+        public boolean isLowOnThreads() {
+            return false;
+        }
+    }
+}
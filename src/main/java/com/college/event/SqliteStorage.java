@@ -0,0 +1,1171 @@
+package com.college.event;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The storage backend for a single node: a local SQLite file behind {@link ConnectionPool}.
+ * Seat counts and waitlists are held in memory and kept in step by this node's write paths, so
+ * they are only right while no other process writes the same file.
+ */
+final class SqliteStorage implements Storage {
+    private final String DB_FILE = Config.get("db.file", "registrations.db");
+    private final String JDBC_URL = "jdbc:sqlite:" + DB_FILE;
+
+    // Long-lived connections shared by every query; must be initialized before the initializer block below
+    private final ConnectionPool pool = openPool();
+
+    // Committed registrations are published here; write-behind recovery may publish during class init
+    private final RegistrationBus registrationBus = new RegistrationBus();
+
+    private ConnectionPool openPool() {
+        long t0 = System.nanoTime();
+        try {
+            ConnectionPool p = new ConnectionPool(JDBC_URL,
+                    Config.getInt("db.pool.readers", 4),
+                    Config.getLong("db.pool.checkoutTimeoutMs", 5000),
+                    Config.getInt("db.busyTimeoutMs", 5000),
+                    Config.get("db.journalMode", "WAL"),
+                    Config.get("db.synchronous", "FULL"));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "db-shutdown"));
+            Startup.phase("db.pool", t0);
+            return p;
+        } catch (SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private RegistrationJournal openJournal() {
+        long t0 = System.nanoTime();
+        Path dir = Paths.get(Config.get("journal.dir", "journal"));
+        if (Config.getBoolean("journal.replayOnStartup", true)) {
+            try (ConnectionPool.Lease c = pool.writer()) {
+                long start = System.nanoTime();
+                JournalReplay.Result r = JournalReplay.replay(dir, c.connection(), JournalReplay.readCheckpoint(c.connection()));
+                if (r.inserted + r.updated > 0) {
+                    System.out.printf("Replayed %d journaled registrations and %d status changes in %d ms%n",
+                            r.inserted, r.updated, (System.nanoTime() - start) / 1_000_000);
+                }
+            } catch (IOException | SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+        RegistrationJournal j;
+        try {
+            j = new RegistrationJournal(dir,
+                    Config.getInt("journal.bufferBytes", 1 << 20),
+                    Config.getLong("journal.segmentBytes", 64L << 20),
+                    RegistrationJournal.FsyncPolicy.valueOf(Config.get("journal.fsync", "INTERVAL").toUpperCase()),
+                    Config.getLong("journal.fsyncIntervalMs", 100),
+                    Config.getLong("journal.fsyncBytes", 1 << 20));
+        } catch (IOException ex) {
+            throw new ExceptionInInitializerError(ex);
+        } finally {
+            Startup.phase("db.journal", t0);
+        }
+        // the journal now continues where replay stopped, so the next boot can start from here
+        checkpoint(j);
+        long every = Config.getLong("journal.checkpointMs", 60000);
+        if (every > 0) {
+            Thread t = new Thread(() -> {
+                while (true) {
+                    try {
+                        Thread.sleep(every);
+                        checkpoint(j);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, "journal-checkpoint");
+            t.setDaemon(true);
+            t.start();
+        }
+        return j;
+    }
+
+    // Every record before the synced position was appended after its commit, so the database holds it
+    private void checkpoint(RegistrationJournal j) {
+        RegistrationJournal.Position p = j.syncedPosition();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            JournalReplay.writeCheckpoint(c.connection(), p);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        if (!Config.getBoolean("journal.pruneCheckpointed", false)) return;
+        try {
+            int n = j.deleteSegmentsBefore(p.segment);
+            if (n > 0) System.out.printf("Deleted %d checkpointed journal segments%n", n);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void shutdown() {
+        // drain queued registrations before the journal and connections go away
+        if (writeBehind != null) writeBehind.close();
+        writer.close();
+        journal.close();
+        checkpoint(journal);
+        pool.close();
+    }
+
+    @Override
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.stats();
+    }
+
+    @Override
+    public RegistrationWriter.Stats getWriterStats() {
+        return writer.stats();
+    }
+
+    @Override
+    public RegistrationJournal.Stats getJournalStats() {
+        return journal.stats();
+    }
+
+    @Override
+    public RegistrationBus getRegistrationBus() {
+        return registrationBus;
+    }
+
+    /** Write-behind buffer figures, or null when registrations are inserted synchronously. */
+    @Override
+    public WriteBehindBuffer.Stats getWriteBehindStats() {
+        return writeBehind == null ? null : writeBehind.stats();
+    }
+
+    /**
+     * Starts the integrity checks on a background thread, once; the schema itself is brought up to
+     * date when the class loads. The server calls this at startup; the Swing form does not, so it
+     * skips the checks.
+     */
+    @Override
+    public void initDatabase() {
+        if (!checkStarted.compareAndSet(false, true)) return;
+        Thread t = new Thread(() -> schemaCheck = SchemaMigrations.check(pool), "schema-check");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public Database.SchemaStats getSchemaStats() {
+        Database.SchemaStats s = new Database.SchemaStats();
+        s.version = schema == null ? -1 : schema.version;
+        s.fromVersion = schema == null ? -1 : schema.fromVersion;
+        s.applied = schema == null ? java.util.Collections.emptyList() : schema.applied;
+        s.check = schemaCheck;
+        return s;
+    }
+
+    private final java.util.concurrent.atomic.AtomicBoolean checkStarted = new java.util.concurrent.atomic.AtomicBoolean();
+    private volatile SchemaMigrations.Check schemaCheck;
+    private SchemaMigrations.Result schema;
+
+    // Pending schema migrations run before anything below reads a table; a current database costs one pragma read
+    {
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            schema = SchemaMigrations.migrate(c.connection());
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        Startup.phase("db.migrations", t0);
+    }
+
+    // Committed registrations are journaled by the writer thread; both need the schema above
+    private final RegistrationJournal journal = openJournal();
+
+    // Recent per-email lookups; entries are dropped when that email registers again, all of them when an event changes
+    private final EmailLookupCache emailLookups = new EmailLookupCache(Config.getInt("lookup.cacheSize", 10000));
+
+    // All registration inserts go through this single group-commit thread
+    private final RegistrationWriter writer = new RegistrationWriter(pool,
+            Config.getInt("db.writer.maxBatch", 256),
+            Config.getLong("db.writer.lingerMs", 2),
+            Config.getInt("db.writer.queueCapacity", 10000),
+            this::onRegistrationsCommitted);
+    private final long insertTimeoutMs = Config.getLong("db.writer.insertTimeoutMs", 10000);
+
+    // Runs after every commit of new registrations: on the writer thread, or on the importing thread for bulk imports
+    private void onRegistrationsCommitted(java.util.List<Registration> batch) {
+        journal.append(batch);
+        // null only while write-behind recovery runs during class init; those rows are loaded from the table instead
+        if (waitlist != null) {
+            for (Registration r : batch) {
+                if (Registration.WAITLISTED.equals(r.status) && r.eventId != null) {
+                    waitlist.add(r.eventId, r.id, r.tickets);
+                    // seats freed while this row waited to be committed went to nobody; hand them over now
+                    if (seats.remaining(r.eventId) != 0) schedulePromotion(r.eventId);
+                }
+            }
+        }
+        java.util.List<String> emails = new java.util.ArrayList<>(batch.size());
+        for (Registration r : batch) {
+            if (r.email != null) emails.add(Database.normalizeEmail(r.email));
+        }
+        emailLookups.invalidateAll(emails);
+        if (!pendingClaims.isEmpty()) {
+            for (Registration r : batch) releaseClaims(r, r.id);
+        }
+        registrationBus.publish(batch);
+    }
+
+    // Write-behind mode answers before the unique indexes have seen the row, so rows still waiting in
+    // the log hold claims on their idempotency key and (email, event); the value is the row's id
+    private final java.util.Map<String, Long> pendingClaims = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Optional write-behind buffer; it recovers rows left in its log, so it must open before the seat counts are read
+    private final WriteBehindBuffer writeBehind = openWriteBehind();
+
+    private WriteBehindBuffer openWriteBehind() {
+        if (!Config.getBoolean("writebehind.enabled", false)) return null;
+        long t0 = System.nanoTime();
+        try {
+            return new WriteBehindBuffer(Paths.get(Config.get("writebehind.dir", "writebehind")),
+                    Config.getInt("writebehind.segmentBytes", 64 << 20),
+                    Config.getInt("writebehind.maxPending", 50000),
+                    Config.getInt("writebehind.batchSize", 1000),
+                    Config.getLong("writebehind.forceIntervalMs", 100),
+                    this::insertRegistrationBatch,
+                    this::lastRegistrationId,
+                    this::onWriteBehindSkipped);
+        } catch (IOException | SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        } finally {
+            Startup.phase("db.writeBehind", t0);
+        }
+    }
+
+    // A logged row the database refused at flush time; the client was already told it was saved
+    private void onWriteBehindSkipped(Registration r) {
+        System.err.println("Write-behind registration of " + r.email + " for " + r.eventName + " conflicted with a saved row and was dropped");
+        // waitlisted rows never took seats, and are only queued once committed
+        if (r.eventId != null && r.isConfirmed()) seats.release(r.eventId, r.tickets);
+        for (String claim : claims(r)) pendingClaims.remove(claim);
+    }
+
+    private java.util.List<String> claims(Registration r) {
+        java.util.List<String> keys = new java.util.ArrayList<>(2);
+        if (r.idempotencyKey != null) keys.add("key:" + r.idempotencyKey);
+        if (r.email != null && r.eventId != null) keys.add("email:" + r.eventId + ':' + Database.normalizeEmail(r.email));
+        return keys;
+    }
+
+    private void releaseClaims(Registration r, Integer id) {
+        if (id == null) return;
+        for (String claim : claims(r)) pendingClaims.remove(claim, id.longValue());
+    }
+
+    // Per-event seat counters, seeded once from the registrations table
+    private final SeatAllocator seats = loadSeats();
+
+    private SeatAllocator loadSeats() {
+        long t0 = System.nanoTime();
+        SeatAllocator a = new SeatAllocator();
+        // one range scan of idx_registrations_event per event
+        String sql = "SELECT e.id, e.capacity, COALESCE(SUM(r.tickets), 0) AS sold FROM events e " +
+                "LEFT JOIN registrations r ON r.event_id = e.id AND r.status = 'confirmed' GROUP BY e.id";
+        try (ConnectionPool.Lease c = pool.reader();
+             ResultSet rs = c.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                int cap = rs.getInt("capacity");
+                a.setCapacity(id, rs.wasNull() ? null : cap);
+                a.setSold(id, rs.getInt("sold"));
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        Startup.phase("db.seats", t0);
+        return a;
+    }
+
+    // Waitlisted registrations per event, in commit order; loaded after the seat counts
+    private final Waitlist waitlist = loadWaitlist();
+    private final int PROMOTION_BATCH = Math.max(1, Config.getInt("waitlist.promotionBatch", 1000));
+    // promotions nobody is waiting on (capacity raised, a waitlisted row committed while seats were free) run here
+    private final java.util.concurrent.ExecutorService promoter = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-promoter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Waitlist loadWaitlist() {
+        long t0 = System.nanoTime();
+        Waitlist w = new Waitlist();
+        String sql = "SELECT id, event_id, tickets FROM registrations WHERE status = 'waitlisted' " +
+                "AND event_id IN (SELECT id FROM events) ORDER BY event_id, id";
+        try (ConnectionPool.Lease c = pool.reader();
+             ResultSet rs = c.prepare(sql).executeQuery()) {
+            while (rs.next()) w.add(rs.getInt("event_id"), rs.getInt("id"), rs.getInt("tickets"));
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        Startup.phase("db.waitlist", t0);
+        return w;
+    }
+
+    /** Registrations waiting for a seat at the event. */
+    @Override
+    public int getWaitlistSize(int eventId) {
+        return waitlist.size(eventId);
+    }
+
+    /** 1-based waitlist place of a registration, or 0 if it is not waiting. */
+    @Override
+    public int getWaitlistPosition(int eventId, int registrationId) {
+        return waitlist.position(eventId, registrationId);
+    }
+
+    @Override
+    public Waitlist.Stats getWaitlistStats() {
+        return waitlist.stats();
+    }
+
+    /**
+     * Cancels a registration. With {@code cancelToken} set, it must hash to the one stored with the
+     * registration (a student cancelling their own; rows without one are NOT_FOUND); null skips the
+     * check (an admin). Seats a confirmed registration held go to the head of the event's waitlist
+     * in the same transaction, and only what nobody waiting can use is returned to the pool, so a
+     * new registrant can never take a seat ahead of the waitlist.
+     */
+    @Override
+    public CancelResult cancelRegistration(int id, String cancelToken) {
+        Registration r = getRegistration(id);
+        if (r == null || (cancelToken != null && !PasswordHash.matchesToken(cancelToken, cancelTokenHash(id)))) {
+            return new CancelResult(CancelResult.Status.NOT_FOUND, 0);
+        }
+        if (Registration.CANCELLED.equals(r.status)) return new CancelResult(CancelResult.Status.ALREADY_CANCELLED, 0);
+        return settle(r.eventId, r);
+    }
+
+    /** Promotes from the head of the event's waitlist as far as the free seats go; returns how many. */
+    @Override
+    public int promoteWaitlist(int eventId) {
+        CancelResult result = settle(eventId, null);
+        return result.promoted;
+    }
+
+    private void schedulePromotion(int eventId) {
+        try {
+            promoter.execute(() -> promoteWaitlist(eventId));
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {
+            // shutting down; the next start promotes from the table
+        }
+    }
+
+    // Cancels {@code cancel} (if given) and promotes waitlisted registrations into the seats that frees or that are
+    // already free, all in one transaction. Runs under the event's waitlist lock, so promotions of one event never overlap.
+    private CancelResult settle(Integer eventId, Registration cancel) {
+        Waitlist.Queue q = eventId == null ? null : waitlist.of(eventId);
+        // seats the cancelled registration held, not yet handed to anyone
+        int credit = cancel != null && eventId != null && cancel.isConfirmed() ? cancel.tickets : 0;
+        int fromPool = 0;
+        java.util.List<int[]> promoted = new java.util.ArrayList<>();
+        java.util.List<Registration> changed = new java.util.ArrayList<>();
+        long t0 = System.nanoTime();
+        synchronized (q != null ? q : new Object()) {
+            // cancelling a waitlisted registration frees no seats, so nobody moves up
+            if (q != null && (cancel == null || cancel.isConfirmed())) {
+                for (int[] e : q.peek(PROMOTION_BATCH)) {
+                    int need = Math.max(0, e[1] - credit);
+                    if (need > 0 && !seats.tryReserve(eventId, need)) break;
+                    credit = Math.max(0, credit - e[1]);
+                    fromPool += need;
+                    promoted.add(e);
+                }
+            }
+            if (cancel == null && promoted.isEmpty()) return new CancelResult(CancelResult.Status.CANCELLED, 0);
+            try (ConnectionPool.Lease c = pool.writer()) {
+                Connection conn = c.connection();
+                conn.setAutoCommit(false);
+                try {
+                    if (cancel != null) {
+                        PreparedStatement p = c.prepare("UPDATE registrations SET status = 'cancelled' WHERE id = ? AND status = ?");
+                        p.setInt(1, cancel.id);
+                        p.setString(2, cancel.status == null ? Registration.CONFIRMED : cancel.status);
+                        if (p.executeUpdate() == 0) {
+                            // changed since it was read: cancelled or promoted by someone else
+                            conn.rollback();
+                            if (fromPool > 0) seats.release(eventId, fromPool);
+                            return new CancelResult(CancelResult.Status.ALREADY_CANCELLED, 0);
+                        }
+                    }
+                    if (!promoted.isEmpty()) {
+                        PreparedStatement up = c.prepare("UPDATE registrations SET status = 'confirmed' WHERE id = ? AND status = 'waitlisted'");
+                        for (int[] e : promoted) {
+                            up.setInt(1, e[0]);
+                            up.addBatch();
+                        }
+                        up.executeBatch();
+                        changed.addAll(readRegistrations(c, promoted));
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                Metrics.queryFailed("settle_waitlist");
+                ex.printStackTrace();
+                if (fromPool > 0) seats.release(eventId, fromPool);
+                return new CancelResult(CancelResult.Status.FAILED, 0);
+            } finally {
+                Metrics.recordQuery("settle_waitlist", t0);
+            }
+            if (q != null) {
+                q.removeHead(promoted);
+                if (cancel != null && Registration.WAITLISTED.equals(cancel.status)) q.remove(cancel.id);
+            }
+            if (credit > 0) seats.release(eventId, credit);
+        }
+        if (cancel != null) {
+            cancel.previousStatus = cancel.status == null ? Registration.CONFIRMED : cancel.status;
+            cancel.status = Registration.CANCELLED;
+            changed.add(0, cancel);
+        }
+        for (Registration r : changed) {
+            if (r.previousStatus == null) r.previousStatus = Registration.WAITLISTED;
+        }
+        waitlist.recorded(cancel != null, promoted.size());
+        journal.append(changed);
+        onStatusChanged(changed);
+        // the batch was capped; whoever is next may fit too
+        if (promoted.size() == PROMOTION_BATCH) schedulePromotion(eventId);
+        return new CancelResult(CancelResult.Status.CANCELLED, promoted.size());
+    }
+
+    // promoted rows as they are now, for the status-change listeners; ids are bound in chunks to stay under SQLite's variable limit
+    private java.util.List<Registration> readRegistrations(ConnectionPool.Lease c, java.util.List<int[]> ids) throws SQLException {
+        java.util.List<Registration> out = new java.util.ArrayList<>(ids.size());
+        EventCache.Snapshot names = events.get();
+        for (int from = 0; from < ids.size(); from += 500) {
+            int to = Math.min(ids.size(), from + 500);
+            StringBuilder sql = new StringBuilder("SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations WHERE id IN (");
+            for (int i = from; i < to; i++) sql.append(i == from ? "?" : ",?");
+            sql.append(") ORDER BY id");
+            try (PreparedStatement p = c.connection().prepareStatement(sql.toString())) {
+                for (int i = from; i < to; i++) p.setInt(i - from + 1, ids.get(i)[0]);
+                try (ResultSet rs = p.executeQuery()) {
+                    while (rs.next()) out.add(Database.readRegistration(rs, names));
+                }
+            }
+        }
+        return out;
+    }
+
+    // Caches and listeners learn about cancellations and promotions here; settle has journaled them already
+    private void onStatusChanged(java.util.List<Registration> changed) {
+        if (changed.isEmpty()) return;
+        java.util.List<String> emails = new java.util.ArrayList<>(changed.size());
+        for (Registration r : changed) {
+            if (r.email != null) emails.add(Database.normalizeEmail(r.email));
+        }
+        emailLookups.invalidateAll(emails);
+        registrationBus.publish(changed);
+    }
+
+    /** Reserves seats for a registration about to be inserted; false means the event is sold out. */
+    @Override
+    public boolean reserveSeats(int eventId, int tickets) {
+        return seats.tryReserve(eventId, tickets);
+    }
+
+    /** Returns seats taken by {@link #reserveSeats} when the registration could not be saved. */
+    @Override
+    public void releaseSeats(int eventId, int tickets) {
+        seats.release(eventId, tickets);
+    }
+
+    @Override
+    public SeatAllocator.Availability getSeatAvailability(int eventId) {
+        SeatAllocator.Availability a = seats.availability(eventId);
+        a.waitlisted = waitlist.size(eventId);
+        return a;
+    }
+
+    /**
+     * Inserts a registration through the group-commit writer. The unique indexes turn a reused
+     * idempotency key into {@code DUPLICATE_KEY} (with the id of the row that already has it) and a
+     * repeated email for the same event into {@code DUPLICATE_EMAIL}; neither writes anything.
+     * In write-behind mode the row is only logged, and the same rules are checked up front.
+     */
+    @Override
+    public InsertResult insertRegistration(Registration r) {
+        if (writeBehind != null) return insertWriteBehind(r);
+        long t0 = System.nanoTime();
+        try {
+            // blocks until the writer thread has committed the batch containing this row, or gives up on it
+            return new InsertResult(InsertResult.Status.INSERTED, writer.insert(r, insertTimeoutMs));
+        } catch (java.util.concurrent.TimeoutException e) {
+            return new InsertResult(InsertResult.Status.BUSY, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new InsertResult(InsertResult.Status.FAILED, -1);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof java.util.concurrent.RejectedExecutionException) {
+                return new InsertResult(InsertResult.Status.BUSY, -1);
+            }
+            String message = e.getCause().getMessage();
+            if (e.getCause() instanceof SQLException && message != null && message.contains("UNIQUE")) {
+                // a replayed request can trip the email rule before the key's, so look for the key either way
+                long existing = r.idempotencyKey == null ? -1 : findRegistrationIdByIdempotencyKey(r.idempotencyKey);
+                if (existing > 0) return new InsertResult(InsertResult.Status.DUPLICATE_KEY, existing);
+                if (message.contains("idx_registrations_email_event")) {
+                    return new InsertResult(InsertResult.Status.DUPLICATE_EMAIL, -1);
+                }
+            }
+            Metrics.queryFailed("insert_registration");
+            e.getCause().printStackTrace();
+            return new InsertResult(InsertResult.Status.FAILED, -1);
+        } finally {
+            Metrics.recordQuery("insert_registration", t0);
+        }
+    }
+
+    private InsertResult insertWriteBehind(Registration r) {
+        long t0 = System.nanoTime();
+        java.util.List<String> claimed = new java.util.ArrayList<>(2);
+        try {
+            for (String claim : claims(r)) {
+                Long holder = pendingClaims.putIfAbsent(claim, 0L);
+                boolean isKey = claim.startsWith("key:");
+                if (holder != null) {
+                    // 0 means the holder is still being logged; the client's retry will find its id
+                    if (!isKey) return new InsertResult(InsertResult.Status.DUPLICATE_EMAIL, -1);
+                    return holder > 0 ? new InsertResult(InsertResult.Status.DUPLICATE_KEY, holder) : new InsertResult(InsertResult.Status.BUSY, -1);
+                }
+                claimed.add(claim);
+                if (isKey) {
+                    long existing = findRegistrationIdByIdempotencyKey(r.idempotencyKey);
+                    if (existing > 0) return new InsertResult(InsertResult.Status.DUPLICATE_KEY, existing);
+                } else if (registrationExists(r.email, r.eventId)) {
+                    return new InsertResult(InsertResult.Status.DUPLICATE_EMAIL, -1);
+                }
+            }
+            long id = writeBehind.append(r, assigned -> {
+                for (String claim : claimed) pendingClaims.put(claim, assigned);
+            });
+            if (id < 0) return new InsertResult(InsertResult.Status.BUSY, -1);
+            claimed.clear();
+            return new InsertResult(InsertResult.Status.INSERTED, id);
+        } catch (IOException | RuntimeException ex) {
+            Metrics.queryFailed("insert_registration");
+            ex.printStackTrace();
+            return new InsertResult(InsertResult.Status.FAILED, -1);
+        } finally {
+            for (String claim : claimed) pendingClaims.remove(claim, 0L);
+            Metrics.recordQuery("insert_registration", t0);
+        }
+    }
+
+    private boolean registrationExists(String email, int eventId) {
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare("SELECT 1 FROM registrations WHERE lower(trim(email)) = ? AND event_id = ? AND status <> 'cancelled' LIMIT 1");
+            p.setString(1, Database.normalizeEmail(email));
+            p.setInt(2, eventId);
+            try (ResultSet rs = p.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("registration_exists");
+            ex.printStackTrace();
+            return false;
+        } finally {
+            Metrics.recordQuery("registration_exists", t0);
+        }
+    }
+
+    // Highest id handed out so far, counting deleted rows the way AUTOINCREMENT does
+    private long lastRegistrationId() {
+        try (ConnectionPool.Lease c = pool.writer()) {
+            return lastRegistrationId(c);
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private long lastRegistrationId(ConnectionPool.Lease c) throws SQLException {
+        try (ResultSet rs = c.prepare("SELECT MAX(COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'registrations'), 0), COALESCE((SELECT MAX(id) FROM registrations), 0))").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Inserts already-validated rows in one transaction on the writer connection, bypassing the
+     * group-commit queue. Rows without an id get one up front so the batch needs no generated-key
+     * round trips. A row that breaks a unique rule is skipped: its {@code id} is set to null.
+     * Committed rows are journaled like any other registration. Returns the number inserted.
+     */
+    @Override
+    public int insertRegistrationBatch(java.util.List<Registration> rows) throws SQLException {
+        if (rows.isEmpty()) return 0;
+        String sql = "INSERT OR IGNORE INTO registrations(id, student_name, event_name, tickets, email, phone, created_at, event_id, idempotency_key, status, cancel_token) VALUES(?,?,?,?,?,?,?,?,?,?,?)";
+        java.util.List<Registration> inserted = new java.util.ArrayList<>(rows.size());
+        boolean[] assigned = new boolean[rows.size()];
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            Connection conn = c.connection();
+            conn.setAutoCommit(false);
+            try {
+                // with write-behind on, ids come from its counter: rows still in its log already hold the next ones
+                long next = writeBehind == null ? lastRegistrationId(c) + 1 : 0;
+                String now = RegistrationWriter.timestamp();
+                PreparedStatement ps = c.prepare(sql);
+                for (int i = 0; i < rows.size(); i++) {
+                    Registration r = rows.get(i);
+                    if (r.id == null) {
+                        r.id = (int) (writeBehind == null ? next++ : writeBehind.nextId());
+                        assigned[i] = true;
+                    }
+                    if (r.createdAt == null) r.createdAt = now;
+                    ps.setInt(1, r.id);
+                    ps.setString(2, r.studentName);
+                    ps.setString(3, Database.storedEventName(r));
+                    ps.setInt(4, r.tickets);
+                    ps.setString(5, r.email);
+                    ps.setString(6, r.phone);
+                    ps.setString(7, r.createdAt);
+                    ps.setObject(8, r.eventId);
+                    ps.setString(9, r.idempotencyKey);
+                    ps.setString(10, Database.storedStatus(r));
+                    ps.setString(11, r.cancelTokenHash);
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                conn.commit();
+                for (int i = 0; i < rows.size(); i++) {
+                    if (counts[i] > 0) inserted.add(rows.get(i));
+                    else rows.get(i).id = null;
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                for (int i = 0; i < rows.size(); i++) {
+                    if (assigned[i]) rows.get(i).id = null;
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("insert_registration_batch");
+            throw ex;
+        } finally {
+            Metrics.recordQuery("insert_registration_batch", t0);
+        }
+        if (!inserted.isEmpty()) onRegistrationsCommitted(inserted);
+        return inserted.size();
+    }
+
+    private String cancelTokenHash(int id) {
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare("SELECT cancel_token FROM registrations WHERE id = ?");
+            p.setInt(1, id);
+            try (ResultSet rs = p.executeQuery()) {
+                if (rs.next()) return rs.getString(1);
+            }
+        } catch (SQLException ex) { ex.printStackTrace(); }
+        return null;
+    }
+
+    @Override
+    public long findRegistrationIdByIdempotencyKey(String key) {
+        // a write-behind row is answered with its id before it reaches the table
+        Long pending = pendingClaims.get("key:" + key);
+        if (pending != null && pending > 0) return pending;
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare("SELECT id FROM registrations WHERE idempotency_key = ?");
+            p.setString(1, key);
+            try (ResultSet rs = p.executeQuery()) {
+                if (rs.next()) return rs.getLong(1);
+            }
+        } catch (SQLException ex) { ex.printStackTrace(); }
+        return -1;
+    }
+
+    @Override
+    public String getLocation() {
+        try {
+            return Paths.get(new File(DB_FILE).getAbsolutePath()).toString();
+        } catch (Exception e) {
+            return DB_FILE;
+        }
+    }
+
+    @Override
+    public String getJournalPath() {
+        return journal.currentSegment().toAbsolutePath().toString();
+    }
+
+    // Fetch recent registrations
+    @Override
+    public java.util.List<Registration> getRecentRegistrations(int limit) {
+        java.util.List<Registration> list = new java.util.ArrayList<>();
+        String sql = "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC LIMIT ?";
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement pstmt = c.prepare(sql);
+            pstmt.setInt(1, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(Database.readRegistration(rs, names));
+                }
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("recent_registrations");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("recent_registrations", t0);
+        }
+        return list;
+    }
+
+    /**
+     * Keyset-paginated registrations, newest first. {@code after} is the opaque cursor from the
+     * previous page (null for the first page); each page is one index range scan however deep it is.
+     */
+    @Override
+    public Page<Registration> getRegistrationsPage(String after, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, 500));
+        String[] cursor = after == null || after.isEmpty() ? null : Database.decodeCursor(after);
+        java.util.List<Registration> list = new java.util.ArrayList<>();
+        long t0 = System.nanoTime();
+        try {
+            list = registrationsAfter(cursor, size + 1, events.get());
+        } catch (SQLException ex) {
+            Metrics.queryFailed("registrations_page");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("registrations_page", t0);
+        }
+        String next = null;
+        if (list.size() > size) {
+            list.remove(size);
+            Registration last = list.get(size - 1);
+            next = Database.encodeCursor(last.createdAt, last.id);
+        }
+        return new Page<>(list, next);
+    }
+
+    // Up to limit registrations, newest first, after the (created_at, id) cursor or from the top when it is null
+    private java.util.List<Registration> registrationsAfter(String[] cursor, int limit, EventCache.Snapshot names) throws SQLException {
+        String sql = cursor == null
+                ? "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC LIMIT ?"
+                : "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations WHERE (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?";
+        java.util.List<Registration> list = new java.util.ArrayList<>(limit);
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare(sql);
+            int i = 1;
+            if (cursor != null) {
+                p.setString(i++, cursor[0]);
+                p.setLong(i++, Long.parseLong(cursor[1]));
+            }
+            p.setInt(i, limit);
+            try (ResultSet rs = p.executeQuery()) {
+                while (rs.next()) {
+                    list.add(Database.readRegistration(rs, names));
+                }
+            }
+        }
+        return list;
+    }
+
+    // Events CRUD
+    @Override
+    public int createEvent(Event e) {
+        String sql = "INSERT INTO events(title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner,capacity) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            PreparedStatement pstmt = c.prepare(sql, Statement.RETURN_GENERATED_KEYS);
+            pstmt.setString(1, e.title);
+            pstmt.setString(2, e.type);
+            pstmt.setString(3, e.startDatetime);
+            pstmt.setString(4, e.endDatetime);
+            pstmt.setString(5, e.venue);
+            pstmt.setString(6, e.description);
+            pstmt.setString(7, e.rules);
+            pstmt.setString(8, e.coordinators);
+            pstmt.setString(9, e.prizes);
+            pstmt.setString(10, e.fee);
+            pstmt.setString(11, e.banner);
+            pstmt.setObject(12, e.capacity);
+            pstmt.executeUpdate();
+            events.invalidate();
+            emailLookups.clear();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    seats.setCapacity(id, e.capacity);
+                    search.put(id, e);
+                    return id;
+                }
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("create_event");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("create_event", t0);
+        }
+        return -1;
+    }
+
+    // Events are served from memory; createEvent/updateEvent/deleteEvent invalidate after they commit
+    private final EventCache events = new EventCache(this::loadAllEvents);
+
+    // Full-text index over the events, kept in step by the same write paths
+    private final EventSearch search = new EventSearch(() -> events.get().events);
+
+    @Override
+    public EventCache.Stats getEventCacheStats() {
+        return events.stats();
+    }
+
+    /** Events matching every word of {@code query} as a prefix; see {@link EventSearch#search}. */
+    @Override
+    public EventSearch.Result searchEvents(String query, String type, String from, String to, int limit) {
+        return search.search(query, type, from, to, limit, events.get());
+    }
+
+    @Override
+    public EventSearch.Stats getEventSearchStats() {
+        return search.stats();
+    }
+
+    @Override
+    public java.util.List<Event> getAllEvents() {
+        return events.get().events;
+    }
+
+    @Override
+    public Event getEventById(int id) {
+        return events.get().byId.get(id);
+    }
+
+    /** Current event snapshot, including the pre-rendered JSON the events endpoints serve. */
+    @Override
+    public EventCache.Snapshot getEventSnapshot() {
+        return events.get();
+    }
+
+    private java.util.List<Event> loadAllEvents() throws SQLException {
+        java.util.List<Event> list = new java.util.ArrayList<>();
+        String sql = "SELECT id,title,type,start_datetime,end_datetime,venue,description,rules,coordinators,prizes,fee,banner,capacity FROM events ORDER BY start_datetime ASC";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader();
+             ResultSet rs = c.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                Event ev = new Event(
+                        rs.getInt("id"), rs.getString("title"), rs.getString("type"), rs.getString("start_datetime"), rs.getString("end_datetime"),
+                        rs.getString("venue"), rs.getString("description"), rs.getString("rules"), rs.getString("coordinators"), rs.getString("prizes"), rs.getString("fee"), rs.getString("banner")
+                );
+                int cap = rs.getInt("capacity");
+                ev.capacity = rs.wasNull() ? null : cap;
+                list.add(ev);
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("load_events");
+            throw ex;
+        } finally {
+            Metrics.recordQuery("load_events", t0);
+        }
+        return list;
+    }
+
+    @Override
+    public boolean updateEvent(Event e) {
+        String sql = "UPDATE events SET title=?,type=?,start_datetime=?,end_datetime=?,venue=?,description=?,rules=?,coordinators=?,prizes=?,fee=?,banner=?,capacity=? WHERE id=?";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            PreparedStatement pstmt = c.prepare(sql);
+            pstmt.setString(1, e.title);
+            pstmt.setString(2, e.type);
+            pstmt.setString(3, e.startDatetime);
+            pstmt.setString(4, e.endDatetime);
+            pstmt.setString(5, e.venue);
+            pstmt.setString(6, e.description);
+            pstmt.setString(7, e.rules);
+            pstmt.setString(8, e.coordinators);
+            pstmt.setString(9, e.prizes);
+            pstmt.setString(10, e.fee);
+            pstmt.setString(11, e.banner);
+            pstmt.setObject(12, e.capacity);
+            pstmt.setInt(13, e.id);
+            boolean updated = pstmt.executeUpdate() > 0;
+            events.invalidate();
+            // cached lookups carry the event's old title
+            emailLookups.clear();
+            if (updated) {
+                seats.setCapacity(e.id, e.capacity);
+                search.put(e.id, e);
+                // a larger capacity may have room for people on the waitlist
+                if (waitlist.size(e.id) > 0) schedulePromotion(e.id);
+            }
+            return updated;
+        } catch (SQLException ex) {
+            Metrics.queryFailed("update_event");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("update_event", t0);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean deleteEvent(int id) {
+        String sql = "DELETE FROM events WHERE id = ?";
+        // registrations of the event outlive it, so they get its title back before the event row goes
+        String keepTitles = "UPDATE registrations SET event_name = (SELECT title FROM events WHERE id = ?) WHERE event_id = ? AND event_name IS NULL";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            Connection conn = c.connection();
+            boolean deleted;
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement keep = c.prepare(keepTitles);
+                keep.setInt(1, id);
+                keep.setInt(2, id);
+                keep.executeUpdate();
+                PreparedStatement pstmt = c.prepare(sql);
+                pstmt.setInt(1, id);
+                deleted = pstmt.executeUpdate() > 0;
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            events.invalidate();
+            emailLookups.clear();
+            if (deleted) {
+                seats.remove(id);
+                waitlist.removeEvent(id);
+                search.remove(id);
+            }
+            return deleted;
+        } catch (SQLException ex) {
+            Metrics.queryFailed("delete_event");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("delete_event", t0);
+        }
+        return false;
+    }
+
+    // Admin user
+    /** The stored password hash of an admin user, or null if there is no such admin. */
+    @Override
+    public String getAdminPasswordHash(String username) {
+        String sql = "SELECT password FROM users WHERE username = ? AND role='admin' LIMIT 1";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare(sql);
+            p.setString(1, username);
+            try (ResultSet rs = p.executeQuery()) {
+                return rs.next() ? rs.getString("password") : null;
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("admin_credentials");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("admin_credentials", t0);
+        }
+        return null;
+    }
+
+    /** Replaces a user's stored hash; with {@code expected} set, only if the stored value is still that. */
+    @Override
+    public boolean updatePasswordHash(String username, String hash, String expected) {
+        String sql = expected == null
+                ? "UPDATE users SET password = ? WHERE username = ?"
+                : "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.writer()) {
+            PreparedStatement p = c.prepare(sql);
+            p.setString(1, hash);
+            p.setString(2, username);
+            if (expected != null) p.setString(3, expected);
+            return p.executeUpdate() > 0;
+        } catch (SQLException ex) {
+            Metrics.queryFailed("update_password");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("update_password", t0);
+        }
+        return false;
+    }
+
+    // Registration queries for admin/student
+    @Override
+    public java.util.List<Registration> getRegistrationsForEvent(int eventId) {
+        java.util.List<Registration> list = new java.util.ArrayList<>();
+        String sql = "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations WHERE event_id = ? ORDER BY created_at DESC, id DESC";
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare(sql);
+            p.setInt(1, eventId);
+            try (ResultSet rs = p.executeQuery()) {
+                while (rs.next()) {
+                    list.add(Database.readRegistration(rs, names));
+                }
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("registrations_for_event");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("registrations_for_event", t0);
+        }
+        return list;
+    }
+
+    /** Registrations for an email, compared case-insensitively; served from an LRU when possible. */
+    @Override
+    public java.util.List<Registration> getRegistrationsForEmail(String email) {
+        String key = Database.normalizeEmail(email);
+        java.util.List<Registration> cached = emailLookups.get(key);
+        if (cached != null) return cached;
+        Object token = emailLookups.begin(key);
+        java.util.List<Registration> list = new java.util.ArrayList<>();
+        String sql = "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations WHERE lower(trim(email)) = ? ORDER BY created_at DESC, id DESC";
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare(sql);
+            p.setString(1, key);
+            try (ResultSet rs = p.executeQuery()) {
+                while (rs.next()) {
+                    list.add(Database.readRegistration(rs, names));
+                }
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("registrations_for_email");
+            ex.printStackTrace();
+            return list;
+        } finally {
+            Metrics.recordQuery("registrations_for_email", t0);
+        }
+        list = java.util.Collections.unmodifiableList(list);
+        emailLookups.install(key, token, list);
+        return list;
+    }
+
+    @Override
+    public EmailLookupCache.Stats getEmailLookupStats() {
+        return emailLookups.stats();
+    }
+
+    /**
+     * Feeds every registration, newest first, to the sink one row at a time. Rows are read in
+     * keyset pages of {@code export.fetchSize}, each on a reader lease that is returned before the
+     * page goes to the sink, so a slow client neither keeps a pooled reader nor holds a read
+     * transaction open (which would stop WAL checkpoints) for the whole download.
+     */
+    @Override
+    public void streamRegistrations(RegistrationSink sink) throws SQLException, java.io.IOException {
+        int size = Math.max(1, Config.getInt("export.fetchSize", 500));
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try {
+            String[] cursor = null;
+            while (true) {
+                java.util.List<Registration> page = registrationsAfter(cursor, size, names);
+                for (Registration r : page) sink.accept(r);
+                if (page.size() < size) break;
+                Registration last = page.get(size - 1);
+                cursor = new String[]{last.createdAt, String.valueOf(last.id)};
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("stream_registrations");
+            throw ex;
+        } finally {
+            // includes the time spent writing rows to the sink
+            Metrics.recordQuery("stream_registrations", t0);
+        }
+    }
+
+    /**
+     * Feeds every registration to the sink in table order, without sorting or collecting them;
+     * only the columns aggregates need (id, event, tickets, email, created_at, status) are filled in.
+     */
+    @Override
+    public void scanRegistrations(RegistrationSink sink) throws SQLException, java.io.IOException {
+        String sql = "SELECT id, event_id, event_name, tickets, email, created_at, status FROM registrations";
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare(sql);
+            p.setFetchSize(Config.getInt("export.fetchSize", 500));
+            try (ResultSet rs = p.executeQuery()) {
+                while (rs.next()) {
+                    Registration r = new Registration(rs.getInt("id"), null, rs.getString("event_name"), rs.getInt("tickets"), rs.getString("email"), null, rs.getString("created_at"));
+                    r.status = rs.getString("status");
+                    int eventId = rs.getInt("event_id");
+                    if (!rs.wasNull()) {
+                        r.eventId = eventId;
+                        Event ev = names.byId.get(eventId);
+                        if (r.eventName == null && ev != null) r.eventName = ev.title;
+                    }
+                    sink.accept(r);
+                }
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("scan_registrations");
+            throw ex;
+        } finally {
+            Metrics.recordQuery("scan_registrations", t0);
+        }
+    }
+
+    /** One registration by id, or null. */
+    @Override
+    public Registration getRegistration(int id) {
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader()) {
+            PreparedStatement p = c.prepare("SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations WHERE id = ?");
+            p.setInt(1, id);
+            try (ResultSet rs = p.executeQuery()) {
+                return rs.next() ? Database.readRegistration(rs, names) : null;
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("registration_by_id");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("registration_by_id", t0);
+        }
+        return null;
+    }
+
+    @Override
+    public java.util.List<Registration> getAllRegistrations() {
+        java.util.List<Registration> list = new java.util.ArrayList<>();
+        String sql = "SELECT " + Database.REGISTRATION_COLUMNS + " FROM registrations ORDER BY created_at DESC, id DESC";
+        EventCache.Snapshot names = events.get();
+        long t0 = System.nanoTime();
+        try (ConnectionPool.Lease c = pool.reader();
+             ResultSet rs = c.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                list.add(Database.readRegistration(rs, names));
+            }
+        } catch (SQLException ex) {
+            Metrics.queryFailed("all_registrations");
+            ex.printStackTrace();
+        } finally {
+            Metrics.recordQuery("all_registrations", t0);
+        }
+        return list;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.college.event;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Startup phase timings, and the gate {@code /api/*} requests wait at until the server is ready.
+ * Each phase is recorded once with its duration; {@link #ready} prints them on one line together
+ * with the time since the JVM started, and the first request served afterwards records the cold
+ * start as a client sees it. All of it is under {@code startup} in {@code /api/health}.
+ */
+public final class Startup {
+    // recorded by the JVM itself; the OS process start time is only as precise as the boot time (seconds on Linux)
+    private static final long jvmStartMs = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static final CountDownLatch ready = new CountDownLatch(1);
+    private static volatile long readyMs = -1;
+    private static final AtomicLong firstRequestMs = new AtomicLong(-1);
+
+    private Startup() {}
+
+    /** Records a phase that began at {@code startNanos} and ends now; returns its length in ms. */
+    public static long phase(String name, long startNanos) {
+        long ms = (System.nanoTime() - startNanos) / 1_000_000;
+        synchronized (phases) {
+            phases.put(name, ms);
+        }
+        return ms;
+    }
+
+    /** Opens the gate and prints the phase timings. */
+    public static void ready() {
+        readyMs = System.currentTimeMillis() - jvmStartMs;
+        StringBuilder sb = new StringBuilder("Ready ").append(readyMs).append(" ms after JVM start");
+        synchronized (phases) {
+            String sep = " (";
+            for (Map.Entry<String, Long> p : phases.entrySet()) {
+                sb.append(sep).append(p.getKey()).append(' ').append(p.getValue()).append(" ms");
+                sep = ", ";
+            }
+            if (!phases.isEmpty()) sb.append(')');
+        }
+        System.out.println(sb);
+        ready.countDown();
+    }
+
+    /** Blocks a request that arrives before {@link #ready}. */
+    public static void awaitReady() throws InterruptedException {
+        ready.await();
+    }
+
+    /** Call once a request has been answered; only the first one is recorded. */
+    public static void requestServed() {
+        if (firstRequestMs.get() < 0 && readyMs >= 0) {
+            firstRequestMs.compareAndSet(-1, System.currentTimeMillis() - jvmStartMs);
+        }
+    }
+
+    public static Stats stats() {
+        Stats s = new Stats();
+        s.readyMs = readyMs;
+        s.firstRequestMs = firstRequestMs.get();
+        s.phases = new ArrayList<>();
+        synchronized (phases) {
+            for (Map.Entry<String, Long> p : phases.entrySet()) {
+                Phase ph = new Phase();
+                ph.name = p.getKey();
+                ph.ms = p.getValue();
+                s.phases.add(ph);
+            }
+        }
+        return s;
+    }
+
+    public static class Stats {
+        public long readyMs;
+        public long firstRequestMs;
+        public List<Phase> phases;
+    }
+
+    public static class Phase {
+        public String name;
+        public long ms;
+    }
+}
@@ -0,0 +1,35 @@
+package com.college.event;
+
+/**
+ * A storage backend: events, registrations and users together, plus what the health and metrics
+ * endpoints report about it. {@link Database} opens one, chosen by {@code storage.backend}, and
+ * forwards its static methods to it. Figures a backend does not have are null.
+ */
+public interface Storage extends EventStore, RegistrationStore, UserStore {
+    /** Starts background integrity checks, once. The server calls this at startup; the Swing form does not. */
+    void initDatabase();
+
+    /** Where the data lives: a file path or a JDBC URL without credentials. */
+    String getLocation();
+
+    /** The journal segment committed registrations are appended to, or null without a local journal. */
+    String getJournalPath();
+
+    RegistrationJournal.Stats getJournalStats();
+
+    ConnectionPool.Stats getPoolStats();
+
+    RegistrationWriter.Stats getWriterStats();
+
+    WriteBehindBuffer.Stats getWriteBehindStats();
+
+    Database.SchemaStats getSchemaStats();
+
+    EventCache.Stats getEventCacheStats();
+
+    EventSearch.Stats getEventSearchStats();
+
+    EmailLookupCache.Stats getEmailLookupStats();
+
+    Waitlist.Stats getWaitlistStats();
+}
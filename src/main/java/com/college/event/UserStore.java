@@ -0,0 +1,31 @@
+package com.college.event;
+
+/**
+ * Admin users and, for storage shared by several nodes, their sessions. A store used by one node
+ * keeps sessions in {@link AdminAuth}'s memory only and leaves the session methods as they are.
+ */
+public interface UserStore {
+    /** The stored password hash of an admin user, or null if there is no such admin. */
+    String getAdminPasswordHash(String username);
+
+    /** Replaces a user's stored hash; with {@code expected} set, only if the stored value is still that. */
+    boolean updatePasswordHash(String username, String hash, String expected);
+
+    /** Whether sessions are saved here, so a session opened on one node is valid on the others. */
+    default boolean sharesSessions() {
+        return false;
+    }
+
+    /** Saves a session under a hash of its token, valid until {@code expiresAtMillis} (epoch ms). */
+    default void saveSession(String tokenHash, String username, long expiresAtMillis) {}
+
+    /** The admin a saved, unexpired session belongs to, or null. */
+    default String findSession(String tokenHash) {
+        return null;
+    }
+
+    default void deleteSession(String tokenHash) {}
+
+    /** Deletes every session of {@code username}. */
+    default void deleteSessions(String username) {}
+}
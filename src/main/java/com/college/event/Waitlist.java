@@ -0,0 +1,132 @@
+package com.college.event;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory FIFO of waitlisted registrations per event, mirroring the rows with status
+ * {@code waitlisted}. Entries are kept in id order, which is the order the rows were committed;
+ * taking from the head, adding at the tail and removing a cancelled entry are all O(1), so
+ * promotion costs the same with ten or ten thousand people waiting. Each event's {@link Queue}
+ * is also the lock its promotions run under.
+ */
+public class Waitlist {
+    private final Map<Integer, Queue> queues = new ConcurrentHashMap<>();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder promoted = new LongAdder();
+
+    /** The event's queue, created empty if needed; synchronize on it while planning a promotion. */
+    public Queue of(int eventId) {
+        return queues.computeIfAbsent(eventId, id -> new Queue());
+    }
+
+    public void add(int eventId, int id, int tickets) {
+        Queue q = of(eventId);
+        synchronized (q) {
+            q.entries.put(id, tickets);
+        }
+    }
+
+    public void remove(int eventId, int id) {
+        Queue q = queues.get(eventId);
+        if (q == null) return;
+        synchronized (q) {
+            q.entries.remove(id);
+        }
+    }
+
+    public void removeEvent(int eventId) {
+        queues.remove(eventId);
+    }
+
+    public int size(int eventId) {
+        Queue q = queues.get(eventId);
+        if (q == null) return 0;
+        synchronized (q) {
+            return q.entries.size();
+        }
+    }
+
+    /** 1-based place of a waitlisted registration, or 0 if it is not waiting. */
+    public int position(int eventId, int id) {
+        Queue q = queues.get(eventId);
+        if (q == null) return 0;
+        synchronized (q) {
+            int i = 0;
+            for (Integer e : q.entries.keySet()) {
+                i++;
+                if (e == id) return i;
+            }
+        }
+        return 0;
+    }
+
+    /** Everyone waiting across all events. */
+    public int total() {
+        int n = 0;
+        for (Queue q : queues.values()) {
+            synchronized (q) {
+                n += q.entries.size();
+            }
+        }
+        return n;
+    }
+
+    /** Counts a committed cancellation and/or promotions. */
+    public void recorded(boolean cancellation, int promotions) {
+        if (cancellation) cancelled.increment();
+        promoted.add(promotions);
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.waiting = total();
+        s.promoted = promoted.sum();
+        s.cancelled = cancelled.sum();
+        return s;
+    }
+
+    public static class Stats {
+        public int waiting;
+        public long promoted;
+        public long cancelled;
+    }
+
+    public static final class Queue {
+        // registration id -> tickets, in arrival order
+        private final LinkedHashMap<Integer, Integer> entries = new LinkedHashMap<>();
+
+        /** Up to {@code limit} entries from the head as {id, tickets} pairs. Hold the lock. */
+        public List<int[]> peek(int limit) {
+            List<int[]> out = new ArrayList<>(Math.min(limit, entries.size()));
+            for (Map.Entry<Integer, Integer> e : entries.entrySet()) {
+                if (out.size() >= limit) break;
+                out.add(new int[]{e.getKey(), e.getValue()});
+            }
+            return out;
+        }
+
+        /** Drops promoted entries; they are at the head, so this stops after them. Hold the lock. */
+        public void removeHead(List<int[]> promoted) {
+            Iterator<Integer> it = entries.keySet().iterator();
+            for (int i = 0; i < promoted.size() && it.hasNext(); i++) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        /** Hold the lock. */
+        public void remove(int id) {
+            entries.remove(id);
+        }
+
+        public boolean isEmpty() {
+            return entries.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind registration inserts ({@code writebehind.enabled=true}). A registration gets its id
+ * here and is acknowledged as soon as it is appended to the memory-mapped {@link WriteBehindLog};
+ * a background thread moves logged rows into {@code registrations} up to {@code batchSize} at a
+ * time and then advances the log's checkpoint. At most {@code maxPending} rows may be logged but
+ * not yet flushed: past that {@link #append} refuses, so callers can turn the client away until
+ * the flusher catches up. Rows the previous run logged but never flushed are inserted by the
+ * constructor, before any new row is accepted.
+ */
+public final class WriteBehindBuffer implements AutoCloseable {
+    /** Inserts a batch in one transaction, keeping the ids already set; rows it skipped come back with a null id. */
+    public interface Sink {
+        int insert(List<Registration> rows) throws SQLException;
+    }
+
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private final WriteBehindLog log;
+    private final Sink sink;
+    private final Consumer<Registration> onSkipped;
+    private final int batchSize;
+    private final int maxPending;
+    private final long forceIntervalMs;
+    private final Semaphore capacity;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong lastId;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param forceIntervalMs how often the flusher writes the mapped log to disk; 0 forces on every append
+     * @param lastId          highest registration id in the database, read after recovery
+     * @param onSkipped       called with a flushed row the database refused (its id is already null)
+     */
+    public WriteBehindBuffer(Path dir, int segmentBytes, int maxPending, int batchSize, long forceIntervalMs,
+                             Sink sink, LongSupplier lastId, Consumer<Registration> onSkipped) throws IOException, SQLException {
+        this.log = new WriteBehindLog(dir, segmentBytes);
+        this.sink = sink;
+        this.onSkipped = onSkipped;
+        this.batchSize = Math.max(1, batchSize);
+        this.forceIntervalMs = Math.max(0, forceIntervalMs);
+        this.maxPending = Math.max(1, maxPending);
+        this.capacity = new Semaphore(this.maxPending);
+
+        List<Registration> orphans = log.recover();
+        if (!orphans.isEmpty()) {
+            long start = System.nanoTime();
+            int inserted = 0;
+            for (int i = 0; i < orphans.size(); i += this.batchSize) {
+                // rows flushed just before the crash, before their checkpoint was written, are skipped by id
+                inserted += sink.insert(new ArrayList<>(orphans.subList(i, Math.min(orphans.size(), i + this.batchSize))));
+            }
+            System.out.printf("Recovered %d write-behind registrations (%d were already saved) in %d ms%n",
+                    inserted, orphans.size() - inserted, (System.nanoTime() - start) / 1_000_000);
+        }
+        log.discardRecovered();
+        this.lastId = new AtomicLong(lastId.getAsLong());
+
+        flusher = new Thread(this::flushLoop, "writebehind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** The next registration id; rows inserted around the buffer must take theirs from here too. */
+    public long nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    /**
+     * Assigns the row its id and created_at and logs it. {@code onAssigned} gets the id before the
+     * flusher can see the row.
+     *
+     * @return the new id, or -1 if {@code maxPending} rows are already waiting for the flusher
+     */
+    public long append(Registration r, LongConsumer onAssigned) throws IOException {
+        if (!running || !capacity.tryAcquire()) {
+            rejected.increment();
+            return -1;
+        }
+        try {
+            // log order and queue order must agree, or a checkpoint could pass a row not yet flushed
+            synchronized (this) {
+                r.id = (int) nextId();
+                if (r.createdAt == null) r.createdAt = RegistrationWriter.timestamp();
+                WriteBehindLog.Position position = log.append(r);
+                onAssigned.accept(r.id);
+                queue.add(new Pending(r, position));
+            }
+        } catch (IOException | RuntimeException e) {
+            r.id = null;
+            capacity.release();
+            throw e;
+        }
+        if (forceIntervalMs == 0) log.force();
+        appended.increment();
+        return r.id;
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        List<Registration> rows = new ArrayList<>(batchSize);
+        long lastForce = System.nanoTime();
+        long backoffMs = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Pending first = queue.poll(forceIntervalMs > 0 ? Math.min(forceIntervalMs, 100) : 100, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, batchSize - 1);
+                    }
+                }
+                if (forceIntervalMs > 0 && System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(forceIntervalMs)) {
+                    log.force();
+                    lastForce = System.nanoTime();
+                }
+                if (batch.isEmpty()) continue;
+                if (backoffMs > 0) Thread.sleep(backoffMs);
+                rows.clear();
+                for (Pending p : batch) rows.add(p.registration);
+                try {
+                    sink.insert(rows);
+                } catch (SQLException e) {
+                    // keep the batch and try again; the rows are safe in the log meanwhile
+                    failures.increment();
+                    e.printStackTrace();
+                    backoffMs = Math.min(MAX_BACKOFF_MS, Math.max(100, backoffMs * 2));
+                    if (running) continue;
+                    break;
+                }
+                backoffMs = 0;
+                batches.increment();
+                for (Pending p : batch) {
+                    if (p.registration.id != null) {
+                        flushed.increment();
+                    } else {
+                        skipped.increment();
+                        onSkipped.accept(p.registration);
+                    }
+                }
+                try {
+                    log.checkpoint(batch.get(batch.size() - 1).position);
+                } catch (IOException e) {
+                    // only deleting a finished segment can fail here; its rows are saved either way
+                    e.printStackTrace();
+                }
+                capacity.release(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        log.close();
+    }
+
+    /** Stops accepting rows and flushes what is queued; anything still unflushed is recovered next start. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.pending = maxPending - capacity.availablePermits();
+        s.maxPending = maxPending;
+        s.appended = appended.sum();
+        s.flushed = flushed.sum();
+        s.batches = batches.sum();
+        s.rejected = rejected.sum();
+        s.skipped = skipped.sum();
+        s.failures = failures.sum();
+        return s;
+    }
+
+    public static class Stats {
+        public int pending;
+        public int maxPending;
+        public long appended;
+        public long flushed;
+        public long batches;
+        public long rejected;
+        public long skipped;
+        public long failures;
+    }
+
+    private static final class Pending {
+        final Registration registration;
+        final WriteBehindLog.Position position;
+
+        Pending(Registration registration, WriteBehindLog.Position position) {
+            this.registration = registration;
+            this.position = position;
+        }
+    }
+}
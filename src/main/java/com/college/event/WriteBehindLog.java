@@ -0,0 +1,183 @@
+package com.college.event;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped log of registrations accepted in write-behind mode but not yet in the database.
+ * <p>
+ * Segments ({@code writebehind-NNNNNN.log}) are mapped whole, so an append is a copy into memory
+ * that survives a crash of the process as soon as it returns; {@link #force()} pushes the mapped
+ * pages to disk for crashes of the machine. Each segment starts with {@code int magic, int 0,
+ * long checkpoint}: the offset of its first record not yet flushed to the database. Records follow
+ * in the {@link RegistrationCodec} layout until a zero length. A segment is deleted once it is
+ * full and checkpointed to its end.
+ */
+final class WriteBehindLog implements AutoCloseable {
+    static final String SEGMENT_PREFIX = "writebehind-";
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAGIC = 0x57424c31; // "WBL1"
+    private static final int SEGMENT_HEADER = 16;
+    private static final int CHECKPOINT_OFFSET = 8;
+
+    /** Where an appended record ends; pass it to {@link #checkpoint} once the record is in the database. */
+    static final class Position {
+        final Segment segment;
+        final int end;
+
+        Position(Segment segment, int end) {
+            this.segment = segment;
+            this.end = end;
+        }
+    }
+
+    static final class Segment {
+        final int index;
+        final Path path;
+        final MappedByteBuffer map;
+
+        Segment(int index, Path path, MappedByteBuffer map) {
+            this.index = index;
+            this.path = path;
+            this.map = map;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+    // segments written since startup that still hold unflushed records, oldest first
+    private final Deque<Segment> live = new ArrayDeque<>();
+    // segments left by the previous run; deleted by discardRecovered once their records are saved
+    private final List<Path> recovered;
+    private Segment current;
+
+    WriteBehindLog(Path dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(segmentBytes, SEGMENT_HEADER + scratch.capacity());
+        Files.createDirectories(dir);
+        this.recovered = segments(dir);
+        int last = recovered.isEmpty() ? 0 : segmentIndex(recovered.get(recovered.size() - 1));
+        // never append to a segment from the previous run: its records are recovered as a whole
+        current = openSegment(last + 1);
+        live.add(current);
+    }
+
+    /** Records left unflushed by the previous run, oldest first; torn or corrupt tails are skipped. */
+    List<Registration> recover() throws IOException {
+        List<Registration> rows = new ArrayList<>();
+        for (Path p : recovered) {
+            ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(p));
+            if (b.remaining() < SEGMENT_HEADER || b.getInt(0) != MAGIC) continue;
+            long checkpoint = b.getLong(CHECKPOINT_OFFSET);
+            int pos = (int) Math.max(SEGMENT_HEADER, checkpoint);
+            while (pos + RegistrationCodec.HEADER_BYTES <= b.limit()) {
+                int len = b.getInt(pos);
+                int sum = b.getInt(pos + 4);
+                int payload = pos + RegistrationCodec.HEADER_BYTES;
+                if (len <= 0 || payload + len > b.limit()) break;
+                crc.reset();
+                crc.update(b.array(), payload, len);
+                if ((int) crc.getValue() != sum) break; // torn write
+                rows.add(RegistrationCodec.read(ByteBuffer.wrap(b.array(), payload, len)));
+                pos = payload + len;
+            }
+        }
+        return rows;
+    }
+
+    /** Deletes the previous run's segments; call once everything {@link #recover} returned is saved. */
+    void discardRecovered() throws IOException {
+        for (Path p : recovered) Files.deleteIfExists(p);
+        recovered.clear();
+    }
+
+    /** Copies one record into the mapped segment, rolling to a new segment when it is full. */
+    synchronized Position append(Registration r) throws IOException {
+        try {
+            scratch.clear();
+            RegistrationCodec.write(r, scratch, crc);
+            scratch.flip();
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Registration " + r.id + " is too large for the write-behind log", e);
+        }
+        if (current.map.remaining() < scratch.remaining()) {
+            current.map.force();
+            current = openSegment(current.index + 1);
+            live.add(current);
+        }
+        current.map.put(scratch);
+        return new Position(current, current.map.position());
+    }
+
+    /**
+     * Marks every record up to {@code p} as flushed. Records are flushed in the order they were
+     * appended, so segments before {@code p}'s are done and are deleted.
+     */
+    synchronized void checkpoint(Position p) throws IOException {
+        while (!live.isEmpty() && live.peekFirst() != p.segment) delete(live.pollFirst());
+        p.segment.map.putLong(CHECKPOINT_OFFSET, p.end);
+        if (p.segment != current && p.end == p.segment.map.position()) delete(live.pollFirst());
+    }
+
+    /** Writes the mapped pages of the current segment to disk. */
+    void force() {
+        Segment s;
+        synchronized (this) {
+            s = current;
+        }
+        s.map.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    private void delete(Segment s) throws IOException {
+        if (s != null) Files.deleteIfExists(s.path);
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        Path path = dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // mapping grows the file to its full size; the mapping stays valid after the channel closes
+            map = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        map.putInt(0, MAGIC);
+        map.putLong(CHECKPOINT_OFFSET, SEGMENT_HEADER);
+        map.position(SEGMENT_HEADER);
+        return new Segment(index, path, map);
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static int segmentIndex(Path segment) {
+        String n = segment.getFileName().toString();
+        return Integer.parseInt(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()));
+    }
+}
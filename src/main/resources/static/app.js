@@ -34,6 +34,11 @@
       localStorage.setItem('rrimt_regs', JSON.stringify(db));
       return { status: 200, json: async () => ({ success: true }) };
     }
+    if (url.startsWith('/api/registrations/lookup')) {
+      const email = decodeURIComponent(url.split('email=')[1] || '').trim().toLowerCase();
+      const mine = JSON.parse(localStorage.getItem('rrimt_regs') || '[]').filter(r => r.email && r.email.trim().toLowerCase() === email);
+      return { status: 200, json: async () => mine };
+    }
     if (url.includes('/api/registrations')) {
       return { status: 200, json: async () => JSON.parse(localStorage.getItem('rrimt_regs') || '[]') };
     }
@@ -96,6 +101,7 @@ async function loadEvents() {
              ${escapeHtml(ev.type)} • ${escapeHtml(ev.startDatetime || '')}
           </div>
           <div class="muted">📍 ${escapeHtml(ev.venue || '')}</div>
+          <div class="muted" data-seats="${ev.id}"></div>
         </div>
         <div style="margin-top:15px; display:flex; gap:10px">
            <button class="btn secondary" data-id="${ev.id}">Details</button> 
@@ -120,9 +126,30 @@ async function loadEvents() {
     document.querySelectorAll('[data-register]').forEach(btn => btn.addEventListener('click', (e)=>{
       const id = e.currentTarget.getAttribute('data-register'); document.getElementById('eventSelect').value = id; showView('register');
     }));
+    startLiveStream();
   } catch (err) { console.error(err); showToast('Could not load events'); }
 }
 
+// Live seat counts and new registrations pushed by the server over /api/stream, instead of re-fetching lists
+let liveStream = null;
+function startLiveStream(restart) {
+  if (!window.EventSource) return;
+  if (liveStream && !restart) return;
+  if (liveStream) liveStream.close();
+  liveStream = new EventSource('/api/stream');
+  liveStream.addEventListener('snapshot', e => JSON.parse(e.data).events.forEach(updateSeats));
+  liveStream.addEventListener('registrations', e => {
+    const update = JSON.parse(e.data);
+    update.events.forEach(updateSeats);
+    update.registrations.forEach(r => document.dispatchEvent(new CustomEvent('live-registration', { detail: r })));
+  });
+}
+function updateSeats(ev) {
+  document.querySelectorAll(`[data-seats="${ev.eventId}"]`).forEach(el => {
+    el.textContent = ev.remaining == null ? '' : (ev.remaining > 0 ? ev.remaining + ' seats left' : 'Sold out');
+  });
+}
+
 async function showEventDetails(id) {
   try {
     const res = await fetch('/api/events/' + id);
@@ -157,10 +184,16 @@ regForm && regForm.addEventListener('submit', async (e)=>{
     id: parseInt(document.getElementById('eventSelect').value,10)
   };
   if (!payload.studentName || !payload.email || !payload.id) { showToast('Name, email and event are required'); return; }
+  // one key per filled-in form, so a double click or a retry after a network error cannot register twice
+  const body = JSON.stringify(payload);
+  if (regForm.dataset.idemBody !== body) {
+    regForm.dataset.idemBody = body;
+    regForm.dataset.idemKey = (window.crypto && crypto.randomUUID) ? crypto.randomUUID() : Date.now() + '-' + Math.random().toString(36).slice(2);
+  }
   try {
-    const res = await fetch('/api/register', { method: 'POST', headers: {'Content-Type':'application/json'}, body: JSON.stringify(payload) });
+    const res = await fetch('/api/register', { method: 'POST', headers: {'Content-Type':'application/json', 'Idempotency-Key': regForm.dataset.idemKey}, body });
     const data = await res.json();
-    if (data && data.success) { showToast('Registration successful'); regForm.reset(); showView('home'); }
+    if (data && data.success) { showToast('Registration successful'); regForm.reset(); delete regForm.dataset.idemBody; showView('home'); }
     else showToast('Error: ' + (data.message||'Could not save'));
   } catch (err) { showToast('Network error'); console.error(err); }
 });
@@ -171,8 +204,7 @@ document.getElementById('resetBtn') && document.getElementById('resetBtn').addEv
 document.getElementById('dashLookup') && document.getElementById('dashLookup').addEventListener('click', async ()=>{
   const email = document.getElementById('dashEmail').value.trim(); if (!email) { showToast('Enter email'); return; }
   try {
-    const res = await fetch('/api/registrations?limit=100'); const all = await res.json();
-    const mine = all.filter(r => r.email && r.email.toLowerCase() === email.toLowerCase());
+    const res = await fetch('/api/registrations/lookup?email=' + encodeURIComponent(email)); const mine = await res.json();
     const out = document.getElementById('dashResults'); out.innerHTML = '';
     if (mine.length===0) out.innerHTML = '<div class="reg-item">No registrations found for this email.</div>';
     else mine.forEach(r => { 
@@ -189,7 +221,7 @@ document.getElementById('adminLoginBtn') && document.getElementById('adminLoginB
   try {
     const res = await fetch('/api/admin/login', {method:'POST', headers:{'Content-Type':'application/json'}, body: JSON.stringify({username:u,password:p})});
     const data = await res.json();
-    if (data && data.success) { showToast('Welcome Admin'); loadAdmin(); showView('adminDashboard'); }
+    if (data && data.success) { showToast('Welcome Admin'); startLiveStream(true); loadAdmin(); showView('adminDashboard'); }
     else showToast('Login failed');
   } catch (err) { showToast('Network error'); }
 });
@@ -199,6 +231,7 @@ document.getElementById('adminLogout') && document.getElementById('adminLogout')
   showToast('Logged out'); showView('home');
 });
 
+let adminLiveHooked = false;
 async function loadAdmin() {
   const area = document.getElementById('adminArea'); area.innerHTML = '';
   // provide event creation form and registrations list
@@ -227,14 +260,25 @@ async function loadAdmin() {
 
   const regsTitle = document.createElement('h3'); regsTitle.textContent = 'All Registrations'; area.appendChild(regsTitle);
   const regsDiv = document.createElement('div'); regsDiv.id = 'adminRegs'; area.appendChild(regsDiv);
+  function regItem(r){ const d = document.createElement('div'); d.className='reg-item'; d.innerHTML = `<div><strong>${escapeHtml(r.studentName)}</strong> — ${escapeHtml(r.eventName)}</div><div>${r.tickets} tix • ${escapeHtml(r.email||'')}</div>`; return d; }
   async function loadAdminRegs(){
     try {
       const res = await fetch('/api/admin/registrations'); const data = await res.json(); regsDiv.innerHTML = ''; 
       if(data.length === 0) regsDiv.innerHTML = '<p>No registrations yet.</p>';
-      data.forEach(r=>{ const d = document.createElement('div'); d.className='reg-item'; d.innerHTML = `<div><strong>${escapeHtml(r.studentName)}</strong> — ${escapeHtml(r.eventName)}</div><div>${r.tickets} tix • ${escapeHtml(r.email||'')}</div>`; regsDiv.appendChild(d); });
+      data.forEach(r=> regsDiv.appendChild(regItem(r)));
     } catch (err) { regsDiv.innerHTML = '<div class="reg-item">Could not load</div>'; }
   }
   loadAdminRegs();
+  // new registrations arrive over the live stream; only admin streams carry names
+  if (!adminLiveHooked) {
+    adminLiveHooked = true;
+    document.addEventListener('live-registration', e => {
+      const list = document.getElementById('adminRegs');
+      if (!list || !e.detail.studentName) return;
+      if (list.querySelector('p')) list.innerHTML = '';
+      list.insertBefore(regItem(e.detail), list.firstChild);
+    });
+  }
 }
 
 // small helpers
@@ -0,0 +1,132 @@
+package com.college.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Sign-in against the test database (see the surefire settings in the pom) with its own admin user. */
+class AdminAuthTest {
+    private static final String USER = "auth-test";
+    private static final String PASSWORD = "first-password";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AdminAuth auth;
+
+    @BeforeAll
+    static void createUser() throws Exception {
+        // loading Database brings the test database's schema up to date
+        Database.getAdminPasswordHash(USER);
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + System.getProperty("db.file"))) {
+            SchemaMigrations.createAdminIfNotExists(c, USER, PASSWORD);
+        }
+    }
+
+    @BeforeEach
+    void resetPassword() {
+        assertTrue(Database.updatePasswordHash(USER, PasswordHash.hash(PASSWORD), null));
+    }
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        System.clearProperty("auth.hashThreads");
+        System.clearProperty("auth.hashTimeoutMs");
+    }
+
+    @Test
+    void onlyTheRightPasswordOpensASession() {
+        auth = new AdminAuth();
+        AdminAuth.Result ok = auth.login(USER, PASSWORD);
+        assertEquals(AdminAuth.Status.OK, ok.status);
+        assertNotNull(ok.token);
+        assertEquals(AdminAuth.Status.INVALID, auth.login(USER, "wrong-password").status);
+        assertEquals(AdminAuth.Status.INVALID, auth.login("no-such-admin", PASSWORD).status);
+        assertEquals(1, auth.stats().sessions);
+        assertEquals(2, auth.stats().failures);
+    }
+
+    @Test
+    void outdatedHashIsUpgradedAfterLogin() throws Exception {
+        String weak = PasswordHashTest.pbkdf2(PASSWORD, PasswordHash.ITERATIONS / 2);
+        assertTrue(Database.updatePasswordHash(USER, weak, null));
+        auth = new AdminAuth();
+        assertEquals(AdminAuth.Status.OK, auth.login(USER, PASSWORD).status);
+        // the upgrade runs on the hashing executor after the reply
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (PasswordHash.needsRehash(Database.getAdminPasswordHash(USER)) && System.nanoTime() < deadline) Thread.sleep(10);
+        String upgraded = Database.getAdminPasswordHash(USER);
+        assertFalse(PasswordHash.needsRehash(upgraded));
+        assertTrue(PasswordHash.verify(PASSWORD, upgraded));
+    }
+
+    @Test
+    void loginThatWouldQueueIsBusyAtOnce() throws Exception {
+        System.setProperty("auth.hashThreads", "1");
+        auth = new AdminAuth();
+        occupyHashing(2);
+        long t0 = System.nanoTime();
+        assertEquals(AdminAuth.Status.BUSY, auth.login(USER, PASSWORD).status);
+        assertTrue(System.nanoTime() - t0 < TimeUnit.MILLISECONDS.toNanos(500), "a queued login should not wait");
+        assertEquals(1, auth.stats().busy);
+        assertEquals(0, auth.stats().sessions);
+    }
+
+    @Test
+    void loginWaitingLongerThanTheTimeoutIsBusy() throws Exception {
+        System.setProperty("auth.hashThreads", "1");
+        System.setProperty("auth.hashTimeoutMs", "100");
+        auth = new AdminAuth();
+        occupyHashing(1);
+        assertEquals(AdminAuth.Status.BUSY, auth.login(USER, PASSWORD).status);
+        assertEquals(1, auth.stats().busy);
+        release.countDown();
+        // once the executor is free, logins work again
+        assertEquals(AdminAuth.Status.OK, auth.login(USER, PASSWORD).status);
+    }
+
+    @Test
+    void changingThePasswordRevokesEveryOtherSession() {
+        auth = new AdminAuth();
+        assertEquals(AdminAuth.Status.OK, auth.login(USER, PASSWORD).status);
+        assertEquals(AdminAuth.Status.OK, auth.login(USER, PASSWORD).status);
+        assertEquals(AdminAuth.Status.INVALID, auth.changePassword(USER, "wrong-password", "second-password").status);
+        assertEquals(2, auth.stats().sessions);
+
+        AdminAuth.Result changed = auth.changePassword(USER, PASSWORD, "second-password");
+        assertEquals(AdminAuth.Status.OK, changed.status);
+        assertNotNull(changed.token);
+        assertEquals(2, auth.stats().revoked);
+        assertEquals(1, auth.stats().sessions);
+        assertEquals(AdminAuth.Status.INVALID, auth.login(USER, PASSWORD).status);
+        assertEquals(AdminAuth.Status.OK, auth.login(USER, "second-password").status);
+        assertEquals(2, auth.revokeUser(USER));
+        assertEquals(0, auth.stats().sessions);
+    }
+
+    // Fills the (single-thread) hashing executor: one job running, the rest queued, until release
+    private void occupyHashing(int jobs) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        for (int i = 0; i < jobs; i++) {
+            auth.hashing.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,62 @@
+package com.college.event;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashTest {
+    @Test
+    void hashVerifiesOnlyItsOwnPassword() {
+        String stored = PasswordHash.hash("correct horse");
+        assertTrue(PasswordHash.isHashed(stored));
+        assertTrue(PasswordHash.verify("correct horse", stored));
+        assertFalse(PasswordHash.verify("correct horsE", stored));
+        assertFalse(PasswordHash.verify(null, stored));
+        // salted: the same password never hashes to the same value twice
+        assertNotEquals(stored, PasswordHash.hash("correct horse"));
+        assertFalse(PasswordHash.needsRehash(stored));
+    }
+
+    @Test
+    void weakerAndPlaintextValuesStillVerifyButNeedRehash() throws Exception {
+        String weak = pbkdf2("secret", PasswordHash.ITERATIONS / 2);
+        assertTrue(PasswordHash.verify("secret", weak));
+        assertTrue(PasswordHash.needsRehash(weak));
+
+        assertTrue(PasswordHash.verify("secret", "secret"));
+        assertFalse(PasswordHash.verify("Secret", "secret"));
+        assertTrue(PasswordHash.needsRehash("secret"));
+    }
+
+    @Test
+    void malformedValuesNeverVerify() {
+        assertFalse(PasswordHash.verify("x", "pbkdf2-sha256$oops"));
+        assertFalse(PasswordHash.verify("x", "pbkdf2-sha256$1000$!!$!!"));
+        assertTrue(PasswordHash.needsRehash("pbkdf2-sha256$many$a$b"));
+    }
+
+    @Test
+    void tokensMatchOnlyTheirOwnHash() {
+        String token = PasswordHash.newToken();
+        String stored = PasswordHash.tokenHash(token);
+        assertTrue(PasswordHash.matchesToken(token, stored));
+        assertFalse(PasswordHash.matchesToken(PasswordHash.newToken(), stored));
+        assertFalse(PasswordHash.matchesToken(null, stored));
+        assertFalse(PasswordHash.matchesToken(token, null));
+    }
+
+    // a stored value in PasswordHash's format, made with the given cost
+    static String pbkdf2(String password, int iterations) throws Exception {
+        byte[] salt = new byte[16];
+        byte[] hash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                .generateSecret(new PBEKeySpec(password.toCharArray(), salt, iterations, 256)).getEncoded();
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return "pbkdf2-sha256$" + iterations + '$' + b64.encodeToString(salt) + '$' + b64.encodeToString(hash);
+    }
+}
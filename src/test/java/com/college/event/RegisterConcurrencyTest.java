@@ -0,0 +1,166 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@code Main.register} from many threads against the test database (see the surefire
+ * settings in the pom) and checks the stored rows: confirmed tickets never exceed the capacity.
+ */
+class RegisterConcurrencyTest {
+    private static final Gson gson = new Gson();
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 25;
+
+    @Test
+    void concurrentRegistrationsNeverOversell() throws Exception {
+        int capacity = 60;
+        int eventId = createEvent(capacity);
+        String run = UUID.randomUUID().toString();
+        AtomicInteger saved = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        SeatAllocatorTest.run(THREADS, () -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                int n = next.incrementAndGet();
+                int tickets = 1 + n % 3;
+                IdempotencyCache.Reply reply = Main.register(body(eventId, run, n, tickets, false), null);
+                if (reply.status == 200) saved.addAndGet(tickets);
+                else if (reply.status == 409) soldOut.incrementAndGet();
+                else throw new AssertionError(reply.status + " " + reply.body);
+            }
+        });
+        assertTrue(soldOut.get() > 0, "demand should have exceeded the capacity");
+        assertEquals(saved.get(), confirmedTickets(eventId));
+        assertTrue(saved.get() <= capacity, saved.get() + " tickets confirmed for " + capacity + " seats");
+        assertEquals(saved.get(), Database.getSeatAvailability(eventId).sold);
+    }
+
+    @Test
+    void cancellationsAndWaitlistPromotionsNeverOversell() throws Exception {
+        int capacity = 30;
+        int eventId = createEvent(capacity);
+        String run = UUID.randomUUID().toString();
+        ConcurrentLinkedQueue<Object[]> cancellable = new ConcurrentLinkedQueue<>();
+        AtomicInteger next = new AtomicInteger();
+        SeatAllocatorTest.run(THREADS, () -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                if (i % 3 == 2) {
+                    // every third step cancels someone registered earlier, which promotes from the waitlist
+                    Object[] r = cancellable.poll();
+                    if (r != null) Database.cancelRegistration((Integer) r[0], (String) r[1]);
+                    continue;
+                }
+                int n = next.incrementAndGet();
+                IdempotencyCache.Reply reply = Main.register(body(eventId, run, n, 1 + n % 2, true), null);
+                if (reply.status != 200) throw new AssertionError(reply.status + " " + reply.body);
+                Map<?, ?> m = gson.fromJson(reply.body, Map.class);
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    cancellable.add(new Object[]{((Number) m.get("id")).intValue(), (String) m.get("cancelToken")});
+                }
+            }
+        });
+        int confirmed = confirmedTickets(eventId);
+        assertTrue(confirmed <= capacity, confirmed + " tickets confirmed for " + capacity + " seats");
+        assertEquals(confirmed, Database.getSeatAvailability(eventId).sold);
+    }
+
+    @Test
+    void formRegistrationsNeverOversellOrJumpTheWaitlist() throws Exception {
+        int capacity = 20;
+        int eventId = createEvent(capacity);
+        String title = Database.getEventById(eventId).title;
+        String run = UUID.randomUUID().toString();
+        AtomicInteger saved = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        // the Swing form's entry point, which finds the event by title
+        SeatAllocatorTest.run(THREADS, () -> {
+            for (int i = 0; i < 5; i++) {
+                int n = next.incrementAndGet();
+                RegistrationStore.InsertResult r = Database.insertRegistration("Student " + n, title, 1, "f" + n + "-" + run + "@example.com", null);
+                if (r.status == RegistrationStore.InsertResult.Status.INSERTED) saved.incrementAndGet();
+                else if (r.status != RegistrationStore.InsertResult.Status.SOLD_OUT) throw new AssertionError(r.status);
+            }
+        });
+        assertEquals(capacity, saved.get());
+        assertEquals(capacity, confirmedTickets(eventId));
+        assertEquals(capacity, Database.getSeatAvailability(eventId).sold);
+
+        // a freed seat belongs to whoever is waiting, not to the next form submission, even while
+        // it is too small for them
+        IdempotencyCache.Reply waiting = Main.register(body(eventId, run, 1000, 2, true), null);
+        assertEquals(200, waiting.status, waiting.body);
+        Registration first = Database.getRegistrationsForEvent(eventId).stream().filter(Registration::isConfirmed).findFirst().orElseThrow();
+        assertEquals(RegistrationStore.CancelResult.Status.CANCELLED, Database.cancelRegistration(first.id, null).status);
+        RegistrationStore.InsertResult late = Database.insertRegistration("Late", title, 1, "late-" + run + "@example.com", null);
+        assertEquals(RegistrationStore.InsertResult.Status.SOLD_OUT, late.status);
+        assertEquals(capacity - 1, confirmedTickets(eventId));
+    }
+
+    @Test
+    void replayedKeyGetsTheFirstIdWhileANewKeyIsADuplicateEmail() throws Exception {
+        int eventId = createEvent(2);
+        String run = UUID.randomUUID().toString();
+        String body = body(eventId, run, 1, 2, false);
+        IdempotencyCache.Reply first = Main.register(body, "replay-" + run);
+        assertEquals(200, first.status, first.body);
+        Object id = gson.fromJson(first.body, Map.class).get("id");
+
+        // retries go straight to Main.register, past the in-memory reply table, as after a restart or
+        // on another node; the first attempt took the last seats, which must not make them sold out
+        Set<Object> ids = ConcurrentHashMap.newKeySet();
+        SeatAllocatorTest.run(THREADS, () -> {
+            IdempotencyCache.Reply reply = Main.register(body, "replay-" + run);
+            if (reply.status != 200) throw new AssertionError(reply.status + " " + reply.body);
+            ids.add(gson.fromJson(reply.body, Map.class).get("id"));
+        });
+        assertEquals(Set.of(id), ids);
+        assertEquals(1, Database.getRegistrationsForEvent(eventId).size());
+        assertEquals(2, Database.getSeatAvailability(eventId).sold);
+
+        // the same person under a new key is a second registration, which the email rule refuses
+        Registration again = new Registration(null, "Student 1", Database.getEventById(eventId).title, 2, "s1-" + run + "@example.com", null, null);
+        again.eventId = eventId;
+        again.idempotencyKey = "another-" + run;
+        again.status = Registration.WAITLISTED;
+        assertEquals(RegistrationStore.InsertResult.Status.DUPLICATE_EMAIL, Database.insertRegistration(again).status);
+        again.idempotencyKey = "replay-" + run;
+        RegistrationStore.InsertResult replayed = Database.insertRegistration(again);
+        assertEquals(RegistrationStore.InsertResult.Status.DUPLICATE_KEY, replayed.status);
+        assertEquals(((Number) id).longValue(), replayed.id);
+        assertEquals(1, Database.getRegistrationsForEvent(eventId).size());
+        assertEquals(2, Database.getSeatAvailability(eventId).sold);
+    }
+
+    private static int createEvent(int capacity) {
+        Event e = new Event(null, "Stress " + UUID.randomUUID(), "test", "2030-01-01 10:00", null, null, null, null, null, null, null, null);
+        e.capacity = capacity;
+        int id = Database.createEvent(e);
+        assertTrue(id > 0, "event not created");
+        return id;
+    }
+
+    private static String body(int eventId, String run, int n, int tickets, boolean waitlist) {
+        return gson.toJson(Map.of("studentName", "Student " + n, "id", eventId, "tickets", tickets,
+                "email", "s" + n + "-" + run + "@example.com", "waitlist", waitlist));
+    }
+
+    private static int confirmedTickets(int eventId) {
+        List<Registration> rows = Database.getRegistrationsForEvent(eventId);
+        int sum = 0;
+        for (Registration r : rows) if (r.isConfirmed()) sum += r.tickets;
+        return sum;
+    }
+}
@@ -0,0 +1,68 @@
+package com.college.event;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Imports into the test database (see the surefire settings in the pom): skipped rows must give their seats back. */
+class RegistrationImportTest {
+    private static final Gson gson = new Gson();
+
+    @Test
+    void skippedRowsAreReportedAndReleaseTheirSeats() throws Exception {
+        Event e = new Event(null, "Import " + UUID.randomUUID(), "test", "2030-01-01 10:00", null, null, null, null, null, null, null, null);
+        e.capacity = 4;
+        int eventId = Database.createEvent(e);
+        String run = UUID.randomUUID().toString();
+        String taken = "taken-" + run + "@example.com";
+        IdempotencyCache.Reply first = Main.register(gson.toJson(Map.of("studentName", "Taken", "id", eventId, "tickets", 1, "email", taken)), null);
+        assertEquals(200, first.status, first.body);
+
+        String csv = "student_name,event_id,tickets,email,status\n"
+                + "A," + eventId + ",1," + taken + ",\n"                          // line 2: already in the table
+                + "B," + eventId + ",1,b-" + run + "@example.com,confirmed\n"   // line 3: saved
+                + "C," + eventId + ",5,c-" + run + "@example.com,\n"            // line 4: more seats than are left
+                + "D," + eventId + ",1,d-" + run + "@example.com,waitlisted\n"  // line 5: not confirmed
+                + "E," + eventId + ",1,B-" + run + "@example.com,\n"            // line 6: same email as line 3
+                + "F,999999999,1,f-" + run + "@example.com,\n";                // line 7: no such event
+        List<Map<?, ?>> out = importCsv(csv);
+
+        Map<?, ?> summary = out.get(out.size() - 1);
+        assertEquals("summary", summary.get("type"));
+        assertEquals(6.0, summary.get("rows"));
+        assertEquals(1.0, summary.get("inserted"));
+        assertEquals(5.0, summary.get("rejected"));
+        List<Double> errorLines = new ArrayList<>();
+        for (Map<?, ?> m : out) {
+            if (!"error".equals(m.get("type"))) continue;
+            errorLines.add((Double) m.get("line"));
+            String message = (String) m.get("message");
+            if (m.get("line").equals(2.0) || m.get("line").equals(6.0)) assertTrue(message.contains("already registered"), message);
+            if (m.get("line").equals(4.0)) assertTrue(message.startsWith("sold out"), message);
+        }
+        assertEquals(List.of(4.0, 5.0, 7.0, 2.0, 6.0), errorLines);
+
+        // lines 2 and 6 reserved seats before the batch turned them away; only the two saved rows keep theirs
+        assertEquals(2, Database.getSeatAvailability(eventId).sold);
+        assertEquals(2, Database.getRegistrationsForEvent(eventId).size());
+    }
+
+    private static List<Map<?, ?>> importCsv(String csv) throws Exception {
+        RegistrationImport imp = new RegistrationImport(RegistrationExport.Format.CSV, 100, 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        imp.run(imp.open(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), out);
+        List<Map<?, ?>> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) lines.add(gson.fromJson(line, Map.class));
+        return lines;
+    }
+}
@@ -0,0 +1,119 @@
+package com.college.event;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RegistrationJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornTailIsDroppedAndAppendsContinueAfterTheLastIntactRecord() throws Exception {
+        RegistrationJournal j = open();
+        j.append(List.of(row(1), row(2)));
+        j.close();
+        Path segment = j.currentSegment();
+        long valid = JournalReplay.validLength(segment);
+
+        // half a record: a header promising more bytes than follow, as a crash mid-write leaves it
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(12).putInt(200).putInt(12345).putInt(7);
+            torn.flip();
+            ch.write(torn, valid);
+        }
+        assertEquals(valid, JournalReplay.validLength(segment));
+
+        j = open();
+        assertEquals(valid, j.syncedPosition().offset);
+        j.append(List.of(row(3)));
+        j.close();
+        assertEquals(List.of(1, 2, 3), ids());
+    }
+
+    @Test
+    void replayFromACheckpointAppliesOnlyTheTail() throws Exception {
+        RegistrationJournal j = open();
+        j.append(List.of(row(1), row(2)));
+        j.close();
+        RegistrationJournal.Position checkpoint = j.syncedPosition();
+
+        try (Connection conn = database()) {
+            JournalReplay.Result full = JournalReplay.replay(dir, conn, null);
+            assertEquals(2, full.inserted);
+            assertEquals(checkpoint.offset, full.end.offset);
+
+            Registration linked = row(3);
+            linked.eventId = 7;
+            linked.eventName = "Old title";
+            Registration cancel = row(1);
+            cancel.previousStatus = Registration.CONFIRMED;
+            cancel.status = Registration.CANCELLED;
+            j = open();
+            j.append(List.of(linked, cancel));
+            j.close();
+
+            // row 2 is before the checkpoint, so a replay from there must not bring it back
+            exec(conn, "DELETE FROM registrations WHERE id = 2");
+            JournalReplay.Result tail = JournalReplay.replay(dir, conn, checkpoint);
+            assertEquals(1, tail.inserted);
+            assertEquals(1, tail.updated);
+            assertEquals(j.syncedPosition().offset, tail.end.offset);
+            assertEquals("cancelled", query(conn, "SELECT status FROM registrations WHERE id = 1"));
+            assertNull(query(conn, "SELECT event_name FROM registrations WHERE id = 3"));
+            assertNull(query(conn, "SELECT id FROM registrations WHERE id = 2"));
+
+            // applying a status change twice is harmless, and a checkpoint the journal no longer has means a full replay
+            JournalReplay.Result stale = JournalReplay.replay(dir, conn, new RegistrationJournal.Position(99, 0));
+            assertEquals(0, stale.updated);
+            assertEquals("cancelled", query(conn, "SELECT status FROM registrations WHERE id = 1"));
+        }
+    }
+
+    private RegistrationJournal open() throws Exception {
+        return new RegistrationJournal(dir, 1 << 16, 1 << 20, RegistrationJournal.FsyncPolicy.ALWAYS, 0, 0);
+    }
+
+    private static Registration row(int id) {
+        Registration r = new Registration(id, "Student " + id, "Event", 1, "s" + id + "@example.com", null, "2030-01-01 10:00:00");
+        r.status = Registration.CONFIRMED;
+        return r;
+    }
+
+    private List<Integer> ids() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        JournalReplay.forEach(dir, r -> ids.add(r.id));
+        return ids;
+    }
+
+    private Connection database() throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("replay.db"));
+        exec(conn, "CREATE TABLE registrations (id INTEGER PRIMARY KEY AUTOINCREMENT, student_name TEXT NOT NULL, event_name TEXT, tickets INTEGER NOT NULL, email TEXT, phone TEXT, created_at DATETIME, event_id INTEGER, idempotency_key TEXT, status TEXT NOT NULL DEFAULT 'confirmed', cancel_token TEXT)");
+        return conn;
+    }
+
+    private static void exec(Connection conn, String sql) throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static String query(Connection conn, String sql) throws Exception {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
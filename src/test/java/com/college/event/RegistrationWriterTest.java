@@ -0,0 +1,84 @@
+package com.college.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The writer must answer every caller, even when it cannot get at the database at all. */
+class RegistrationWriterTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+    private RegistrationWriter writer;
+
+    @BeforeEach
+    void open() throws Exception {
+        pool = new ConnectionPool("jdbc:sqlite:" + dir.resolve("writer.db"), 1, 200, 1000, "WAL", "NORMAL");
+        try (ConnectionPool.Lease c = pool.writer(); Statement st = c.connection().createStatement()) {
+            st.execute("CREATE TABLE registrations (id INTEGER PRIMARY KEY AUTOINCREMENT, student_name TEXT NOT NULL, event_name TEXT, tickets INTEGER NOT NULL, email TEXT, phone TEXT, created_at DATETIME, event_id INTEGER, idempotency_key TEXT, status TEXT NOT NULL DEFAULT 'confirmed', cancel_token TEXT)");
+        }
+        writer = new RegistrationWriter(pool, 16, 0, 100, batch -> {});
+    }
+
+    @AfterEach
+    void close() {
+        writer.close();
+        pool.close();
+    }
+
+    @Test
+    void failedCheckoutFailsEveryCallerInTheBatch() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[5];
+        // holding the only writer connection makes the writer's checkout time out
+        try (ConnectionPool.Lease held = pool.writer()) {
+            for (int i = 0; i < futures.length; i++) futures[i] = writer.submit(row(i));
+            for (CompletableFuture<?> f : futures) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(SQLTimeoutException.class, e.getCause());
+            }
+        }
+        assertEquals(futures.length, writer.stats().failures);
+        assertEquals(0, count());
+        // the writer recovers once the connection is back
+        assertTrue(writer.insert(row(99), 5000) > 0);
+    }
+
+    @Test
+    void rowNotStartedWithinTheTimeoutIsWithdrawn() throws Exception {
+        try (ConnectionPool.Lease held = pool.writer()) {
+            assertThrows(TimeoutException.class, () -> writer.insert(row(1), 50));
+        }
+        // the writer's failed checkout has passed; whatever it retries must not include the withdrawn row
+        writer.insert(row(2), 5000);
+        assertEquals(1, count());
+    }
+
+    private static Registration row(int n) {
+        Registration r = new Registration(null, "Student " + n, "Event", 1, "s" + n + "@example.com", null, null);
+        r.status = Registration.CONFIRMED;
+        return r;
+    }
+
+    private int count() throws Exception {
+        try (ConnectionPool.Lease c = pool.reader(); Statement st = c.connection().createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM registrations")) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.college.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Keyset pages over the test database (see the surefire settings in the pom). */
+class RegistrationsPageTest {
+    @Test
+    void cursorRoundTripsAndRejectsAnythingElse() {
+        assertArrayEquals(new String[]{"2030-01-01 10:00:00", "42"}, Database.decodeCursor(Database.encodeCursor("2030-01-01 10:00:00", 42)));
+        assertArrayEquals(new String[]{"", "7"}, Database.decodeCursor(Database.encodeCursor(null, 7)));
+
+        assertThrows(IllegalArgumentException.class, () -> Database.decodeCursor("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> Database.decodeCursor(encode("no separator")));
+        assertThrows(IllegalArgumentException.class, () -> Database.decodeCursor(encode("2030-01-01 10:00:00|x")));
+    }
+
+    @Test
+    void pagesWalkEveryRowOnceInListingOrder() throws Exception {
+        // rows sharing a created_at are ordered by id, so some pages must end in the middle of such a run
+        List<Registration> rows = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            Registration r = new Registration(null, "Page " + i, null, 1, "page-" + i + "-" + UUID.randomUUID() + "@example.com", null,
+                    i < 6 ? "2030-06-01 12:00:00" : "2030-06-02 12:00:00");
+            r.status = Registration.CONFIRMED;
+            rows.add(r);
+        }
+        assertEquals(rows.size(), Database.insertRegistrationBatch(rows));
+
+        List<Integer> expected = new ArrayList<>();
+        for (Registration r : Database.getAllRegistrations()) expected.add(r.id);
+        List<Integer> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<Registration> page = Database.getRegistrationsPage(cursor, 4);
+            assertTrue(page.items.size() <= 4);
+            for (Registration r : page.items) paged.add(r.id);
+            cursor = page.nextCursor;
+            pages++;
+        } while (cursor != null);
+        assertEquals(expected, paged);
+        assertEquals(paged.size(), new HashSet<>(paged).size());
+        // a last page that comes out exactly full has no cursor to an empty one after it
+        assertEquals((expected.size() + 3) / 4, pages);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package com.college.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatAllocatorTest {
+    private static final int THREADS = 32;
+
+    @Test
+    void concurrentReservationsNeverExceedCapacity() throws Exception {
+        SeatAllocator seats = new SeatAllocator();
+        seats.setCapacity(1, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        run(THREADS, () -> {
+            for (int i = 0; i < 2000; i++) {
+                int tickets = 1 + ThreadLocalRandom.current().nextInt(3);
+                if (seats.tryReserve(1, tickets)) granted.addAndGet(tickets);
+            }
+        });
+        SeatAllocator.Availability a = seats.availability(1);
+        assertEquals(granted.get(), a.sold);
+        assertTrue(a.sold <= 1000, "sold " + a.sold + " of 1000");
+        // demand was far above capacity, so whatever is left is too small for the largest request
+        assertTrue(a.remaining < 3, "remaining " + a.remaining);
+    }
+
+    @Test
+    void soldStaysWithinCapacityWhileSeatsAreReleased() throws Exception {
+        SeatAllocator seats = new SeatAllocator();
+        seats.setCapacity(1, 50);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger maxSeen = new AtomicInteger();
+        Thread observer = new Thread(() -> {
+            while (!done.get()) maxSeen.accumulateAndGet(seats.availability(1).sold, Math::max);
+        });
+        observer.start();
+        AtomicInteger held = new AtomicInteger();
+        run(THREADS, () -> {
+            for (int i = 0; i < 5000; i++) {
+                int tickets = 1 + ThreadLocalRandom.current().nextInt(2);
+                if (seats.tryReserve(1, tickets)) {
+                    // a cancellation or a failed insert gives the seats back
+                    if (ThreadLocalRandom.current().nextBoolean()) seats.release(1, tickets);
+                    else held.addAndGet(tickets);
+                }
+            }
+        });
+        done.set(true);
+        observer.join();
+        assertTrue(maxSeen.get() <= 50, "observed sold " + maxSeen.get() + " of 50");
+        assertEquals(held.get(), seats.availability(1).sold);
+    }
+
+    @Test
+    void unlimitedEventsAlwaysReserve() throws Exception {
+        SeatAllocator seats = new SeatAllocator();
+        seats.setCapacity(1, null);
+        AtomicBoolean refused = new AtomicBoolean();
+        run(8, () -> {
+            for (int i = 0; i < 1000; i++) if (!seats.tryReserve(1, 1)) refused.set(true);
+        });
+        assertFalse(refused.get());
+        assertEquals(8000, seats.availability(1).sold);
+    }
+
+    // starts every worker at once and waits for all of them, rethrowing the first failure
+    static void run(int threads, Runnable work) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        List<Throwable> failures = java.util.Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                    work.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            w.start();
+            workers.add(w);
+        }
+        start.countDown();
+        for (Thread w : workers) w.join();
+        if (!failures.isEmpty()) throw new AssertionError(failures.get(0));
+    }
+}
@@ -0,0 +1,143 @@
+package com.college.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/** Restarts after a crash: whatever the log holds past its checkpoint must end up in the database exactly once. */
+class WriteBehindBufferTest {
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+    private int sinkCalls;
+    private int sinkInserted;
+
+    @BeforeEach
+    void open() throws Exception {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("writebehind.db"));
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE registrations (id INTEGER PRIMARY KEY AUTOINCREMENT, student_name TEXT NOT NULL, event_name TEXT, tickets INTEGER NOT NULL, email TEXT, phone TEXT, created_at DATETIME, event_id INTEGER, idempotency_key TEXT, status TEXT NOT NULL DEFAULT 'confirmed', cancel_token TEXT)");
+        }
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        conn.close();
+    }
+
+    @Test
+    void restartInsertsUncheckpointedRowsAndSkipsThoseAlreadySaved() throws Exception {
+        Path logDir = dir.resolve("log");
+        // the previous run logged five rows and crashed before writing any checkpoint...
+        WriteBehindLog log = new WriteBehindLog(logDir, 1 << 16);
+        List<Registration> logged = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            logged.add(row(id));
+            log.append(row(id));
+        }
+        log.close();
+        // ...but the flusher had already saved the first two
+        sink(logged.subList(0, 2));
+        sinkInserted = 0;
+
+        WriteBehindBuffer buffer = reopen(logDir);
+        assertEquals(3, sinkInserted);
+        assertEquals(5, count());
+        assertFalse(Files.exists(logDir.resolve("writebehind-000001.log")), "recovered segment should be gone");
+
+        // new ids continue after the recovered rows; a clean shutdown checkpoints them, so the next start recovers nothing
+        assertEquals(6, buffer.append(row(0), id -> {}));
+        buffer.close();
+        sinkCalls = 0;
+        reopen(logDir).close();
+        assertEquals(0, sinkCalls);
+        assertEquals(6, count());
+    }
+
+    @Test
+    void restartRecoversOnlyRowsPastTheCheckpoint() throws Exception {
+        Path logDir = dir.resolve("log");
+        WriteBehindLog log = new WriteBehindLog(logDir, 1 << 16);
+        List<Registration> logged = new ArrayList<>();
+        WriteBehindLog.Position flushed = null;
+        for (int id = 1; id <= 4; id++) {
+            logged.add(row(id));
+            WriteBehindLog.Position p = log.append(row(id));
+            if (id == 2) flushed = p;
+        }
+        sink(logged.subList(0, 2));
+        log.checkpoint(flushed);
+        log.close();
+        sinkInserted = 0;
+
+        reopen(logDir).close();
+        assertEquals(2, sinkInserted);
+        assertEquals(4, count());
+    }
+
+    private WriteBehindBuffer reopen(Path logDir) throws Exception {
+        return new WriteBehindBuffer(logDir, 1 << 16, 100, 2, 0, this::sink, this::lastId,
+                r -> { throw new AssertionError("row " + r.email + " refused"); });
+    }
+
+    // the storage's sink: keeps the logged ids and leaves rows it already has alone
+    private synchronized int sink(List<Registration> rows) throws SQLException {
+        sinkCalls++;
+        int inserted = 0;
+        try (PreparedStatement ps = conn.prepareStatement("INSERT OR IGNORE INTO registrations(id, student_name, event_name, tickets, email, created_at, status) VALUES(?,?,?,?,?,?,?)")) {
+            for (Registration r : rows) {
+                ps.setInt(1, r.id);
+                ps.setString(2, r.studentName);
+                ps.setString(3, r.eventName);
+                ps.setInt(4, r.tickets);
+                ps.setString(5, r.email);
+                ps.setString(6, r.createdAt);
+                ps.setString(7, r.status);
+                if (ps.executeUpdate() == 1) inserted++;
+                else r.id = null;
+            }
+        }
+        sinkInserted += inserted;
+        return inserted;
+    }
+
+    private synchronized long lastId() {
+        try {
+            return queryInt("SELECT COALESCE(MAX(id), 0) FROM registrations");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized int count() throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM registrations");
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static Registration row(int id) {
+        Registration r = new Registration(id == 0 ? null : id, "Student " + id, "Event", 1, "s" + id + "@example.com", null, "2030-01-01 10:00:00");
+        r.status = Registration.CONFIRMED;
+        return r;
+    }
+}